@@ -0,0 +1,111 @@
+package com.demo.admission;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按响应时间自适应的并发上限（AIMD）
+ * 以最近一个采样窗口内的最小响应时间作为无排队时的基线，样本超过基线的tolerance倍说明开始排队，上限乘以backoff，
+ * 和TCP一样只有在上次下调之后才开始的请求才能再次触发下调，避免同一波排队把上限连续打到底；
+ * 否则每个样本加1/limit，大约每轮满并发加1
+ * 增减都只在并发用到一半以上时进行：低负载时的慢样本多半是接口本身慢（同一类里混着快慢不同的接口），不是排队，
+ * 据此下调会让上限在空闲时一路降到minLimit，下一个高峰一来就大量拒绝
+ */
+public class AdaptiveLimit {
+    private static final int WINDOW = 500;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoff;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile int limit;
+    private double estimate;
+
+    private long baseline = Long.MAX_VALUE;
+    private long windowMin = Long.MAX_VALUE;
+    private int samples;
+    private long lastDecrease = System.nanoTime();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double backoff) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoff = backoff;
+        this.estimate = initialLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * 并发未达上限时占用一个名额，调用方必须在请求结束后调用release
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                shed.incrementAndGet();
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                admitted.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 归还名额但不采样，用于长连接和出错的请求
+     */
+    public void release() {
+        inflight.decrementAndGet();
+    }
+
+    /**
+     * 归还名额并用本次响应时间调整上限
+     */
+    public void release(long startNanos, long endNanos) {
+        int current = inflight.getAndDecrement();
+        long rttNanos = endNanos - startNanos;
+        synchronized (this) {
+            windowMin = Math.min(windowMin, rttNanos);
+            if (baseline == Long.MAX_VALUE) {
+                baseline = rttNanos;
+            }
+            if (++samples >= WINDOW) {
+                baseline = windowMin;
+                windowMin = Long.MAX_VALUE;
+                samples = 0;
+            }
+            if (current * 2 < limit) {
+                return;
+            }
+            if (rttNanos > baseline * tolerance) {
+                if (startNanos - lastDecrease > 0) {
+                    estimate = Math.max(minLimit, estimate * backoff);
+                    lastDecrease = endNanos;
+                }
+            } else {
+                estimate = Math.min(maxLimit, estimate + 1.0 / estimate);
+            }
+            limit = (int) estimate;
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("limit", limit);
+        metrics.put("inflight", inflight.get());
+        metrics.put("admitted", admitted.get());
+        metrics.put("shed", shed.get());
+        synchronized (this) {
+            metrics.put("baselineMillis", baseline == Long.MAX_VALUE ? 0 : Math.round(baseline / 1e4) / 100.0);
+        }
+        return metrics;
+    }
+}
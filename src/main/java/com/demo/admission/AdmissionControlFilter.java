@@ -0,0 +1,244 @@
+package com.demo.admission;
+
+import com.demo.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Web层准入控制：每类接口一个自适应并发上限，超过上限的请求直接返回503和Retry-After，不进入Tomcat后面的排队
+ * 静态资源不经过controller，不做限制；
+ * 异步请求（管理端的WebAsyncTask等）在后台线程上仍占着线程和数据库连接，名额保留到异步结束（完成、超时或出错）；
+ * 只有SSE这类推送长连接在容器接管后立即归还名额，它们不占线程，按名额算会把整类接口堵死
+ * 上传文件的下载（/file/**）虽然由controller处理，但耗时只有几微秒，算进PAGE会占名额、把延迟基线拉低，
+ * 每个文件url还会占一条路由缓存，按admission.unmanaged-paths直接放行，不查也不进缓存
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionControlFilter extends OncePerRequestFilter implements MetricsSource {
+    private static final int MAX_CACHED_ROUTES = 2000;
+    private static final Object UNMANAGED = new Object();
+
+    @Autowired
+    @Qualifier("requestMappingHandlerMapping")
+    private RequestMappingHandlerMapping handlerMapping;
+    @Autowired
+    private Environment environment;
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+    @Value("${admission.retry-after:1}")
+    private int retryAfter;
+    @Value("${admission.unmanaged-paths:/file/**}")
+    private String[] unmanagedPaths;
+
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    private final Map<EndpointClass, AdaptiveLimit> limits = new EnumMap<>(EndpointClass.class);
+    /**
+     * "方法 URI"到Route的缓存，静态资源等不需要准入控制的请求缓存为UNMANAGED
+     */
+    private final Map<String, Object> routes = new ConcurrentHashMap<>();
+
+    private static class Route {
+        private final EndpointClass endpointClass;
+        /**
+         * 返回SseEmitter等推送连接的接口
+         */
+        private final boolean streaming;
+
+        Route(EndpointClass endpointClass, boolean streaming) {
+            this.endpointClass = endpointClass;
+            this.streaming = streaming;
+        }
+    }
+
+    private static final Route UPLOAD = new Route(EndpointClass.UPLOAD, false);
+
+    @PostConstruct
+    public void init() {
+        limits.put(EndpointClass.PAGE, createLimit("page", 100, 10, 400));
+        limits.put(EndpointClass.USER_API, createLimit("user-api", 100, 10, 400));
+        limits.put(EndpointClass.ADMIN_API, createLimit("admin-api", 20, 4, 100));
+        limits.put(EndpointClass.UPLOAD, createLimit("upload", 8, 2, 32));
+    }
+
+    private AdaptiveLimit createLimit(String name, int initial, int min, int max) {
+        String prefix = "admission." + name + ".";
+        return new AdaptiveLimit(
+                environment.getProperty(prefix + "initial", Integer.class, initial),
+                environment.getProperty(prefix + "min", Integer.class, min),
+                environment.getProperty(prefix + "max", Integer.class, max),
+                environment.getProperty("admission.tolerance", Double.class, 2.0),
+                environment.getProperty("admission.backoff", Double.class, 0.9));
+    }
+
+    public AdaptiveLimit limit(EndpointClass endpointClass) {
+        return limits.get(endpointClass);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        Route route = enabled ? classify(request) : null;
+        if (route == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        AdaptiveLimit limit = limits.get(route.endpointClass);
+        if (!limit.tryAcquire()) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", String.valueOf(retryAfter));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("服务器繁忙，请稍后再试");
+            return;
+        }
+        long start = System.nanoTime();
+        boolean returned = false;
+        try {
+            chain.doFilter(request, response);
+            returned = true;
+        } finally {
+            if (!returned || route.streaming && request.isAsyncStarted()) {
+                limit.release();
+            } else if (request.isAsyncStarted()) {
+                // 异步请求的耗时取决于任务本身（导出可能几分钟），不作为延迟样本
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(limit));
+            } else {
+                limit.release(start, System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * 超时和出错之后容器还会再通知一次完成，名额只归还一次
+     */
+    private static class ReleaseOnCompletion implements AsyncListener {
+        private final AdaptiveLimit limit;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleaseOnCompletion(AdaptiveLimit limit) {
+            this.limit = limit;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                limit.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        /**
+         * 异步分派里再次startAsync时容器会清掉已注册的监听器，需要重新注册
+         */
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private Route classify(HttpServletRequest request) {
+        if (request.getContentType() != null && request.getContentType().startsWith("multipart/")) {
+            return UPLOAD;
+        }
+        String path = urlPathHelper.getPathWithinApplication(request);
+        for (String pattern : unmanagedPaths) {
+            if (pathMatcher.match(pattern, path)) {
+                return null;
+            }
+        }
+        String key = request.getMethod() + " " + request.getRequestURI();
+        Object cached = routes.get(key);
+        if (cached == null) {
+            cached = resolve(request);
+            if (routes.size() < MAX_CACHED_ROUTES) {
+                routes.put(key, cached);
+            }
+        }
+        return cached == UNMANAGED ? null : (Route) cached;
+    }
+
+    private Object resolve(HttpServletRequest request) {
+        HandlerExecutionChain chain;
+        try {
+            chain = handlerMapping.getHandler(request);
+        } catch (Exception e) {
+            return UNMANAGED;
+        }
+        if (chain == null || !(chain.getHandler() instanceof HandlerMethod)) {
+            return UNMANAGED;
+        }
+        HandlerMethod handler = (HandlerMethod) chain.getHandler();
+        boolean streaming = ResponseBodyEmitter.class.isAssignableFrom(handler.getReturnType().getParameterType());
+        return new Route(endpointClass(request, handler), streaming);
+    }
+
+    private EndpointClass endpointClass(HttpServletRequest request, HandlerMethod handler) {
+        if (handler.getBeanType().getPackage().getName().endsWith(".controller.admin")) {
+            return EndpointClass.ADMIN_API;
+        }
+        boolean responseBody = handler.hasMethodAnnotation(ResponseBody.class)
+                || AnnotatedElementUtils.hasAnnotation(handler.getBeanType(), ResponseBody.class);
+        if (responseBody || !"GET".equals(request.getMethod())) {
+            return EndpointClass.USER_API;
+        }
+        return EndpointClass.PAGE;
+    }
+
+    @Override
+    public String metricsName() {
+        return "admission";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        for (Map.Entry<EndpointClass, AdaptiveLimit> entry : limits.entrySet()) {
+            metrics.put(entry.getKey().name(), entry.getValue().metrics());
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,23 @@
+package com.demo.admission;
+
+/**
+ * 准入控制按接口类别分别限流，一类过载时不拖累其它类别
+ */
+public enum EndpointClass {
+    /**
+     * 返回页面的GET请求
+     */
+    PAGE,
+    /**
+     * 用户侧的JSON接口和表单提交，包括预约下单
+     */
+    USER_API,
+    /**
+     * controller.admin包下的全部接口
+     */
+    ADMIN_API,
+    /**
+     * multipart文件上传
+     */
+    UPLOAD
+}
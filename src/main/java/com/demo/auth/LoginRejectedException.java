@@ -0,0 +1,26 @@
+package com.demo.auth;
+
+/**
+ * 登录请求没有校验密码就被拒绝：账号尝试太频繁(429)或校验线程池忙(503)
+ */
+public class LoginRejectedException extends RuntimeException {
+    private final int status;
+    private final long retryAfter;
+
+    public LoginRejectedException(int status, long retryAfter, String message) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * 建议的重试等待时间，秒
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,22 @@
+package com.demo.auth;
+
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 登录被限流或校验线程池忙时返回429/503和Retry-After，而不是500
+ */
+@ControllerAdvice
+public class LoginRejectedExceptionHandler {
+
+    @ExceptionHandler(LoginRejectedException.class)
+    public void rejected(LoginRejectedException e, HttpServletResponse response) throws IOException {
+        response.setStatus(e.getStatus());
+        response.setHeader("Retry-After", String.valueOf(e.getRetryAfter()));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(e.getMessage());
+    }
+}
@@ -0,0 +1,15 @@
+package com.demo.auth;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标在SessionUser类型的控制器参数上，注入当前登录的普通用户
+ * 令牌认证的请求取令牌里的用户，否则取会话属性"user"；都没有时抛出LoginException("请登录！")
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LoginUser {
+}
@@ -0,0 +1,48 @@
+package com.demo.auth;
+
+import com.demo.exception.LoginException;
+import com.demo.session.SessionUser;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * 解析@LoginUser参数
+ */
+@Component
+public class LoginUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    /**
+     * 令牌里的用户优先，没有令牌时不创建会话
+     */
+    public static SessionUser current(HttpServletRequest request) {
+        SessionUser user = TokenAuthFilter.principal(request);
+        if (user != null) {
+            return user.isAdmin() ? null : user;
+        }
+        HttpSession session = request.getSession(false);
+        return session == null ? null : (SessionUser) session.getAttribute("user");
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(LoginUser.class)
+                && SessionUser.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        SessionUser user = current(webRequest.getNativeRequest(HttpServletRequest.class));
+        if (user == null) {
+            throw new LoginException("请登录！");
+        }
+        return user;
+    }
+}
@@ -0,0 +1,252 @@
+package com.demo.auth;
+
+import com.demo.ratelimit.TokenBucketLimiter;
+import com.demo.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录时的密码校验，按顺序：
+ * 1. 最近校验成功过的(记录, 密码)直接放行，只算一次SHA-256；猜密码的请求永远命中不了，被攻击的账号本人照常登录
+ * 2. 每个账号的尝试次数限流，超限直接429，不做哈希
+ * 3. 在专用的有界线程池里做PBKDF2，线程数不超过CPU核数；按最近的哈希耗时估计排队时间，超过超时时间的
+ *    提交时就直接503，撞库时多出来的请求快速失败，不会排长队把所有登录的延迟一起拖长，
+ *    也不会让线程池去算调用方已经放弃等待的哈希
+ */
+@Component
+public class PasswordVerifier implements MetricsSource {
+    private static final String ENDPOINT = "login";
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private TokenBucketLimiter limiter;
+
+    /**
+     * 0表示CPU核数
+     */
+    @Value("${password.verifier.threads:0}")
+    private int threads;
+    @Value("${password.verifier.queue-capacity:32}")
+    private int queueCapacity;
+    /**
+     * 排队加计算的总时间上限，毫秒
+     */
+    @Value("${password.verifier.timeout:1000}")
+    private long timeout;
+    @Value("${password.attempts.per-minute:10}")
+    private int attemptsPerMinute;
+    @Value("${password.attempts.burst:5}")
+    private int attemptsBurst;
+    @Value("${password.cache.ttl:600000}")
+    private long cacheTtl;
+    @Value("${password.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    private ThreadPoolExecutor executor;
+    private TokenBucketLimiter.Limit limit;
+
+    private static class Verified {
+        private final byte[] digest;
+        private final long expiresAt;
+
+        Verified(byte[] digest, long expiresAt) {
+            this.digest = digest;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 存储的哈希记录到校验成功的密码摘要；改密码后记录变了，旧的缓存自然失效
+     */
+    private final Map<String, Verified> verified = new ConcurrentHashMap<>();
+    /**
+     * 只在本进程内存里的随机盐，缓存里的摘要离开进程无法用来离线猜密码
+     */
+    private final byte[] pepper = new byte[32];
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder hashed = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    /**
+     * 单次哈希耗时的指数移动平均，纳秒；并发更新时丢掉个别样本无所谓
+     */
+    private volatile long avgHashNanos;
+
+    @PostConstruct
+    public void start() {
+        new SecureRandom().nextBytes(pepper);
+        limit = new TokenBucketLimiter.Limit(attemptsPerMinute, attemptsBurst);
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger sequence = new AtomicInteger();
+        executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "password-verifier-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param userID 按账号限流用
+     * @param raw    用户输入的密码
+     * @param stored 数据库里的密码记录，哈希或旧的明文
+     * @throws LoginRejectedException 账号尝试太频繁，或校验线程池忙不过来
+     */
+    public boolean verify(String userID, String raw, String stored) {
+        if (raw == null || stored == null) {
+            return false;
+        }
+        byte[] digest = digest(raw);
+        Verified entry = verified.get(stored);
+        if (entry != null && entry.expiresAt - System.currentTimeMillis() > 0
+                && MessageDigest.isEqual(entry.digest, digest)) {
+            cacheHits.increment();
+            return true;
+        }
+        long wait = limiter.tryAcquire(ENDPOINT, userID, limit);
+        if (wait > 0) {
+            throttled.increment();
+            throw new LoginRejectedException(HttpStatus.TOO_MANY_REQUESTS.value(),
+                    TimeUnit.NANOSECONDS.toSeconds(wait) + 1, "登录尝试太频繁，请稍后再试");
+        }
+        boolean matches = passwordHasher.isHashed(stored) ? hashOnPool(raw, stored) : passwordHasher.matches(raw, stored);
+        if (!matches) {
+            failures.increment();
+            return false;
+        }
+        if (passwordHasher.isHashed(stored)) {
+            remember(stored, digest);
+        }
+        return true;
+    }
+
+    private boolean hashOnPool(String raw, String stored) {
+        if (overloaded()) {
+            rejected.increment();
+            throw busy();
+        }
+        Future<Boolean> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                boolean matches = passwordHasher.matches(raw, stored);
+                long elapsed = System.nanoTime() - start;
+                hashed.increment();
+                hashNanos.add(elapsed);
+                long avg = avgHashNanos;
+                avgHashNanos = avg == 0 ? elapsed : avg + (elapsed - avg) / 8;
+                return matches;
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw busy();
+        }
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 还在排队的任务取消后不会再执行，从队列里清掉，免得排队时间估计偏大
+            future.cancel(true);
+            executor.purge();
+            timedOut.increment();
+            throw busy();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("密码校验失败", e.getCause());
+        }
+    }
+
+    /**
+     * 新提交的任务要等前面几轮哈希做完再算自己这一次，估计超过超时时间就不提交
+     * 前面没有整轮的任务时总是提交，哈希本身比超时还慢时也不会一直拒绝下去
+     */
+    private boolean overloaded() {
+        long rounds = (executor.getQueue().size() + executor.getActiveCount()) / executor.getMaximumPoolSize();
+        return rounds > 0 && (rounds + 1) * avgHashNanos > TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    private static LoginRejectedException busy() {
+        return new LoginRejectedException(HttpStatus.SERVICE_UNAVAILABLE.value(), 1, "登录人数过多，请稍后再试");
+    }
+
+    private void remember(String stored, byte[] digest) {
+        long now = System.currentTimeMillis();
+        if (verified.size() >= cacheMaxSize) {
+            verified.values().removeIf(entry -> entry.expiresAt - now <= 0);
+            if (verified.size() >= cacheMaxSize) {
+                return;
+            }
+        }
+        verified.put(stored, new Verified(digest, now + cacheTtl));
+    }
+
+    private byte[] digest(String raw) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(pepper);
+            return sha256.digest(raw.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("JDK不支持SHA-256", e);
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "passwords";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long count = hashed.sum();
+        metrics.put("iterations", passwordHasher.getIterations());
+        metrics.put("cacheHits", cacheHits.sum());
+        metrics.put("cacheSize", verified.size());
+        metrics.put("hashed", count);
+        metrics.put("avgHashMillis", count == 0 ? 0 : hashNanos.sum() / count / 1000000.0);
+        metrics.put("recentHashMillis", avgHashNanos / 1000000.0);
+        metrics.put("failures", failures.sum());
+        metrics.put("throttled", throttled.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("timedOut", timedOut.sum());
+        metrics.put("active", executor.getActiveCount());
+        metrics.put("queued", executor.getQueue().size());
+        return metrics;
+    }
+}
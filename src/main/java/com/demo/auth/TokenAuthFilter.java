@@ -0,0 +1,62 @@
+package com.demo.auth;
+
+import com.demo.session.SessionUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 带"Authorization: Bearer 令牌"的请求在这里校验令牌，通过后把用户放进请求属性PRINCIPAL，
+ * 后面的@LoginUser参数和限流直接用它，不读会话；令牌无效或过期返回401
+ * 没带令牌的请求原样放行，仍按会话登录；auth.token.enabled为false时整个过滤器不生效
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+public class TokenAuthFilter extends OncePerRequestFilter {
+    public static final String PRINCIPAL = TokenAuthFilter.class.getName() + ".principal";
+    private static final String BEARER = "Bearer ";
+
+    @Autowired
+    private TokenService tokenService;
+
+    /**
+     * 令牌认证的请求里的登录用户，没有时返回null
+     */
+    public static SessionUser principal(HttpServletRequest request) {
+        return (SessionUser) request.getAttribute(PRINCIPAL);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!tokenService.isEnabled()) {
+            return true;
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String token = request.getHeader(HttpHeaders.AUTHORIZATION).substring(BEARER.length()).trim();
+        SessionUser user = tokenService.verify(token);
+        if (user == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("令牌无效或已过期，请重新登录");
+            return;
+        }
+        request.setAttribute(PRINCIPAL, user);
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,189 @@
+package com.demo.auth;
+
+import com.demo.session.SessionUser;
+import com.demo.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无状态登录令牌：base64url(内容).base64url(HMAC-SHA256(内容))
+ * 内容只有 版本 + id + 是否管理员 + 过期时间(秒) + userID，一般不到60个字符；
+ * 校验只算一次HMAC，不查会话也不查库，所有实例配置同一个auth.token.secret即可互认
+ * 令牌签发后在过期前一直有效，改密码、注销都不会让已发出的令牌失效，所以有效期不宜太长
+ */
+@Component
+public class TokenService implements MetricsSource {
+    private static final byte VERSION = 1;
+    /**
+     * 版本1字节 + id 4字节 + 是否管理员1字节 + 过期时间8字节，之后到结尾是userID
+     */
+    private static final int USER_ID_OFFSET = 14;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${auth.token.enabled:false}")
+    private boolean enabled;
+    /**
+     * base64编码的密钥，至少32字节
+     */
+    @Value("${auth.token.secret:}")
+    private String secret;
+    /**
+     * 有效期，秒
+     */
+    @Value("${auth.token.ttl:3600}")
+    private long ttl;
+
+    private SecretKeySpec key;
+    private ThreadLocal<Mac> macs;
+
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public TokenService() {
+    }
+
+    TokenService(byte[] secret, long ttl) {
+        this.enabled = true;
+        this.ttl = ttl;
+        init(secret);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (secret == null || secret.isEmpty()) {
+            throw new RuntimeException("开启令牌认证时必须配置auth.token.secret");
+        }
+        init(Base64.getDecoder().decode(secret));
+    }
+
+    private void init(byte[] secret) {
+        if (secret.length < 32) {
+            throw new RuntimeException("auth.token.secret至少需要32字节");
+        }
+        key = new SecretKeySpec(secret, ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("初始化HMAC失败", e);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public String issue(SessionUser user) {
+        return issue(user, System.currentTimeMillis() / 1000);
+    }
+
+    String issue(SessionUser user, long now) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(user.getId());
+            out.writeBoolean(user.isAdmin());
+            out.writeLong(now + ttl);
+            out.write(user.getUserID().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("生成令牌失败", e);
+        }
+        byte[] payload = bytes.toByteArray();
+        issued.incrementAndGet();
+        return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * @return 令牌对应的用户，只有id、userID和是否管理员；签名不对或已过期返回null
+     */
+    public SessionUser verify(String token) {
+        return verify(token, System.currentTimeMillis() / 1000);
+    }
+
+    SessionUser verify(String token, long now) {
+        int dot = token.indexOf('.');
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, Math.max(dot, 0)));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        if (dot <= 0 || !MessageDigest.isEqual(sign(payload), signature)) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (in.readByte() != VERSION) {
+                rejected.incrementAndGet();
+                return null;
+            }
+            int id = in.readInt();
+            boolean admin = in.readBoolean();
+            long expiresAt = in.readLong();
+            if (now >= expiresAt) {
+                expired.incrementAndGet();
+                return null;
+            }
+            String userID = new String(Arrays.copyOfRange(payload, USER_ID_OFFSET, payload.length), StandardCharsets.UTF_8);
+            verified.incrementAndGet();
+            return new SessionUser(id, userID, null, null, admin);
+        } catch (IOException e) {
+            rejected.incrementAndGet();
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    @Override
+    public String metricsName() {
+        return "tokens";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("issued", issued.get());
+        metrics.put("verified", verified.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("expired", expired.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,71 @@
+package com.demo.bulkhead;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Callable;
+
+/**
+ * 把耗时的管理端请求交给管理端线程池执行，Tomcat工作线程立即释放给用户请求
+ * 池中线程预先标记为管理端，访问数据库时走管理端连接池；线程和队列都满时提交会被拒绝，由BulkheadExceptionHandler返回503
+ * 线程池不注册为bean，避免顶替Spring Boot默认的applicationTaskExecutor
+ * 每个任务（尤其是流式导出）执行期间一直占着一个管理端连接，线程数必须小于管理端连接池，
+ * 否则任务占满连接后同步的管理端请求只能等到Hikari的connectionTimeout再失败
+ */
+@Component
+public class AdminTasks {
+    @Value("${bulkhead.admin.threads:3}")
+    private int threads;
+    @Value("${bulkhead.admin.pool-size:6}")
+    private int adminPoolSize;
+    @Value("${bulkhead.admin.queue-capacity:20}")
+    private int queueCapacity;
+    @Value("${bulkhead.admin.timeout:300000}")
+    private long timeout;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        if (threads >= adminPoolSize) {
+            throw new IllegalStateException("bulkhead.admin.threads(" + threads
+                    + ")必须小于bulkhead.admin.pool-size(" + adminPoolSize + ")，给同步的管理端请求留出连接");
+        }
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("admin-task-");
+        executor.setDaemon(true);
+        executor.setTaskDecorator(task -> () -> {
+            Bulkhead.set(Bulkhead.ADMIN);
+            try {
+                task.run();
+            } finally {
+                Bulkhead.clear();
+            }
+        });
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    public <T> WebAsyncTask<T> submit(Callable<T> callable) {
+        return new WebAsyncTask<>(timeout, executor, callable);
+    }
+
+    /**
+     * 边执行边写响应的任务（如导出）不设超时，写到一半被超时打断只会得到截断的文件
+     * 超时值小于等于0时Servlet容器不会让异步请求超时
+     */
+    public <T> WebAsyncTask<T> stream(Callable<T> callable) {
+        return new WebAsyncTask<>(-1L, executor, callable);
+    }
+}
@@ -0,0 +1,25 @@
+package com.demo.bulkhead;
+
+/**
+ * 管理端和用户端各用一套线程池和数据库连接池，管理端的慢查询不会占满用户下单要用的资源
+ * 当前线程属于哪一侧记在ThreadLocal里，没有设置时按用户端处理
+ */
+public enum Bulkhead {
+    USER,
+    ADMIN;
+
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    public static Bulkhead current() {
+        Bulkhead bulkhead = CURRENT.get();
+        return bulkhead == null ? USER : bulkhead;
+    }
+
+    public static void set(Bulkhead bulkhead) {
+        CURRENT.set(bulkhead);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,23 @@
+package com.demo.bulkhead;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 管理端线程池和队列都满时返回503，而不是500
+ */
+@ControllerAdvice
+public class BulkheadExceptionHandler {
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public void rejected(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "5");
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("后台任务繁忙，请稍后再试");
+    }
+}
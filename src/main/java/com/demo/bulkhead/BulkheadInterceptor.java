@@ -0,0 +1,38 @@
+package com.demo.bulkhead;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * controller.admin包下的接口在请求线程上也走管理端连接池
+ * 在controller第一次访问数据库之前设置，请求结束或转入异步处理时清除
+ */
+@Component
+public class BulkheadInterceptor implements AsyncHandlerInterceptor {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod && isAdmin((HandlerMethod) handler)) {
+            Bulkhead.set(Bulkhead.ADMIN);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Bulkhead.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Bulkhead.clear();
+    }
+
+    static boolean isAdmin(HandlerMethod handler) {
+        return handler.getBeanType().getPackage().getName().endsWith(".controller.admin");
+    }
+}
@@ -0,0 +1,35 @@
+package com.demo.bulkhead;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 取连接时按当前线程所属的一侧选择连接池
+ * 连接池不是bean，容器关闭（包括devtools重启）时由这里负责关闭
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+    private Map<Object, Object> targets = Collections.emptyMap();
+
+    @Override
+    public void setTargetDataSources(Map<Object, Object> targetDataSources) {
+        super.setTargetDataSources(targetDataSources);
+        targets = targetDataSources;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return Bulkhead.current();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (Object target : targets.values()) {
+            if (target instanceof AutoCloseable) {
+                ((AutoCloseable) target).close();
+            }
+        }
+    }
+}
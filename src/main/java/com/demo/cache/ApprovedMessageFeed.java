@@ -0,0 +1,203 @@
+package com.demo.cache;
+
+import com.demo.entity.vo.MessageVo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 最新通过审核的N条留言及通过总数，首页和留言列表第一页直接读这里
+ * 读取的是不可变快照，审核、删除、修改留言时由service层增量更新，拿不准的时候整体作废，下次读取时回源
+ * 快照记着它对应的EntityVersions.MESSAGE版本号：每次写入在事务里把版本号加一，提交后带着新版本号增量更新；
+ * 读取时共享的版本号和快照不一致，说明别的实例写入过，重新回源，最多晚entity-versions.refresh毫秒
+ */
+@Component
+public class ApprovedMessageFeed {
+    /**
+     * 按时间倒序，时间相同按编号倒序
+     */
+    private static final Comparator<MessageVo> NEWEST_FIRST = Comparator
+            .comparing(MessageVo::getTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(MessageVo::getMessageID, Comparator.reverseOrder());
+
+    private final int capacity;
+
+    @Autowired
+    private EntityVersions entityVersions;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 同OrderCountCache，回源期间发生过变更就不保存回源结果
+     */
+    private long modCount;
+
+    public ApprovedMessageFeed(@Value("${cache.approved-feed.capacity:50}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 返回当前快照，未加载或已过期时用loader回源，loader应返回最新的capacity条以及通过总数
+     */
+    public Snapshot get(Supplier<Snapshot> loader) {
+        // 先读版本号再回源，快照只会标记得比数据旧，不会漏掉变更
+        long version = entityVersions.current(EntityVersions.MESSAGE);
+        Snapshot current = snapshot;
+        if (current != null && current.version >= version) {
+            return current;
+        }
+        long stamp;
+        synchronized (this) {
+            stamp = modCount;
+        }
+        Snapshot source = loader.get();
+        Snapshot loaded = new Snapshot(source.items, source.total, version);
+        synchronized (this) {
+            if (stamp == modCount) {
+                snapshot = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 留言或用户写入时调用，在事务里调用时和写入一起提交
+     * @return 新的版本号，提交后传给add、remove、updateUser
+     */
+    public long bump() {
+        return entityVersions.bump(EntityVersions.MESSAGE);
+    }
+
+    /**
+     * 一条留言进入通过状态
+     */
+    public synchronized void add(MessageVo messageVo, long version) {
+        modCount++;
+        Snapshot current = base(version);
+        if (current == null) {
+            return;
+        }
+        List<MessageVo> items = new ArrayList<>(current.items);
+        int index = Collections.binarySearch(items, messageVo, NEWEST_FIRST);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        // 比窗口里最旧的一条还旧，而窗口外还有留言时，它的位置不确定，只计数不放入
+        if (index < items.size() || current.isComplete()) {
+            items.add(index, messageVo);
+            if (items.size() > capacity) {
+                items.remove(items.size() - 1);
+            }
+        }
+        snapshot = new Snapshot(items, current.total + 1, version);
+    }
+
+    /**
+     * 一条留言离开通过状态或被删除，wasPass为false时表示不确定之前的状态
+     */
+    public synchronized void remove(int messageID, boolean wasPass, long version) {
+        modCount++;
+        Snapshot current = base(version);
+        if (current == null) {
+            return;
+        }
+        List<MessageVo> items = new ArrayList<>(current.items);
+        boolean removed = items.removeIf(vo -> vo.getMessageID() == messageID);
+        if (!removed && !wasPass) {
+            if (!current.isComplete()) {
+                snapshot = null;
+            }
+            return;
+        }
+        Snapshot next = new Snapshot(items, Math.max(0, current.total - 1), version);
+        // 窗口删到一半以下且后面还有留言，下次读取时重新回源补满
+        snapshot = items.size() < capacity / 2 && !next.isComplete() ? null : next;
+    }
+
+    /**
+     * 用户修改昵称或头像后，替换快照里该用户的留言
+     */
+    public synchronized void updateUser(String userID, String userName, String picture, long version) {
+        modCount++;
+        Snapshot current = base(version);
+        if (current == null) {
+            return;
+        }
+        List<MessageVo> items = new ArrayList<>(current.items.size());
+        for (MessageVo vo : current.items) {
+            if (userID.equals(vo.getUserID())) {
+                vo = new MessageVo(vo.getMessageID(), vo.getUserID(), vo.getContent(), vo.getTime(), userName, picture, vo.getState());
+            }
+            items.add(vo);
+        }
+        snapshot = new Snapshot(items, current.total, version);
+    }
+
+    public synchronized void invalidate() {
+        modCount++;
+        snapshot = null;
+    }
+
+    /**
+     * 增量更新只能接在快照的版本后面：快照是上一个版本，或者同一事务里已经按这个版本更新过一次；
+     * 中间夹着别的实例的写入时作废，下次读取时回源
+     */
+    private Snapshot base(long version) {
+        Snapshot current = snapshot;
+        if (current != null && current.version != version && current.version != version - 1) {
+            snapshot = null;
+            return null;
+        }
+        return current;
+    }
+
+    public static class Snapshot {
+        private final List<MessageVo> items;
+        private final long total;
+        private final long version;
+
+        public Snapshot(List<MessageVo> items, long total) {
+            this(items, total, 0);
+        }
+
+        private Snapshot(List<MessageVo> items, long total, long version) {
+            this.items = Collections.unmodifiableList(new ArrayList<>(items));
+            this.total = total;
+            this.version = version;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * 窗口里是否就是全部通过的留言
+         */
+        public boolean isComplete() {
+            return items.size() >= total;
+        }
+
+        /**
+         * 取[offset, offset+size)，超出窗口又不完整时返回null，调用方自己查库
+         */
+        public List<MessageVo> slice(long offset, int size) {
+            if (offset + size > items.size() && !isComplete()) {
+                return null;
+            }
+            int from = (int) Math.min(offset, items.size());
+            int to = (int) Math.min(offset + size, items.size());
+            return items.subList(from, to);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.demo.cache;
+
+import com.demo.dao.EntityVersionDao;
+import com.demo.entity.EntityVersion;
+import com.demo.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每类实体一个只增不减的版本号，service层每次写入加一
+ * 列表接口用(版本号, 分页参数)生成强ETag，客户端带If-None-Match且版本没变时直接返回304，不查列表数据；
+ * 版本号存在entity_version表里，多个实例轮询接请求时看到的是同一个版本号，重启也不会归零；
+ * 每个实例在本地缓存版本号，最多entity-versions.refresh毫秒重新读一次，
+ * 别的实例写入后本实例最多在这段时间内还按旧版本回304
+ */
+@Component
+public class EntityVersions implements MetricsSource {
+    public static final String NEWS = "news";
+    public static final String VENUE = "venue";
+    /**
+     * 通过审核的留言及其作者的昵称头像，ApprovedMessageFeed据此判断快照是否过期
+     */
+    public static final String MESSAGE = "message";
+    /**
+     * 留言审核关键词，KeywordFilter据此发现别的实例改过关键词
+     */
+    public static final String KEYWORD = "keyword";
+
+    @Autowired
+    private EntityVersionDao entityVersionDao;
+    @Value("${entity-versions.refresh:1000}")
+    private long refresh;
+
+    private final Map<String, Cached> versions = new ConcurrentHashMap<>();
+
+    private static class Cached {
+        private final long version;
+        private final long loadedAt;
+
+        Cached(long version, long loadedAt) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public long current(String type) {
+        Cached cached = versions.get(type);
+        if (cached == null || System.currentTimeMillis() - cached.loadedAt >= refresh) {
+            cached = load(type);
+        }
+        return cached.version;
+    }
+
+    /**
+     * @return 加一后的版本号；在事务里调用时读到的是本事务写入的值
+     */
+    public long bump(String type) {
+        if (entityVersionDao.increment(type) == 0) {
+            try {
+                entityVersionDao.save(new EntityVersion(type, 1));
+            } catch (DataIntegrityViolationException e) {
+                // 别的实例先插入了这一行
+                entityVersionDao.increment(type);
+            }
+        }
+        return load(type).version;
+    }
+
+    /**
+     * 生成ETag，不带引号，由WebRequest#checkNotModified补上
+     * @param params 影响响应内容的请求参数，比如页码和每页条数
+     */
+    public String etag(String type, Object... params) {
+        StringBuilder builder = new StringBuilder(type)
+                .append('-').append(current(type));
+        for (Object param : params) {
+            builder.append('-').append(param);
+        }
+        return builder.toString();
+    }
+
+    private Cached load(String type) {
+        Long found = entityVersionDao.findVersion(type);
+        long version = found == null ? 0 : found;
+        // 并发的读取不能把刚加过的版本号盖回旧值
+        return versions.merge(type, new Cached(version, System.currentTimeMillis()),
+                (old, loaded) -> loaded.version >= old.version ? loaded : old);
+    }
+
+    @Override
+    public String metricsName() {
+        return "entityVersions";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<String, Cached> entry : versions.entrySet()) {
+            metrics.put(entry.getKey(), entry.getValue().version);
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,308 @@
+package com.demo.cache;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 已被占用的名字的内存索引，只回答"一定没有"或"可能有"：一定没有时不用查库，可能有时仍以数据库为准
+ * 行数不超过exactThreshold时用精确的Set，否则用布隆过滤器，按预期行数和误判率分配位数
+ * 两种结构都不支持删除，删除和改名留下的旧名字只会让查询多走一次数据库，累计到一定比例后由调用方重建
+ * 重建期间新增的名字同时写入新旧两个结构，重建完成后直接替换
+ * 多个实例各有一份，别的实例新增的名字这里看不到，会被误答为一定没有；
+ * 调用方定期比较数据库行数和这里记的行数（重建时扫描到的加上本实例之后的增删），对不上或太久没重建时重建
+ */
+public class NameFilter {
+    private final int exactThreshold;
+    private final double falsePositiveRate;
+
+    private volatile Membership current;
+    private volatile Membership pending;
+
+    private final AtomicLong absent = new AtomicLong();
+    private final AtomicLong maybe = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private volatile long builtAt;
+
+    public NameFilter(int exactThreshold, double falsePositiveRate) {
+        this.exactThreshold = exactThreshold;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * 按MySQL默认排序规则（不区分大小写、忽略末尾空格和重音）归一化，能被count查到的写法都映射到同一个键
+     * 多合并了也没关系，只是多查一次库
+     */
+    static String normalize(String name) {
+        String key = Normalizer.normalize(name.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return key.toLowerCase(Locale.ROOT);
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    /**
+     * @return false表示数据库里一定没有这个名字；还没建好时总是返回true
+     */
+    public boolean mightContain(String name) {
+        Membership membership = current;
+        if (membership == null || name == null) {
+            return true;
+        }
+        if (membership.mightContain(normalize(name))) {
+            maybe.incrementAndGet();
+            return true;
+        }
+        absent.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 新增的名字，在数据库写入成功之后调用
+     */
+    public void add(String name) {
+        if (name != null) {
+            addKey(normalize(name));
+            rows.incrementAndGet();
+        }
+    }
+
+    /**
+     * 先读pending再读current：重建完成时先设置current再清空pending，
+     * 读到pending为null时再读到的current一定是新结构，不会只写进被替换掉的旧结构
+     */
+    private void addKey(String key) {
+        Membership next = pending;
+        Membership membership = current;
+        if (next != null) {
+            next.add(key);
+        }
+        if (membership != null && membership != next) {
+            membership.add(key);
+        }
+    }
+
+    /**
+     * 修改后的名字；名字确实变了时旧名字成为过期项
+     */
+    public void rename(String name) {
+        if (name == null) {
+            return;
+        }
+        String key = normalize(name);
+        Membership membership = current;
+        if (membership != null && !membership.mightContain(key)) {
+            stale.incrementAndGet();
+        }
+        addKey(key);
+    }
+
+    /**
+     * 删除了一个名字
+     */
+    public void remove() {
+        stale.incrementAndGet();
+        rows.decrementAndGet();
+    }
+
+    /**
+     * 过滤器说可能有，查库却没有
+     */
+    public void falsePositive() {
+        falsePositives.incrementAndGet();
+    }
+
+    /**
+     * 过期项超过当前大小的十分之一（至少100个）时需要重建
+     */
+    public boolean needsRebuild() {
+        Membership membership = current;
+        return membership == null || stale.get() > Math.max(100, membership.size() / 10);
+    }
+
+    /**
+     * 数据库的行数和本实例记的对不上，说明别的实例增删过
+     */
+    public boolean diverged(long rowCount) {
+        return rowCount != rows.get();
+    }
+
+    /**
+     * 距上次重建完成的毫秒数，还没建好时为Long.MAX_VALUE
+     */
+    public long age() {
+        return current == null ? Long.MAX_VALUE : System.currentTimeMillis() - builtAt;
+    }
+
+    /**
+     * 用scan扫描出的全部名字重建
+     *
+     * @param expected 预计的名字数，决定用哪种结构和布隆过滤器的大小
+     * @param scan     把每个名字交给传入的回调
+     */
+    public void rebuild(long expected, Consumer<Consumer<String>> scan) {
+        Membership next = expected <= exactThreshold ? new ExactSet()
+                : new BloomFilter(Math.max(expected * 2, exactThreshold), falsePositiveRate);
+        long staleBefore = stale.get();
+        long[] scanned = {0};
+        pending = next;
+        try {
+            scan.accept(name -> {
+                scanned[0]++;
+                if (name != null) {
+                    next.add(normalize(name));
+                }
+            });
+            current = next;
+            stale.addAndGet(-staleBefore);
+            rows.set(scanned[0]);
+            builtAt = System.currentTimeMillis();
+            rebuilds.incrementAndGet();
+        } finally {
+            pending = null;
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Membership membership = current;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("type", membership == null ? "none" : membership.getClass().getSimpleName());
+        metrics.put("size", membership == null ? 0 : membership.size());
+        metrics.put("bytes", membership == null ? 0 : membership.bytes());
+        metrics.put("absent", absent.get());
+        metrics.put("maybe", maybe.get());
+        metrics.put("falsePositives", falsePositives.get());
+        metrics.put("stale", stale.get());
+        metrics.put("rows", rows.get());
+        metrics.put("rebuilds", rebuilds.get());
+        return metrics;
+    }
+
+    private interface Membership {
+        boolean mightContain(String key);
+
+        void add(String key);
+
+        long size();
+
+        long bytes();
+    }
+
+    private static class ExactSet implements Membership {
+        private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public boolean mightContain(String key) {
+            return keys.contains(key);
+        }
+
+        @Override
+        public void add(String key) {
+            keys.add(key);
+        }
+
+        @Override
+        public long size() {
+            return keys.size();
+        }
+
+        @Override
+        public long bytes() {
+            // 粗略估计：每项的字符串和哈希表节点约64字节
+            return keys.size() * 64L;
+        }
+    }
+
+    /**
+     * 两个64位哈希组合出k个位置（Kirsch-Mitzenmacher），位数组用AtomicLongArray，add和查询都不加锁
+     */
+    static class BloomFilter implements Membership {
+        private final AtomicLongArray words;
+        private final long bits;
+        private final int hashes;
+        private final AtomicLong size = new AtomicLong();
+
+        BloomFilter(long expected, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+            this.words = new AtomicLongArray(wordCount);
+            this.bits = wordCount * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+        }
+
+        @Override
+        public boolean mightContain(String key) {
+            long h1 = hash(key);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void add(String key) {
+            long h1 = hash(key);
+            long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            boolean changed = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                while (((word = words.get(index)) & mask) == 0) {
+                    if (words.compareAndSet(index, word, word | mask)) {
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            if (changed) {
+                size.incrementAndGet();
+            }
+        }
+
+        @Override
+        public long size() {
+            return size.get();
+        }
+
+        @Override
+        public long bytes() {
+            return words.length() * 8L;
+        }
+
+        private static long hash(String key) {
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x100000001B3L;
+            }
+            return mix(h);
+        }
+
+        /**
+         * MurmurHash3的fmix64，打散FNV的低位
+         */
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.demo.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * 每个用户的订单数，按LRU保留最近访问的用户，未命中时回源数据库
+ * 提交和删除订单时原地加减，避免订单管理页为了总页数再跑一次count
+ * 别的实例的增删这里看不到，每条缓存从回源起最多用cache.order-count.ttl毫秒，过期后重新count
+ */
+@Component
+public class OrderCountCache {
+    private final Map<String, Entry> counts;
+    private final long ttl;
+
+    /**
+     * 每次增减都加一，回源期间如果发生过变更就不缓存回源结果，防止旧值覆盖新值
+     */
+    private long modCount;
+
+    private static class Entry {
+        private final int count;
+        private final long loadedAt;
+
+        Entry(int count, long loadedAt) {
+            this.count = count;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public OrderCountCache(@Value("${cache.order-count.capacity:10000}") int capacity,
+                           @Value("${cache.order-count.ttl:5000}") long ttl) {
+        this.ttl = ttl;
+        this.counts = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public int get(String userID, IntSupplier loader) {
+        long stamp;
+        synchronized (this) {
+            Entry entry = counts.get(userID);
+            if (entry != null && System.currentTimeMillis() - entry.loadedAt < ttl) {
+                return entry.count;
+            }
+            stamp = modCount;
+        }
+        long loadedAt = System.currentTimeMillis();
+        int loaded = loader.getAsInt();
+        synchronized (this) {
+            if (stamp == modCount) {
+                counts.put(userID, new Entry(loaded, loadedAt));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 本实例的增减不延长有效期，有效期只从回源算起
+     */
+    public synchronized void increment(String userID) {
+        modCount++;
+        counts.computeIfPresent(userID, (key, entry) -> new Entry(entry.count + 1, entry.loadedAt));
+    }
+
+    public synchronized void decrement(String userID) {
+        modCount++;
+        counts.computeIfPresent(userID, (key, entry) -> new Entry(Math.max(0, entry.count - 1), entry.loadedAt));
+    }
+}
@@ -0,0 +1,174 @@
+package com.demo.cache;
+
+import com.demo.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 匿名访客公共页面的整页缓存，保存渲染好的UTF-8字节和gzip压缩后的字节，命中时不再经过controller和模板
+ * 键是路径加查询串，条目只保留很短的时间；新闻、场馆变更时由service层按路径作废
+ * 同一个键同时未命中时只有一个请求去渲染，其余请求等它的结果
+ */
+@Component
+public class PageCache implements MetricsSource {
+    private final long ttl;
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 每次作废加一，渲染期间发生过作废就不保存渲染结果，防止旧页面覆盖新数据
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PageCache(@Value("${page-cache.ttl:5000}") long ttl,
+                     @Value("${page-cache.max-entries:1000}") int maxEntries) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+    }
+
+    public static class Entry {
+        private final String contentType;
+        private final byte[] body;
+        private final byte[] gzipped;
+        private final long expiresAt;
+
+        Entry(String contentType, byte[] body, byte[] gzipped, long expiresAt) {
+            this.contentType = contentType;
+            this.body = body;
+            this.gzipped = gzipped;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+    }
+
+    /**
+     * 返回未过期的条目，没有时返回null
+     */
+    public Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.expiresAt < System.currentTimeMillis()) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * 登记正在渲染key，返回null表示调用方负责渲染，渲染结束后必须调用finish；
+     * 否则返回正在进行的那次渲染，结果为null表示那次渲染的页面不能缓存
+     */
+    public CompletableFuture<Entry> begin(String key, CompletableFuture<Entry> flight) {
+        CompletableFuture<Entry> existing = loading.putIfAbsent(key, flight);
+        if (existing == null) {
+            misses.incrementAndGet();
+        } else {
+            coalesced.incrementAndGet();
+        }
+        return existing;
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * 结束一次渲染并唤醒等待的请求，body为null表示页面不能缓存
+     * @param stamp 开始渲染前的generation
+     */
+    public Entry finish(String key, CompletableFuture<Entry> flight, String contentType, byte[] body, long stamp) {
+        Entry entry = null;
+        try {
+            if (body != null) {
+                entry = new Entry(contentType, body, gzip(body), System.currentTimeMillis() + ttl);
+                if (stamp == generation.get() && reserve()) {
+                    entries.put(key, entry);
+                    // put之后再检查一次，防止与invalidate交错时留下旧页面
+                    if (stamp != generation.get()) {
+                        entries.remove(key, entry);
+                    }
+                }
+            }
+        } finally {
+            loading.remove(key, flight);
+            flight.complete(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 作废路径为path的所有页面，不论查询串
+     */
+    public void invalidate(String... paths) {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+        for (String path : paths) {
+            entries.keySet().removeIf(key -> key.equals(path) || key.startsWith(path + "?"));
+        }
+    }
+
+    /**
+     * 条目数到达上限时先清理过期条目，仍然满时不再缓存新页面
+     */
+    private boolean reserve() {
+        if (entries.size() < maxEntries) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt < now);
+        return entries.size() < maxEntries;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public String metricsName() {
+        return "pageCache";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", entries.size());
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("coalesced", coalesced.get());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,133 @@
+package com.demo.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 匿名访客GET公共页面时走整页缓存，已登录用户的页面头部带用户名，不缓存
+ * 排在准入控制之前，命中缓存的请求不占并发名额；开发环境模板随时修改，默认关闭，生产配置中开启
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+public class PageCacheFilter extends OncePerRequestFilter {
+    @Autowired
+    private PageCache pageCache;
+
+    @Value("${page-cache.enabled:false}")
+    private boolean enabled;
+    @Value("${page-cache.paths:/index,/venue_list,/news_list,/news}")
+    private List<String> paths;
+    /**
+     * 等待其它请求渲染的最长时间，超时后自己渲染
+     */
+    @Value("${page-cache.wait-timeout:2000}")
+    private long waitTimeout;
+
+    private Set<String> cachedPaths;
+
+    @Override
+    protected void initFilterBean() {
+        cachedPaths = new HashSet<>(paths);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled || !"GET".equals(request.getMethod()) || !cachedPaths.contains(request.getRequestURI())) {
+            return true;
+        }
+        HttpSession session = request.getSession(false);
+        return session != null && session.getAttribute("user") != null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String key = request.getQueryString() == null ? request.getRequestURI()
+                : request.getRequestURI() + "?" + request.getQueryString();
+        PageCache.Entry entry = pageCache.get(key);
+        if (entry != null) {
+            write(request, response, entry);
+            return;
+        }
+
+        CompletableFuture<PageCache.Entry> flight = new CompletableFuture<>();
+        CompletableFuture<PageCache.Entry> running = pageCache.begin(key, flight);
+        if (running != null) {
+            entry = await(running);
+            if (entry != null) {
+                write(request, response, entry);
+            } else {
+                chain.doFilter(request, response);
+            }
+            return;
+        }
+
+        long stamp = pageCache.generation();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        byte[] body = null;
+        try {
+            wrapper.setHeader("X-Page-Cache", "MISS");
+            chain.doFilter(request, wrapper);
+            if (cacheable(request, wrapper)) {
+                body = wrapper.getContentAsByteArray();
+            }
+        } finally {
+            pageCache.finish(key, flight, wrapper.getContentType(), body, stamp);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    /**
+     * 只缓存正常渲染的HTML，渲染过程中创建了会话的页面带Set-Cookie，不能给其他访客
+     */
+    private boolean cacheable(HttpServletRequest request, ContentCachingResponseWrapper response) {
+        return !request.isAsyncStarted()
+                && response.getStatus() == HttpServletResponse.SC_OK
+                && response.getContentType() != null
+                && response.getContentType().startsWith("text/html")
+                && !response.containsHeader(HttpHeaders.SET_COOKIE);
+    }
+
+    private PageCache.Entry await(CompletableFuture<PageCache.Entry> running) {
+        try {
+            return running.get(waitTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void write(HttpServletRequest request, HttpServletResponse response, PageCache.Entry entry) throws IOException {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        byte[] bytes = gzip ? entry.getGzipped() : entry.getBody();
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(entry.getContentType());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader("X-Page-Cache", "HIT");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+}
@@ -0,0 +1,154 @@
+package com.demo.cache;
+
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * 已占用的userID和场馆名，注册、添加用户/场馆时输入框每次变化都要检查一次是否可用
+ * 过滤器说一定没有时直接回答可用，说可能有时才查库；启动后在后台按主键分批扫描建立，期间照常查库
+ * 增改删由UserService、VenueService同步，删除和改名累计较多时后台重建；
+ * 多实例部署时别的实例的增删这里收不到，行数和数据库对不上或超过max-age没重建时也重建
+ */
+@Component
+public class TakenNames implements MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(TakenNames.class);
+
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private VenueDao venueDao;
+
+    @Value("${taken-names.enabled:true}")
+    private boolean enabled;
+    @Value("${taken-names.batch-size:1000}")
+    private int batchSize;
+    /**
+     * 检查是否需要重建的间隔，毫秒
+     */
+    @Value("${taken-names.check-interval:60000}")
+    private long checkInterval;
+    /**
+     * 行数不变时别的实例改名或先删后增也看不到，最多隔这么久重建一次，毫秒
+     */
+    @Value("${taken-names.max-age:600000}")
+    private long maxAge;
+
+    private final NameFilter userIDs;
+    private final NameFilter venueNames;
+
+    private ScheduledExecutorService executor;
+
+    public TakenNames(@Value("${taken-names.exact-threshold:100000}") int exactThreshold,
+                      @Value("${taken-names.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userIDs = new NameFilter(exactThreshold, falsePositiveRate);
+        this.venueNames = new NameFilter(exactThreshold, falsePositiveRate);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "taken-names");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::refreshSafely, 0, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("taken names rebuild failed, will retry", e);
+        }
+    }
+
+    /**
+     * 重建需要重建的过滤器
+     */
+    public void refresh() {
+        long users = userDao.count();
+        if (userIDs.needsRebuild() || userIDs.diverged(users) || userIDs.age() >= maxAge) {
+            userIDs.rebuild(users, scan(userDao::findUserIDsAfter));
+        }
+        long venues = venueDao.count();
+        if (venueNames.needsRebuild() || venueNames.diverged(venues) || venueNames.age() >= maxAge) {
+            venueNames.rebuild(venues, scan(venueDao::findVenueNamesAfter));
+        }
+    }
+
+    void rebuildUserIDs() {
+        userIDs.rebuild(userDao.count(), scan(userDao::findUserIDsAfter));
+    }
+
+    void rebuildVenueNames() {
+        venueNames.rebuild(venueDao.count(), scan(venueDao::findVenueNamesAfter));
+    }
+
+    /**
+     * 按主键分批读，每批batchSize行，不一次把整张表读进内存
+     */
+    private Consumer<Consumer<String>> scan(BiFunction<Integer, Pageable, List<Object[]>> batch) {
+        return consumer -> {
+            Pageable page = PageRequest.of(0, batchSize);
+            int after = 0;
+            List<Object[]> rows;
+            do {
+                rows = batch.apply(after, page);
+                for (Object[] row : rows) {
+                    after = ((Number) row[0]).intValue();
+                    consumer.accept((String) row[1]);
+                }
+            } while (rows.size() == batchSize);
+        };
+    }
+
+    public NameFilter userIDs() {
+        return userIDs;
+    }
+
+    public NameFilter venueNames() {
+        return venueNames;
+    }
+
+    @Override
+    public String metricsName() {
+        return "takenNames";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("userID", userIDs.metrics());
+        metrics.put("venueName", venueNames.metrics());
+        return metrics;
+    }
+}
@@ -0,0 +1,156 @@
+package com.demo.compose;
+
+import com.demo.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 页面上互不依赖的区块并行加载，页面耗时取最慢的区块而不是各区块之和
+ * 每个区块有超时，超时或出错时用该区块上一次成功的结果顶上，从来没成功过时用调用方给的默认值；
+ * 区块加载时占用用户端连接池的连接，线程数最多取用户端连接池的一半，给下单等请求留出连接；
+ * 线程池和队列都满时不再由请求线程自己加载（那样并发不受限制），直接用上一次成功的结果
+ */
+@Component
+public class SectionLoader implements MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(SectionLoader.class);
+
+    @Value("${compose.threads:4}")
+    private int threads;
+    @Value("${compose.queue-capacity:64}")
+    private int queueCapacity;
+    @Value("${compose.timeout:500}")
+    private long timeout;
+    @Value("${bulkhead.user.pool-size:10}")
+    private int userPoolSize;
+
+    private ThreadPoolExecutor executor;
+    private ScheduledThreadPoolExecutor timer;
+
+    /**
+     * 区块名到上一次成功加载的结果
+     */
+    private final Map<String, Object> lastGood = new ConcurrentHashMap<>();
+    private final Map<String, SectionStats> stats = new ConcurrentHashMap<>();
+
+    private static class SectionStats {
+        private final AtomicLong loads = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+    }
+
+    @PostConstruct
+    public void start() {
+        int size = Math.max(1, Math.min(threads, userPoolSize / 2));
+        if (size < threads) {
+            log.warn("compose.threads={} exceeds half of the user pool ({}), using {}", threads, userPoolSize, size);
+        }
+        AtomicInteger sequence = new AtomicInteger();
+        executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "page-section-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "page-section-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交一个区块，返回的future总是正常完成，最晚在超时时间后给出结果
+     * @param section 区块名，同名区块共享上一次成功的结果
+     * @param fallback 超时或出错且没有上一次成功结果时使用的值
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> load(String section, Supplier<T> loader, T fallback) {
+        SectionStats sectionStats = stats.computeIfAbsent(section, key -> new SectionStats());
+        sectionStats.loads.incrementAndGet();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ScheduledFuture<?> deadline = timer.schedule(() -> {
+            if (result.complete((T) lastGood.getOrDefault(section, fallback))) {
+                sectionStats.timeouts.incrementAndGet();
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        Runnable task = () -> {
+            T value;
+            try {
+                value = loader.get();
+            } catch (Exception e) {
+                sectionStats.failures.incrementAndGet();
+                log.warn("page section {} failed", section, e);
+                deadline.cancel(false);
+                result.complete((T) lastGood.getOrDefault(section, fallback));
+                return;
+            }
+            deadline.cancel(false);
+            if (value != null) {
+                lastGood.put(section, value);
+            }
+            result.complete(value);
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            sectionStats.rejected.incrementAndGet();
+            deadline.cancel(false);
+            result.complete((T) lastGood.getOrDefault(section, fallback));
+        }
+        return result;
+    }
+
+    @Override
+    public String metricsName() {
+        return "pageSections";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("threads", executor.getMaximumPoolSize());
+        metrics.put("active", executor.getActiveCount());
+        metrics.put("queued", executor.getQueue().size());
+        Map<String, Object> sections = new TreeMap<>();
+        for (Map.Entry<String, SectionStats> entry : stats.entrySet()) {
+            Map<String, Object> section = new LinkedHashMap<>();
+            section.put("loads", entry.getValue().loads.get());
+            section.put("timeouts", entry.getValue().timeouts.get());
+            section.put("failures", entry.getValue().failures.get());
+            section.put("rejected", entry.getValue().rejected.get());
+            sections.put(entry.getKey(), section);
+        }
+        metrics.put("sections", sections);
+        return metrics;
+    }
+}
@@ -0,0 +1,44 @@
+package com.demo.config;
+
+import com.demo.bulkhead.Bulkhead;
+import com.demo.bulkhead.RoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 管理端/用户端隔离：两个Hikari连接池，按当前线程所属的一侧路由
+ * 连接池随RoutingDataSource一起在容器关闭时关闭
+ */
+@Configuration
+public class BulkheadConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+                                 @Value("${bulkhead.user.pool-size:10}") int userPoolSize,
+                                 @Value("${bulkhead.admin.pool-size:6}") int adminPoolSize) {
+        Map<Object, Object> pools = new HashMap<>();
+        pools.put(Bulkhead.USER, pool(properties, "user-pool", userPoolSize));
+        pools.put(Bulkhead.ADMIN, pool(properties, "admin-pool", adminPoolSize));
+        RoutingDataSource dataSource = new RoutingDataSource();
+        dataSource.setTargetDataSources(pools);
+        dataSource.setDefaultTargetDataSource(pools.get(Bulkhead.USER));
+        return dataSource;
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, String name, int size) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName(name);
+        pool.setMaximumPoolSize(size);
+        pool.setMinimumIdle(Math.min(2, size));
+        return pool;
+    }
+}
@@ -0,0 +1,85 @@
+package com.demo.controller;
+
+import com.demo.storage.FileServer;
+import com.demo.storage.FileStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+/**
+ * 上传的场馆图片和头像，/file/venue/ab/哈希.png
+ * 文件在本机时交给FileServer用sendfile发送，共享存储等不在本机的文件用FileStore.open()按流拷贝
+ */
+@Controller
+public class FileController {
+    /**
+     * 内容寻址的文件名和它的缩略图，内容不会变
+     */
+    private static final Pattern CONTENT_HASHED = Pattern.compile(".*/[0-9a-f]{64}(_\\d+)?(\\.[a-z0-9]+)?$");
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    @Autowired
+    private FileStore fileStore;
+    @Autowired
+    private FileServer fileServer;
+
+    @GetMapping("/file/**")
+    public void file(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String url = urlPathHelper.getPathWithinApplication(request).substring(1);
+        boolean immutable = CONTENT_HASHED.matcher(url).matches();
+        Path file = resolve(url);
+        if (file != null) {
+            fileServer.serve(file, immutable, request, response);
+            return;
+        }
+        InputStream content = open(url);
+        if (content == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try (InputStream in = content) {
+            fileServer.serve(in, url.substring(url.lastIndexOf('/') + 1), immutable, request, response);
+        }
+    }
+
+    /**
+     * 先找FileStore在本机的文件，再找以前保存在classpath static/file下的旧文件
+     */
+    private Path resolve(String url) {
+        try {
+            Path file = fileStore.localPath(url);
+            if (file != null) {
+                return file;
+            }
+            ClassPathResource legacy = new ClassPathResource("static/" + url);
+            if (legacy.exists() && legacy.isFile()) {
+                return legacy.getFile().toPath();
+            }
+        } catch (RuntimeException | IOException e) {
+            // 非法路径按不存在处理
+        }
+        return null;
+    }
+
+    /**
+     * 不在本机的存储，文件不存在或路径非法时返回null，其他读取错误照常抛出
+     */
+    private InputStream open(String url) throws IOException {
+        try {
+            return fileStore.open(url);
+        } catch (NoSuchFileException | RuntimeException e) {
+            return null;
+        }
+    }
+}
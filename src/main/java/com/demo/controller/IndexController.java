@@ -1,15 +1,13 @@
 package com.demo.controller;
 
-import com.demo.entity.Message;
+import com.demo.compose.SectionLoader;
 import com.demo.entity.News;
 import com.demo.entity.Venue;
 import com.demo.entity.vo.MessageVo;
-import com.demo.service.MessageService;
 import com.demo.service.MessageVoService;
 import com.demo.service.NewsService;
 import com.demo.service.VenueService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -17,7 +15,9 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 public class IndexController {
@@ -28,7 +28,7 @@ public class IndexController {
     @Autowired
     private MessageVoService messageVoService;
     @Autowired
-    private MessageService messageService;
+    private SectionLoader sectionLoader;
 
     @GetMapping("/index")
     public String index(Model model){
@@ -36,15 +36,18 @@ public class IndexController {
         Pageable news_pageable= PageRequest.of(0,5, Sort.by("time").descending());
         Pageable message_pageable= PageRequest.of(0,5, Sort.by("time").descending());
 
-        List<Venue> venue_list=venueService.findAll(venue_pageable).getContent();
-        List<News> news_list= newsService.findAll(news_pageable).getContent();
-        Page<Message> messages=messageService.findPassState(message_pageable);
-        List<MessageVo> message_list=messageVoService.returnVo(messages.getContent());
+        // 三个区块互不依赖，并行加载
+        CompletableFuture<List<Venue>> venue_future=sectionLoader.load("index.venue",
+                () -> venueService.findAll(venue_pageable).getContent(), Collections.emptyList());
+        CompletableFuture<List<News>> news_future=sectionLoader.load("index.news",
+                () -> newsService.findAll(news_pageable).getContent(), Collections.emptyList());
+        CompletableFuture<List<MessageVo>> message_future=sectionLoader.load("index.message",
+                () -> messageVoService.findPassStateVo(message_pageable).getContent(), Collections.emptyList());
 
         model.addAttribute("user", null);
-        model.addAttribute("news_list",news_list);
-        model.addAttribute("venue_list",venue_list);
-        model.addAttribute("message_list",message_list);
+        model.addAttribute("news_list",news_future.join());
+        model.addAttribute("venue_list",venue_future.join());
+        model.addAttribute("message_list",message_future.join());
         return "index";
     }
 
@@ -0,0 +1,36 @@
+package com.demo.controller.admin;
+
+import com.demo.entity.OutboxEvent;
+import com.demo.entity.vo.ChangeFeedVo;
+import com.demo.service.OutboxService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+
+@Controller
+public class AdminChangeFeedController {
+    private static final int MAX_LIMIT = 500;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    /**
+     * 按游标读取订单和留言的状态变更
+     * @param after 上次返回的cursor，首次传0
+     * @param limit 每次最多返回的条数
+     * @return
+     */
+    @GetMapping("/admin/changeFeed.do")
+    @ResponseBody
+    public ChangeFeedVo changeFeed(@RequestParam(value = "after", defaultValue = "0") long after,
+                                   @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        List<OutboxEvent> events = outboxService.findAfter(after, limit);
+        long cursor = events.isEmpty() ? after : events.get(events.size() - 1).getEventID();
+        return new ChangeFeedVo(events, cursor);
+    }
+}
@@ -0,0 +1,70 @@
+package com.demo.controller.admin;
+
+import com.demo.entity.Keyword;
+import com.demo.moderation.KeywordFilter;
+import com.demo.service.KeywordService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@Controller
+public class AdminKeywordController {
+    @Autowired
+    private KeywordService keywordService;
+    @Autowired
+    private KeywordFilter keywordFilter;
+
+    @GetMapping("/keyword_manage")
+    public String keyword_manage(Model model){
+        Pageable keyword_pageable= PageRequest.of(0,10, Sort.by("keywordID").descending());
+        Page<Keyword> keywords=keywordService.findAll(keyword_pageable);
+        model.addAttribute("total",keywords.getTotalPages());
+        return "admin/keyword_manage";
+    }
+
+    @GetMapping("/keywordList.do")
+    @ResponseBody
+    public List<Keyword> keywordList(@RequestParam(value = "page",defaultValue = "1")int page){
+        Pageable keyword_pageable= PageRequest.of(page-1,10, Sort.by("keywordID").descending());
+        return keywordService.findAll(keyword_pageable).getContent();
+    }
+
+    /**
+     * 添加关键词，已存在时返回false
+     */
+    @PostMapping("/addKeyword.do")
+    @ResponseBody
+    public boolean addKeyword(String word,int type){
+        if(word==null||word.trim().isEmpty()) {
+            throw new RuntimeException("关键词不能为空");
+        }
+        if(keywordService.countWord(word.trim())>0) {
+            return false;
+        }
+        keywordService.create(new Keyword(0,word.trim(),type));
+        return true;
+    }
+
+    @PostMapping("/delKeyword.do")
+    @ResponseBody
+    public boolean delKeyword(int keywordID){
+        keywordService.delById(keywordID);
+        return true;
+    }
+
+    /**
+     * 用当前生效的关键词试审一段内容，返回留言会进入的状态
+     */
+    @PostMapping("/checkKeyword.do")
+    @ResponseBody
+    public int checkKeyword(String content){
+        return keywordFilter.moderate(content);
+    }
+}
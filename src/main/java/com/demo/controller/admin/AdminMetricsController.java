@@ -0,0 +1,31 @@
+package com.demo.controller.admin;
+
+import com.demo.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Controller
+public class AdminMetricsController {
+    @Autowired
+    private List<MetricsSource> metricsSources;
+
+    /**
+     * 查看各后台组件的运行指标
+     * @return 组件名到指标的映射
+     */
+    @GetMapping("/admin/metrics.do")
+    @ResponseBody
+    public Map<String, Map<String, Object>> metrics() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (MetricsSource source : metricsSources) {
+            result.put(source.metricsName(), source.metrics());
+        }
+        return result;
+    }
+}
@@ -1,5 +1,6 @@
 package com.demo.controller.admin;
 
+import com.demo.cache.EntityVersions;
 import com.demo.entity.News;
 import com.demo.service.NewsService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +11,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -20,6 +22,8 @@ import java.util.List;
 public class AdminNewsController {
     @Autowired
     private NewsService newsService;
+    @Autowired
+    private EntityVersions entityVersions;
 
     @GetMapping("/news_manage")
     public String news_manage(Model model){
@@ -43,7 +47,10 @@ public class AdminNewsController {
 
     @RequestMapping("/newsList.do")
     @ResponseBody
-    public List<News> newsList(@RequestParam(value = "page",defaultValue = "1")int page){
+    public List<News> newsList(@RequestParam(value = "page",defaultValue = "1")int page, WebRequest webRequest){
+        if(webRequest.checkNotModified(entityVersions.etag(EntityVersions.NEWS,page,10))){
+            return null;
+        }
         Pageable news_pageable= PageRequest.of(page-1,10, Sort.by("time").descending());
         Page<News> news=newsService.findAll(news_pageable);
         return news.getContent();
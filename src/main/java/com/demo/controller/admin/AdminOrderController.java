@@ -1,12 +1,16 @@
 package com.demo.controller.admin;
 
+import com.demo.bulkhead.AdminTasks;
 import com.demo.entity.Order;
+import com.demo.entity.Venue;
 import com.demo.entity.vo.OrderVo;
 import com.demo.service.OrderService;
 import com.demo.service.OrderVoService;
+import com.demo.service.VenueService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -14,8 +18,20 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 public class AdminOrderController {
@@ -23,16 +39,25 @@ public class AdminOrderController {
     private OrderService orderService;
     @Autowired
     private OrderVoService orderVoService;
+    @Autowired
+    private VenueService venueService;
+    @Autowired
+    private AdminTasks adminTasks;
+
+    private static final String[] STATE_NAMES = {"", "未审核", "已审核", "已完成", "失效"};
 
+    //已审核订单不分页，交给管理端线程池执行，不占用Tomcat工作线程
     @GetMapping("/reservation_manage")
-    public String reservation_manage(Model model){
-        List<Order> orders= orderService.findAuditOrder();
-        List<OrderVo> orderVos=orderVoService.returnVo(orders);
-        Pageable order_pageable= PageRequest.of(0,10, Sort.by("orderTime").descending());
-        model.addAttribute("order_list",orderVos);
-        model.addAttribute("total",orderService.findNoAuditOrder(order_pageable).getTotalPages());
+    public WebAsyncTask<String> reservation_manage(Model model){
+        return adminTasks.submit(() -> {
+            List<Order> orders= orderService.findAuditOrder();
+            List<OrderVo> orderVos=orderVoService.returnVo(orders);
+            Pageable order_pageable= PageRequest.of(0,10, Sort.by("orderTime").descending());
+            model.addAttribute("order_list",orderVos);
+            model.addAttribute("total",orderService.findNoAuditOrder(order_pageable).getTotalPages());
 
-        return "admin/reservation_manage";
+            return "admin/reservation_manage";
+        });
     }
 
     /**
@@ -42,10 +67,13 @@ public class AdminOrderController {
      */
     @GetMapping("/admin/getOrderList.do")
     @ResponseBody
-    public List<OrderVo> getNoAuditOrder(@RequestParam(value = "page",defaultValue = "1")int page){
+    public WebAsyncTask<List<OrderVo>> getNoAuditOrder(@RequestParam(value = "page",defaultValue = "1")int page, HttpServletResponse response){
         Pageable order_pageable= PageRequest.of(page-1,10, Sort.by("orderTime").descending());
-        List<Order> orders=orderService.findNoAuditOrder(order_pageable).getContent();
-        return orderVoService.returnVo(orders);
+        return adminTasks.submit(() -> {
+            Slice<Order> orders=orderService.findNoAuditOrderSlice(order_pageable);
+            response.setHeader("X-Has-More",String.valueOf(orders.hasNext()));
+            return orderVoService.returnVo(orders.getContent());
+        });
     }
 
     @PostMapping("/passOrder.do")
@@ -61,4 +89,80 @@ public class AdminOrderController {
         orderService.rejectOrder(orderID);
         return true;
     }
+
+    /**
+     * 按日期区间导出订单为CSV，逐行写入输出流
+     * @param startDate 起始日期 yyyy-MM-dd
+     * @param endDate 结束日期 yyyy-MM-dd（包含当天）
+     * @param state 订单状态，0表示全部
+     * 在管理端线程池中直接写响应，返回null表示响应已经写完
+     */
+    @GetMapping("/admin/exportOrder.do")
+    @ResponseBody
+    public WebAsyncTask<Object> exportOrder(String startDate, String endDate, @RequestParam(value = "state", defaultValue = "0") int state,
+                                            HttpServletResponse response) {
+        LocalDateTime start = LocalDate.parse(startDate).atStartOfDay();
+        LocalDateTime end = LocalDate.parse(endDate).plusDays(1).atStartOfDay();
+        return adminTasks.stream(() -> {
+            writeOrderCsv(start, end, state, response, startDate + "_" + endDate);
+            return null;
+        });
+    }
+
+    private void writeOrderCsv(LocalDateTime start, LocalDateTime end, int state, HttpServletResponse response, String range) throws IOException {
+
+        Map<Integer, String> venueNames = new HashMap<>();
+        for (Venue venue : venueService.findAll()) {
+            venueNames.put(venue.getVenueID(), venue.getVenueName());
+        }
+
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=order_" + range + ".csv");
+        PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8)));
+        // BOM，Excel据此按UTF-8打开中文
+        writer.write('\ufeff');
+        writer.println("订单号,用户,场馆,状态,预约时间,时长,金额,下单时间");
+        writer.flush();
+
+        DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        int[] rows = {0};
+        orderService.exportOrder(start, end, state, order -> {
+            writer.print(order.getOrderID());
+            writer.print(',');
+            writer.print(csv(order.getUserID()));
+            writer.print(',');
+            writer.print(csv(venueNames.get(order.getVenueID())));
+            writer.print(',');
+            writer.print(order.getState() > 0 && order.getState() < STATE_NAMES.length ? STATE_NAMES[order.getState()] : "");
+            writer.print(',');
+            writer.print(order.getStartTime() == null ? "" : df.format(order.getStartTime()));
+            writer.print(',');
+            writer.print(order.getHours());
+            writer.print(',');
+            writer.print(order.getTotal());
+            writer.print(',');
+            writer.println(order.getOrderTime() == null ? "" : df.format(order.getOrderTime()));
+            if (++rows[0] % 500 == 0) {
+                writer.flush();
+            }
+        });
+        writer.flush();
+    }
+
+    /**
+     * 用户填写的内容以=、+、-、@开头时Excel会当公式执行，前面加单引号按文本显示
+     */
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
 }
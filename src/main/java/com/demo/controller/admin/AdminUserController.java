@@ -60,7 +60,10 @@ public class AdminUserController {
         User user=userService.findByUserID(oldUserID);
         user.setUserID(userID);
         user.setUserName(userName);
-        user.setPassword(password);
+        // 表单里不回显密码，留空表示不修改
+        if(password!=null&&!"".equals(password)){
+            user.setPassword(userService.hashPassword(password));
+        }
         user.setEmail(email);
         user.setPhone(phone);
         userService.updateUser(user);
@@ -70,6 +73,10 @@ public class AdminUserController {
     @PostMapping("/addUser.do")
     public void addUser(String userID,String userName, String password, String email, String phone,
                         HttpServletRequest request, HttpServletResponse response) throws IOException{
+        if(userService.findByUserID(userID)!=null){
+            response.sendRedirect("user_add");
+            return;
+        }
         User user=new User();
         user.setUserID(userID);
         user.setUserName(userName);
@@ -1,8 +1,11 @@
 package com.demo.controller.admin;
 
+import com.demo.cache.EntityVersions;
 import com.demo.entity.Venue;
 import com.demo.service.VenueService;
-import com.demo.utils.FileUtil;
+import com.demo.storage.StreamingUpload;
+import com.demo.storage.ThumbnailService;
+import com.demo.storage.UploadForm;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -10,18 +13,23 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.List;
-import java.util.Objects;
 
 @Controller
 public class AdminVenueController {
     @Autowired
     private VenueService venueService;
+    @Autowired
+    private EntityVersions entityVersions;
+    @Autowired
+    private StreamingUpload streamingUpload;
+    @Autowired
+    private ThumbnailService thumbnailService;
 
 
     @RequestMapping("/venue_manage")
@@ -45,7 +53,10 @@ public class AdminVenueController {
 
     @GetMapping("/venueList.do")
     @ResponseBody
-    public List<Venue> getVenueList(@RequestParam(value = "page",defaultValue = "1")int page){
+    public List<Venue> getVenueList(@RequestParam(value = "page",defaultValue = "1")int page, WebRequest webRequest){
+        if(webRequest.checkNotModified(entityVersions.etag(EntityVersions.VENUE,page,10))){
+            return null;
+        }
         Pageable pageable= PageRequest.of(page-1,10, Sort.by("venueID").ascending());
         return venueService.findAll(pageable).getContent();
 
@@ -53,19 +64,19 @@ public class AdminVenueController {
 
     @PostMapping("/addVenue.do")
     @ResponseBody
-    public void addVenue(String venueName, String address, String description,
-                         int price, MultipartFile picture, String open_time,String close_time,HttpServletRequest request,
-                         HttpServletResponse response) throws Exception {
+    public void addVenue(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        UploadForm form=streamingUpload.parse(request,"venue","picture");
         Venue venue=new Venue();
-        venue.setVenueName(venueName);
-        venue.setAddress(address);
-        venue.setDescription(description);
-        venue.setPrice(price);
-        venue.setOpen_time(open_time);
-        venue.setClose_time(close_time);
-
-        if(!Objects.equals(picture.getOriginalFilename(), "")){
-            venue.setPicture(FileUtil.saveVenueFile(picture));
+        venue.setVenueName(form.get("venueName"));
+        venue.setAddress(form.get("address"));
+        venue.setDescription(form.get("description"));
+        venue.setPrice(form.getInt("price"));
+        venue.setOpen_time(form.get("open_time"));
+        venue.setClose_time(form.get("close_time"));
+
+        if(form.getPicture()!=null){
+            venue.setPicture(form.getPicture());
+            thumbnailService.submit(venue.getPicture());
         }else{
             venue.setPicture("");
         }
@@ -81,19 +92,19 @@ public class AdminVenueController {
 
     @PostMapping("/modifyVenue.do")
     @ResponseBody
-    public void modifyVenue(int venueID,String venueName, String address, String description,
-                            int price, MultipartFile picture, String open_time,String close_time,HttpServletRequest request,
-                            HttpServletResponse response) throws Exception {
-        Venue venue=venueService.findByVenueID(venueID);
-        venue.setVenueName(venueName);
-        venue.setAddress(address);
-        venue.setDescription(description);
-        venue.setPrice(price);
-        if(!Objects.equals(picture.getOriginalFilename(), "")){
-            venue.setPicture(FileUtil.saveVenueFile(picture));
+    public void modifyVenue(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        UploadForm form=streamingUpload.parse(request,"venue","picture");
+        Venue venue=venueService.findByVenueID(form.getInt("venueID"));
+        venue.setVenueName(form.get("venueName"));
+        venue.setAddress(form.get("address"));
+        venue.setDescription(form.get("description"));
+        venue.setPrice(form.getInt("price"));
+        if(form.getPicture()!=null){
+            venue.setPicture(form.getPicture());
+            thumbnailService.submit(venue.getPicture());
         }
-        venue.setOpen_time(open_time);
-        venue.setClose_time(close_time);
+        venue.setOpen_time(form.get("open_time"));
+        venue.setClose_time(form.get("close_time"));
         venueService.update(venue);
         response.sendRedirect("venue_manage");
     }
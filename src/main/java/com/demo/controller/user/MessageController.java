@@ -1,21 +1,27 @@
 package com.demo.controller.user;
 
+import com.demo.auth.LoginUser;
+import com.demo.cache.ApprovedMessageFeed;
 import com.demo.entity.Message;
-import com.demo.entity.User;
 import com.demo.entity.vo.MessageVo;
+import com.demo.moderation.KeywordFilter;
+import com.demo.notify.MessageBroadcaster;
 import com.demo.service.MessageService;
 import com.demo.service.MessageVoService;
-import com.demo.exception.LoginException;
+import com.demo.ratelimit.RateLimit;
+import com.demo.session.SessionUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -27,20 +33,20 @@ public class MessageController {
     private MessageService messageService;
     @Autowired
     private MessageVoService messageVoService;
+    @Autowired
+    private ApprovedMessageFeed approvedMessageFeed;
+    @Autowired
+    private MessageBroadcaster messageBroadcaster;
+    @Autowired
+    private KeywordFilter keywordFilter;
 
     @GetMapping("/message_list")
-    public String message_list(Model model,HttpServletRequest request)throws Exception{
+    public String message_list(Model model,@LoginUser SessionUser loginUser)throws Exception{
         Pageable message_pageable= PageRequest.of(0,5, Sort.by("time").descending());
-        Page<Message> messages=messageService.findPassState(message_pageable);
-        List<MessageVo> message_list=messageVoService.returnVo(messages.getContent());
+        Page<MessageVo> messages=messageVoService.findPassStateVo(message_pageable);
 
         model.addAttribute("total",messages.getTotalPages());
 
-        Object user=request.getSession().getAttribute("user");
-        if(user==null) {
-            throw new LoginException("请登录！");
-        }
-        User loginUser=(User)user;
 
             Pageable user_message_pageable = PageRequest.of(0,5, Sort.by("time").descending());
             model.addAttribute("user_total",messageService.findByUser(loginUser.getUserID(),user_message_pageable).getTotalPages());
@@ -50,61 +56,72 @@ public class MessageController {
         return "message_list";
     }
 
-    //只显示通过状态的留言
+    //只显示通过状态的留言，前几页直接读缓存的最新留言，超出缓存范围时查库且不再count，是否有下一页放在X-Has-More响应头
     @GetMapping("/message/getMessageList")
     @ResponseBody
-    public List<MessageVo> message_list(@RequestParam(value = "page",defaultValue = "1")int page){
+    public List<MessageVo> message_list(@RequestParam(value = "page",defaultValue = "1")int page, HttpServletResponse response){
         System.out.println("success");
         Pageable message_pageable= PageRequest.of(page-1,5, Sort.by("time").descending());
-        Page<Message> messages=messageService.findPassState(message_pageable);
+        if(message_pageable.getOffset()+message_pageable.getPageSize()<=approvedMessageFeed.capacity()) {
+            Page<MessageVo> messages=messageVoService.findPassStateVo(message_pageable);
+            response.setHeader("X-Has-More",String.valueOf(messages.hasNext()));
+            return messages.getContent();
+        }
+        Slice<Message> messages=messageService.findPassStateSlice(message_pageable);
         List<MessageVo> message_list=messageVoService.returnVo(messages.getContent());
 
+        response.setHeader("X-Has-More",String.valueOf(messages.hasNext()));
         return message_list;
     }
 
+    //订阅新通过审核的留言，连接由异步servlet托管，不占用工作线程
+    @GetMapping(value = "/message/stream",produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter message_stream(@LoginUser SessionUser loginUser){
+        return messageBroadcaster.subscribe();
+    }
+
     //User的留言不管是否通过都显示
     @GetMapping("/message/findUserList")
     @ResponseBody
-    public List<MessageVo> user_message_list(@RequestParam(value = "page",defaultValue = "1")int page,HttpServletRequest request){
+    public List<MessageVo> user_message_list(@RequestParam(value = "page",defaultValue = "1")int page,@LoginUser SessionUser loginUser,HttpServletResponse response){
         System.out.println("find user messages");
 //        if(request.getSession().getAttribute("user")!=null) {
-        Object user=request.getSession().getAttribute("user");
-        if(user==null) {
-            throw new LoginException("请登录！");
-        }
-        User loginUser=(User)user;
 
             Pageable message_pageable = PageRequest.of(page - 1, 5, Sort.by("time").descending());
-            List<Message> user_messages = messageService.findByUser(loginUser.getUserID(), message_pageable).getContent();
-            return messageVoService.returnVo(user_messages);
+            Slice<Message> user_messages = messageService.findByUserSlice(loginUser.getUserID(), message_pageable);
+            response.setHeader("X-Has-More",String.valueOf(user_messages.hasNext()));
+            return messageVoService.returnVo(user_messages.getContent());
 //        }
 //        return null;
     }
 
     @PostMapping("/sendMessage")
+    @RateLimit("message-send")
     @ResponseBody
     public void sendMessage(String userID, String content, HttpServletResponse response) throws IOException {
         Message message=new Message();
         message.setUserID(userID);
         message.setContent(content);
-        message.setState(1);
+        message.setState(keywordFilter.moderate(content));
         message.setTime(LocalDateTime.now());
         messageService.create(message);
         response.sendRedirect("/message_list");
     }
 
     @PostMapping("/modifyMessage.do")
+    @RateLimit("message-modify")
     @ResponseBody
     public boolean modifyMessage(int messageID,String content, HttpServletResponse response) throws IOException {
         Message message=messageService.findById(messageID);
         message.setContent(content);
         message.setTime(LocalDateTime.now());
-        message.setState(1);
+        message.setState(keywordFilter.moderate(content));
         messageService.update(message);
         return true;
     }
 
     @PostMapping("/delMessage.do")
+    @RateLimit("message-delete")
     @ResponseBody
     public boolean delMessage(int messageID)
     {
@@ -1,24 +1,30 @@
 package com.demo.controller.user;
 
+import com.demo.cache.EntityVersions;
 import com.demo.entity.News;
 import com.demo.service.NewsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 
 @Controller
 public class NewsController {
     @Autowired
     private NewsService newsService;
+    @Autowired
+    private EntityVersions entityVersions;
 
     @GetMapping("/news")
     public String news(Model model,int newsID){
@@ -27,12 +33,22 @@ public class NewsController {
         return "news";
     }
 
+    /**
+     * 分页查看新闻，总页数在news_list页面渲染时已给出，这里不再count
+     * 返回的Slice中last表示是否最后一页，同时放在X-Has-More响应头
+     * 新闻没有变化时按ETag返回304，不查数据库
+     */
     @GetMapping("/news/getNewsList")
     @ResponseBody
-    public Page<News> news_list(@RequestParam(value = "page",defaultValue = "1")int page){
+    public Slice<News> news_list(@RequestParam(value = "page",defaultValue = "1")int page, HttpServletResponse response, WebRequest webRequest){
         System.out.println("success");
+        if(webRequest.checkNotModified(entityVersions.etag(EntityVersions.NEWS,page,5))){
+            return null;
+        }
         Pageable news_pageable= PageRequest.of(page-1,5, Sort.by("time").descending());
-        return newsService.findAll(news_pageable);
+        Slice<News> news=newsService.findAllSlice(news_pageable);
+        response.setHeader("X-Has-More",String.valueOf(news.hasNext()));
+        return news;
     }
 
     @GetMapping("/news_list")
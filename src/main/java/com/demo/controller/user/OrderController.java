@@ -1,24 +1,24 @@
 package com.demo.controller.user;
 
+import com.demo.auth.LoginUser;
 import com.demo.entity.Order;
-import com.demo.entity.User;
 import com.demo.entity.Venue;
 import com.demo.entity.vo.OrderVo;
 import com.demo.entity.vo.VenueOrder;
 import com.demo.service.OrderService;
 import com.demo.service.OrderVoService;
 import com.demo.service.VenueService;
-import com.demo.exception.LoginException;
+import com.demo.ratelimit.RateLimit;
+import com.demo.session.SessionUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
-import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -34,16 +34,12 @@ public class OrderController {
     private VenueService venueService;
 
     @GetMapping("/order_manage")
-    public String order_manage(Model model,HttpServletRequest request){
-        Pageable order_pageable = PageRequest.of(0,5, Sort.by("orderTime").descending());
-        Object user=request.getSession().getAttribute("user");
-        if(user==null) {
-            throw new LoginException("请登录！");
-        }
-        User loginUser=(User)user;
-        Page<Order> page=orderService.findUserOrder(loginUser.getUserID(),order_pageable);
-
-        model.addAttribute("total",page.getTotalPages());
+    public String order_manage(Model model,@LoginUser SessionUser loginUser){
+        int count=orderService.countUserOrder(loginUser.getUserID());
+        int pageSize=5;
+
+        // 总页数由订单计数缓存得出，无需再跑分页查询；没有订单时也保留1页供分页控件显示
+        model.addAttribute("total",Math.max(1,(count+pageSize-1)/pageSize));
         return "order_manage";
     }
 
@@ -62,32 +58,26 @@ public class OrderController {
 
     @GetMapping("/getOrderList.do")
     @ResponseBody
-    public List<OrderVo> order_list(@RequestParam(value = "page",defaultValue = "1")int page, HttpServletRequest request){
+    public List<OrderVo> order_list(@RequestParam(value = "page",defaultValue = "1")int page, @LoginUser SessionUser loginUser, HttpServletResponse response){
         Pageable order_pageable = PageRequest.of(page-1,5, Sort.by("orderTime").descending());
-        Object user=request.getSession().getAttribute("user");
-        if(user==null) {
-            throw new LoginException("请登录！");
-        }
-        User loginUser=(User)user;
-        Page<Order> page1=orderService.findUserOrder(loginUser.getUserID(),order_pageable);
+        // 总页数来自订单计数缓存，这里只取当前页，是否有下一页放在X-Has-More响应头
+        Slice<Order> page1=orderService.findUserOrderSlice(loginUser.getUserID(),order_pageable);
+        response.setHeader("X-Has-More",String.valueOf(page1.hasNext()));
         return orderVoService.returnVo(page1.getContent());
     }
 
     @PostMapping("/addOrder.do")
-    public void addOrder(String venueName, String date, String startTime, int hours,HttpServletRequest request, HttpServletResponse response) throws Exception {
+    @RateLimit("order-add")
+    public void addOrder(String venueName, String date, String startTime, int hours,@LoginUser SessionUser loginUser, HttpServletResponse response) throws Exception {
         date=startTime+":00";
         DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         LocalDateTime ldt = LocalDateTime.parse(date,df);
-        Object user=request.getSession().getAttribute("user");
-        if(user==null) {
-            throw new LoginException("请登录！");
-        }
-        User loginUser=(User)user;
         orderService.submit(venueName,ldt,hours,loginUser.getUserID());
         response.sendRedirect("order_manage");
     }
 
     @PostMapping("/finishOrder.do")
+    @RateLimit("order-finish")
     @ResponseBody
     public void finishOrder(int orderID) {
         orderService.finishOrder(orderID);
@@ -103,22 +93,19 @@ public class OrderController {
     }
 
     @PostMapping("/modifyOrder")
+    @RateLimit("order-modify")
     @ResponseBody
-    public boolean modifyOrder(String venueName, String date, String startTime, int hours,int orderID, HttpServletRequest request, HttpServletResponse response) throws Exception {
+    public boolean modifyOrder(String venueName, String date, String startTime, int hours,int orderID, @LoginUser SessionUser loginUser, HttpServletResponse response) throws Exception {
         date=startTime+":00";
         DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         LocalDateTime ldt = LocalDateTime.parse(date,df);
-        Object user=request.getSession().getAttribute("user");
-        if(user==null) {
-            throw new LoginException("请登录！");
-        }
-        User loginUser=(User)user;
         orderService.updateOrder(orderID,venueName,ldt,hours,loginUser.getUserID());
         response.sendRedirect("order_manage");
         return true;
     }
 
     @PostMapping("/delOrder.do")
+    @RateLimit("order-delete")
     @ResponseBody
     public boolean delOrder(int orderID) {
         orderService.delOrder(orderID);
@@ -1,23 +1,38 @@
 package com.demo.controller.user;
 
+import com.demo.auth.PasswordVerifier;
+import com.demo.auth.TokenService;
 import com.demo.entity.User;
 import com.demo.service.UserService;
-import com.demo.utils.FileUtil;
+import com.demo.session.SessionUser;
+import com.demo.storage.StreamingUpload;
+import com.demo.storage.ThumbnailService;
+import com.demo.storage.UploadForm;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 import java.io.IOException;
-import java.util.Objects;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Controller
 public class UserController {
     @Autowired
     private UserService userService;
+    @Autowired
+    private StreamingUpload streamingUpload;
+    @Autowired
+    private ThumbnailService thumbnailService;
+    @Autowired
+    private TokenService tokenService;
+    @Autowired
+    private PasswordVerifier passwordVerifier;
 
     @GetMapping("/signup")
     public String signUp(){
@@ -37,13 +52,21 @@ public class UserController {
     public String login(String userID,String password, HttpServletRequest request) throws IOException {
         User user=userService.checkLogin(userID,password);
         if(user!=null){
+            //登录前已有的会话id可能是别人预先塞给浏览器的，登录时换一个新id，防止会话固定；新建的会话id本来就是新的
+            HttpSession session=request.getSession(false);
+            if(session!=null){
+                request.changeSessionId();
+            }
+            else{
+                session=request.getSession();
+            }
             if(user.getIsadmin()==0){
-                request.getSession().setAttribute("user",user);
+                session.setAttribute("user",SessionUser.of(user));
                 System.out.println("user login!");
                 return "/index";
             }
             else if(user.getIsadmin()==1){
-                request.getSession().setAttribute("admin",user);
+                session.setAttribute("admin",SessionUser.of(user));
                 System.out.println("admin login!");
                 return "/admin_index";
             }
@@ -52,9 +75,33 @@ public class UserController {
 
     }
 
+    //JSON接口用的无状态令牌，请求时放在Authorization: Bearer头里；只发给普通用户，未开启令牌认证时返回404
+    @PostMapping("/token.do")
+    @ResponseBody
+    public Map<String,Object> token(String userID,String password,HttpServletResponse response){
+        if(!tokenService.isEnabled()){
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        User user=userService.checkLogin(userID,password);
+        if(user==null||user.getIsadmin()!=0){
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return null;
+        }
+        Map<String,Object> result=new LinkedHashMap<>();
+        result.put("token",tokenService.issue(SessionUser.of(user)));
+        result.put("expiresIn",tokenService.getTtl());
+        return result;
+    }
+
     @PostMapping("/register.do")
     public void register(String userID,String userName, String password, String email, String phone,
                          HttpServletResponse response) throws IOException{
+        //页面上的checkUserID.do只是提示，可能用的是没收到别的实例新增的过滤器，这里直接查库
+        if(userService.findByUserID(userID)!=null){
+            response.sendRedirect("signup");
+            return;
+        }
         User user=new User();
         user.setUserID(userID);
         user.setUserName(userName);
@@ -62,7 +109,13 @@ public class UserController {
         user.setEmail(email);
         user.setPhone(phone);
         user.setPicture("");
-        userService.create(user);
+        try {
+            userService.create(user);
+        } catch (DataIntegrityViolationException e) {
+            //同时注册同一个userID，被唯一索引拦下
+            response.sendRedirect("signup");
+            return;
+        }
         response.sendRedirect("login");
     }
 
@@ -82,21 +135,23 @@ public class UserController {
 
 
     @PostMapping("/updateUser.do")
-    public void updateUser(String userName, String userID, String passwordNew,String email, String phone, MultipartFile picture,HttpServletRequest request, HttpServletResponse response) throws Exception {
-        User user=userService.findByUserID(userID);
-        user.setUserName(userName);
+    public void updateUser(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        UploadForm form=streamingUpload.parse(request,"user","picture");
+        User user=userService.findByUserID(form.get("userID"));
+        user.setUserName(form.get("userName"));
+        String passwordNew=form.get("passwordNew");
         if(passwordNew!=null&& !"".equals(passwordNew)){
-            user.setPassword(passwordNew);
+            user.setPassword(userService.hashPassword(passwordNew));
         }
-        user.setEmail(email);
-        user.setPhone(phone);
-        if(!Objects.equals(picture.getOriginalFilename(), "")){
-            user.setPicture(FileUtil.saveUserFile(picture));
+        user.setEmail(form.get("email"));
+        user.setPhone(form.get("phone"));
+        if(form.getPicture()!=null){
+            user.setPicture(form.getPicture());
+            thumbnailService.submit(user.getPicture());
         }
 
         userService.updateUser(user);
-        request.getSession().removeAttribute("user");
-        request.getSession().setAttribute("user",user);
+        request.getSession().setAttribute("user",SessionUser.of(user));
         response.sendRedirect("user_info");
     }
 
@@ -106,11 +161,16 @@ public class UserController {
     public boolean checkPassword(String userID,String password)
     {
         User user=userService.findByUserID(userID);
-        return user.getPassword().equals(password);
+        return passwordVerifier.verify(userID,password,user.getPassword());
     }
 
     @GetMapping("/user_info")
-    public String user_info(Model model){
+    public String user_info(Model model,HttpServletRequest request){
+        Object user=request.getSession().getAttribute("user");
+        if(user!=null){
+            // 会话里只有基本信息，邮箱、电话等从数据库读
+            model.addAttribute("user",userService.findByUserID(((SessionUser)user).getUserID()));
+        }
         return "user_info";
     }
 }
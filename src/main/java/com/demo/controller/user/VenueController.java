@@ -1,5 +1,6 @@
 package com.demo.controller.user;
 
+import com.demo.cache.EntityVersions;
 import com.demo.entity.Venue;
 import com.demo.service.VenueService;
 
@@ -13,6 +14,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -20,6 +22,8 @@ import java.util.List;
 public class VenueController {
     @Autowired
     private VenueService venueService;
+    @Autowired
+    private EntityVersions entityVersions;
 
     /**
      * 场馆详情页面
@@ -32,13 +36,16 @@ public class VenueController {
     }
 
     /**
-     * 分页查看场馆
+     * 分页查看场馆，场馆没有变化时按ETag返回304，不查数据库
      *@param page
      */
     @ResponseBody
     @GetMapping("/venuelist/getVenueList")
-    public Page<Venue> venue_list(@RequestParam(value = "page",defaultValue = "1")int page){
+    public Page<Venue> venue_list(@RequestParam(value = "page",defaultValue = "1")int page, WebRequest webRequest){
         System.out.println("success");
+        if(webRequest.checkNotModified(entityVersions.etag(EntityVersions.VENUE,page,5))){
+            return null;
+        }
         Pageable venue_pageable= PageRequest.of(page-1,5, Sort.by("venueID").ascending());
         return venueService.findAll(venue_pageable);
     }
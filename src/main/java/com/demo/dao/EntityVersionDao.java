@@ -0,0 +1,22 @@
+package com.demo.dao;
+
+import com.demo.entity.EntityVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import javax.transaction.Transactional;
+
+public interface EntityVersionDao extends JpaRepository<EntityVersion, String> {
+
+    @Transactional
+    @Modifying
+    @Query("update EntityVersion v set v.version=v.version+1 where v.type=?1")
+    int increment(String type);
+
+    /**
+     * 直接查版本号列，不经过持久化上下文里可能已经过期的EntityVersion对象
+     */
+    @Query("select v.version from EntityVersion v where v.type=?1")
+    Long findVersion(String type);
+}
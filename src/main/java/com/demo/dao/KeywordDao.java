@@ -0,0 +1,8 @@
+package com.demo.dao;
+
+import com.demo.entity.Keyword;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface KeywordDao extends JpaRepository<Keyword,Integer> {
+    int countByWord(String word);
+}
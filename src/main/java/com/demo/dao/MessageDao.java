@@ -3,6 +3,7 @@ package com.demo.dao;
 import com.demo.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -16,6 +17,13 @@ public interface MessageDao extends JpaRepository<Message,Integer> {
     
     Page<Message> findAllByState(int state,Pageable pageable);
 
+    /**
+     * 不统计总数的分页，只多取一条判断是否还有下一页
+     */
+    Slice<Message> findSliceByUserID(String userID,Pageable pageable);
+
+    Slice<Message> findSliceByState(int state,Pageable pageable);
+
     @Transactional
     @Modifying
     @Query(value="update Message o set o.state=?1 where o.messageID=?2",nativeQuery =true)
@@ -1,8 +1,14 @@
 package com.demo.dao;
 
 import com.demo.entity.News;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface NewsDao extends JpaRepository<News,Integer> {
 
+    /**
+     * 不统计总数的分页，只多取一条判断是否还有下一页
+     */
+    Slice<News> findSliceBy(Pageable pageable);
 }
@@ -3,13 +3,19 @@ package com.demo.dao;
 import com.demo.entity.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import javax.persistence.QueryHint;
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 public interface OrderDao extends JpaRepository<Order,Integer> {
 
@@ -24,6 +30,26 @@ public interface OrderDao extends JpaRepository<Order,Integer> {
 
     Page<Order> findAllByUserID(String userID, Pageable pageable);
 
+    int countByUserID(String userID);
+
+    /**
+     * 不统计总数的分页，只多取一条判断是否还有下一页
+     */
+    Slice<Order> findSliceByUserID(String userID, Pageable pageable);
+
+    Slice<Order> findSliceByState(int state, Pageable pageable);
+
+    /**
+     * 按下单时间逐行读取订单，MySQL驱动在fetchSize为Integer.MIN_VALUE时才会真正流式返回
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("select o from Order o where o.orderTime >= ?1 and o.orderTime < ?2 order by o.orderTime")
+    Stream<Order> streamByOrderTime(LocalDateTime start, LocalDateTime end);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("select o from Order o where o.state = ?1 and o.orderTime >= ?2 and o.orderTime < ?3 order by o.orderTime")
+    Stream<Order> streamByStateAndOrderTime(int state, LocalDateTime start, LocalDateTime end);
+
     @Transactional
     @Modifying
     @Query(value="update `order` o set o.state=?1 where o.orderID=?2",nativeQuery =true)
@@ -0,0 +1,23 @@
+package com.demo.dao;
+
+import com.demo.entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventDao extends JpaRepository<OutboxEvent, Long> {
+
+    List<OutboxEvent> findByPublishedFalseOrderByEventID(Pageable pageable);
+
+    List<OutboxEvent> findByEventIDGreaterThanAndTimeBeforeOrderByEventID(long eventID, LocalDateTime before, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update OutboxEvent e set e.published=true where e.eventID in ?1")
+    void markPublished(List<Long> eventIDs);
+}
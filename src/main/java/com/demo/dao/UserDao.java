@@ -4,11 +4,25 @@ import com.demo.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 
 public interface UserDao extends JpaRepository<User,Integer> {
-    User findByUserIDAndPassword(String userID, String password);
     User findByUserID(String userID);
     Page<User> findAllByIsadmin(int isadmin, Pageable pageable);
     int countByUserID(String userID);
     User findById(int id);
+
+    /**
+     * 每张头像被引用的次数，返回[picture, count]
+     */
+    @Query("select u.picture, count(u) from User u where u.picture <> '' group by u.picture")
+    List<Object[]> countPictures();
+
+    /**
+     * 按主键分批扫描userID，返回[id, userID]
+     */
+    @Query("select u.id, u.userID from User u where u.id > ?1 order by u.id")
+    List<Object[]> findUserIDsAfter(int id, Pageable pageable);
 }
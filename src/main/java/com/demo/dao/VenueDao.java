@@ -1,6 +1,7 @@
 package com.demo.dao;
 
 import com.demo.entity.Venue;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
@@ -17,4 +18,16 @@ public interface VenueDao extends JpaRepository<Venue, Integer> {
 
     int countByVenueName(String venueName);
 
+    /**
+     * 每张场馆图片被引用的次数，返回[picture, count]
+     */
+    @Query("select v.picture, count(v) from Venue v where v.picture <> '' group by v.picture")
+    List<Object[]> countPictures();
+
+    /**
+     * 按主键分批扫描场馆名，返回[venueID, venueName]
+     */
+    @Query("select v.venueID, v.venueName from Venue v where v.venueID > ?1 order by v.venueID")
+    List<Object[]> findVenueNamesAfter(int venueID, Pageable pageable);
+
 }
@@ -0,0 +1,27 @@
+package com.demo.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * 一类实体的版本号，所有实例共用，列表接口的ETag由它生成
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "entity_version")
+public class EntityVersion {
+    /**
+     * news、venue、message 或 keyword
+     */
+    @Id
+    private String type;
+
+    private long version;
+}
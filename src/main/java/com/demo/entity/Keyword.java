@@ -0,0 +1,27 @@
+package com.demo.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+/**
+ * 留言自动审核用的关键词，type见KeywordService
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class Keyword {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int keywordID;
+
+    private String word;
+
+    private int type;
+}
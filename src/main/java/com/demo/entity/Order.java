@@ -14,7 +14,7 @@ import java.util.Date;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name="`order`")
+@Table(name="`order`", indexes = @Index(name = "idx_order_user_time", columnList = "userID,order_time"))
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
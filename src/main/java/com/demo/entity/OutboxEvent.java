@@ -0,0 +1,43 @@
+package com.demo.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 事务发件箱中的一条状态变更事件，与业务数据在同一事务内写入
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "outbox_event", indexes = @Index(columnList = "published,eventID"))
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long eventID;
+
+    /**
+     * order 或 message
+     */
+    private String aggregateType;
+
+    private int aggregateID;
+
+    /**
+     * 例如 order.confirmed、message.published
+     */
+    private String eventType;
+
+    @Column(length = 2000)
+    private String payload;
+
+    @JsonFormat(shape=JsonFormat.Shape.STRING, pattern="yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime time;
+
+    private boolean published;
+}
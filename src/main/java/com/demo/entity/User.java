@@ -11,6 +11,7 @@ import javax.persistence.*;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(indexes = @Index(name = "uk_user_userid", columnList = "userID", unique = true))
 public class User {
 
     @Id
@@ -0,0 +1,20 @@
+package com.demo.entity.vo;
+
+import com.demo.entity.OutboxEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeFeedVo {
+    private List<OutboxEvent> events;
+
+    /**
+     * 下次请求时作为after参数传回
+     */
+    private long cursor;
+}
@@ -0,0 +1,167 @@
+package com.demo.moderation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 编译好的多模式匹配自动机，构造后只读，可以被多个线程同时使用
+ * 根节点的转移用65536长度的数组直接寻址，其余节点的转移按字符排好序连续存放，匹配时二分查找
+ * 匹配不区分大小写，全角字母数字按半角处理
+ */
+public class AhoCorasick {
+    private static final int ROOT = 0;
+
+    private final int[] rootNext = new int[Character.MAX_VALUE + 1];
+    /**
+     * 节点i的子节点在keys/targets中的范围是[offsets[i], offsets[i+1])
+     */
+    private final int[] offsets;
+    private final char[] keys;
+    private final int[] targets;
+    private final int[] fail;
+    /**
+     * 以该节点结尾的模式编号，没有时为-1
+     */
+    private final int[] output;
+    /**
+     * 失败链上下一个有输出的节点，没有时为ROOT
+     */
+    private final int[] dictLink;
+    private final int[] lengths;
+
+    public interface MatchHandler {
+        /**
+         * @param start 命中的起始下标
+         * @param end 命中的结束下标（不含）
+         * @param pattern 模式在构造参数中的下标
+         */
+        void onMatch(int start, int end, int pattern);
+    }
+
+    public AhoCorasick(List<String> patterns) {
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Integer> outputs = new ArrayList<>();
+        children.add(new TreeMap<>());
+        outputs.add(-1);
+        lengths = new int[patterns.size()];
+
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            lengths[p] = pattern.length();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int state = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = fold(pattern.charAt(i));
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    outputs.add(-1);
+                    children.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (outputs.get(state) < 0) {
+                outputs.set(state, p);
+            }
+        }
+
+        int size = children.size();
+        offsets = new int[size + 1];
+        int edges = 0;
+        for (int i = 0; i < size; i++) {
+            offsets[i] = edges;
+            edges += children.get(i).size();
+        }
+        offsets[size] = edges;
+        keys = new char[edges];
+        targets = new int[edges];
+        output = new int[size];
+        for (int i = 0; i < size; i++) {
+            int at = offsets[i];
+            for (Map.Entry<Character, Integer> entry : children.get(i).entrySet()) {
+                keys[at] = entry.getKey();
+                targets[at] = entry.getValue();
+                at++;
+            }
+            output[i] = outputs.get(i);
+        }
+        for (Map.Entry<Character, Integer> entry : children.get(ROOT).entrySet()) {
+            rootNext[entry.getKey()] = entry.getValue();
+        }
+
+        // 按层次遍历计算失败指针和输出链
+        fail = new int[size];
+        dictLink = new int[size];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int at = offsets[ROOT]; at < offsets[ROOT + 1]; at++) {
+            queue.add(targets[at]);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int at = offsets[state]; at < offsets[state + 1]; at++) {
+                char c = keys[at];
+                int child = targets[at];
+                int f = fail[state];
+                int next;
+                while ((next = step(f, c)) < 0) {
+                    f = fail[f];
+                }
+                fail[child] = next;
+                dictLink[child] = output[next] >= 0 ? next : dictLink[next];
+                queue.add(child);
+            }
+        }
+    }
+
+    public int size() {
+        return fail.length;
+    }
+
+    /**
+     * 扫描text，按结束位置的先后回调每一个命中，同一位置结束的多个模式按从长到短回调
+     */
+    public void match(CharSequence text, MatchHandler handler) {
+        int state = ROOT;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = fold(text.charAt(i));
+            int next;
+            while ((next = step(state, c)) < 0) {
+                state = fail[state];
+            }
+            state = next;
+            for (int s = output[state] >= 0 ? state : dictLink[state]; s != ROOT; s = dictLink[s]) {
+                int pattern = output[s];
+                handler.onMatch(i + 1 - lengths[pattern], i + 1, pattern);
+            }
+        }
+    }
+
+    /**
+     * 沿字符c转移，根节点总能转移成功，其它节点没有对应子节点时返回-1
+     */
+    private int step(int state, char c) {
+        if (state == ROOT) {
+            return rootNext[c];
+        }
+        int at = Arrays.binarySearch(keys, offsets[state], offsets[state + 1], c);
+        return at >= 0 ? targets[at] : -1;
+    }
+
+    static char fold(char c) {
+        if (c >= '！' && c <= '～') {
+            c = (char) (c - 0xFEE0);
+        }
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+}
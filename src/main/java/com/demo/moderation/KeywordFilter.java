@@ -0,0 +1,236 @@
+package com.demo.moderation;
+
+import com.demo.cache.EntityVersions;
+import com.demo.dao.KeywordDao;
+import com.demo.entity.Keyword;
+import com.demo.service.KeywordService;
+import com.demo.service.MessageService;
+import com.demo.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 留言自动审核
+ * 关键词变更后在后台线程重新编译自动机，编译完成后整体替换，审核线程始终读到一个完整的版本；
+ * 关键词表的版本号记在EntityVersions.KEYWORD里，后台线程每moderation.check-interval毫秒比较一次，
+ * 别的实例改了关键词后本实例在这段时间内跟着重新编译；
+ * 第一次编译完成前、关闭自动审核时、或者还没有配置任何HARD/SOFT关键词时，所有留言照旧进入人工审核
+ */
+@Component
+public class KeywordFilter implements MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(KeywordFilter.class);
+
+    @Autowired
+    private KeywordDao keywordDao;
+    @Autowired
+    private EntityVersions entityVersions;
+
+    @Value("${moderation.enabled:true}")
+    private boolean enabled;
+    @Value("${moderation.check-interval:5000}")
+    private long checkInterval;
+
+    private final AtomicReference<Compiled> current = new AtomicReference<>();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private ScheduledExecutorService builder;
+
+    private final AtomicLong passed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong review = new AtomicLong();
+
+    private static class Compiled {
+        private final AhoCorasick automaton;
+        private final int[] types;
+        private final long buildMillis;
+        /**
+         * 编译时读到的关键词表版本号，读在查询关键词之前
+         */
+        private final long version;
+        /**
+         * HARD和SOFT关键词的个数，为0时没有东西可以拦，自动通过等于取消了人工审核
+         */
+        private final int blocking;
+
+        Compiled(AhoCorasick automaton, int[] types, long buildMillis, long version) {
+            this.automaton = automaton;
+            this.types = types;
+            this.buildMillis = buildMillis;
+            this.version = version;
+            int count = 0;
+            for (int type : types) {
+                if (type != KeywordService.TYPE_ALLOW) {
+                    count++;
+                }
+            }
+            this.blocking = count;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        builder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "keyword-filter-build");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rebuild();
+        builder.scheduleWithFixedDelay(this::check, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        builder.shutdownNow();
+    }
+
+    /**
+     * 请求重新编译。已经有一次排队未开始的编译时不重复提交，那一次会读到最新的关键词
+     */
+    public void rebuild() {
+        if (pending.compareAndSet(false, true)) {
+            builder.execute(() -> {
+                pending.set(false);
+                build();
+            });
+        }
+    }
+
+    /**
+     * 别的实例改过关键词（或上次编译失败）时重新编译，在编译线程上执行
+     */
+    private void check() {
+        try {
+            Compiled compiled = current.get();
+            if (compiled == null || entityVersions.current(EntityVersions.KEYWORD) > compiled.version) {
+                build();
+            }
+        } catch (Exception e) {
+            log.warn("keyword version check failed, will retry", e);
+        }
+    }
+
+    private void build() {
+        try {
+            long start = System.currentTimeMillis();
+            long version = entityVersions.current(EntityVersions.KEYWORD);
+            List<Keyword> keywords = keywordDao.findAll();
+            List<String> words = new ArrayList<>(keywords.size());
+            int[] types = new int[keywords.size()];
+            for (int i = 0; i < keywords.size(); i++) {
+                words.add(keywords.get(i).getWord() == null ? "" : keywords.get(i).getWord().trim());
+                types[i] = keywords.get(i).getType();
+            }
+            AhoCorasick automaton = new AhoCorasick(words);
+            current.set(new Compiled(automaton, types, System.currentTimeMillis() - start, version));
+            log.info("keyword filter rebuilt with {} keywords, {} states", words.size(), automaton.size());
+        } catch (Exception e) {
+            // 保留旧版本继续使用
+            log.warn("keyword filter rebuild failed", e);
+        }
+    }
+
+    /**
+     * 返回留言应进入的状态：没有命中时通过，命中HARD驳回，只命中SOFT转人工审核
+     */
+    public int moderate(String content) {
+        Compiled compiled = current.get();
+        if (!enabled || compiled == null || compiled.blocking == 0 || content == null || content.trim().isEmpty()) {
+            review.incrementAndGet();
+            return MessageService.STATE_NO_AUDIT;
+        }
+        Hits hits = new Hits(compiled.types);
+        compiled.automaton.match(content, hits);
+        int state = hits.result();
+        if (state == MessageService.STATE_PASS) {
+            passed.incrementAndGet();
+        } else if (state == MessageService.STATE_REJECT) {
+            rejected.incrementAndGet();
+        } else {
+            review.incrementAndGet();
+        }
+        return state;
+    }
+
+    /**
+     * 收集一次扫描的命中，白名单命中区间完整覆盖的HARD/SOFT命中不算数
+     */
+    private static class Hits implements AhoCorasick.MatchHandler {
+        private final int[] types;
+        private final List<int[]> allows = new ArrayList<>(2);
+        private final List<int[]> blocks = new ArrayList<>(2);
+
+        Hits(int[] types) {
+            this.types = types;
+        }
+
+        @Override
+        public void onMatch(int start, int end, int pattern) {
+            int type = types[pattern];
+            if (type == KeywordService.TYPE_ALLOW) {
+                allows.add(new int[]{start, end});
+            } else {
+                blocks.add(new int[]{start, end, type});
+            }
+        }
+
+        int result() {
+            int state = MessageService.STATE_PASS;
+            for (int[] block : blocks) {
+                if (allowed(block)) {
+                    continue;
+                }
+                if (block[2] == KeywordService.TYPE_HARD) {
+                    return MessageService.STATE_REJECT;
+                }
+                state = MessageService.STATE_NO_AUDIT;
+            }
+            return state;
+        }
+
+        private boolean allowed(int[] block) {
+            for (int[] allow : allows) {
+                if (allow[0] <= block[0] && block[1] <= allow[1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "moderation";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Compiled compiled = current.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("ready", compiled != null);
+        metrics.put("keywords", compiled == null ? 0 : compiled.types.length);
+        metrics.put("blockingKeywords", compiled == null ? 0 : compiled.blocking);
+        metrics.put("states", compiled == null ? 0 : compiled.automaton.size());
+        metrics.put("buildMillis", compiled == null ? 0 : compiled.buildMillis);
+        metrics.put("version", compiled == null ? 0 : compiled.version);
+        metrics.put("passed", passed.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("review", review.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,50 @@
+package com.demo.notify;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 本地替身：不连接真实的邮件/短信网关，只把消息记录在内存邮箱里，供开发和测试查看
+ * 配置 notification.transport 为其他值并提供另一个NotificationTransport即可替换
+ */
+@Component
+@ConditionalOnProperty(name = "notification.transport", havingValue = "fake", matchIfMissing = true)
+public class FakeSmtpTransport implements NotificationTransport {
+    private static final Logger log = LoggerFactory.getLogger(FakeSmtpTransport.class);
+    private static final int MAILBOX_SIZE = 1000;
+
+    private final Deque<NotificationMessage> mailbox = new ArrayDeque<>();
+
+    @Override
+    public void send(NotificationMessage message) {
+        synchronized (mailbox) {
+            if (mailbox.size() >= MAILBOX_SIZE) {
+                mailbox.removeFirst();
+            }
+            mailbox.addLast(message);
+        }
+        log.info("fake {} to {}: {}", message.getChannel(), message.getTo(), message.getSubject());
+    }
+
+    /**
+     * 最近收到的消息，按发送顺序
+     */
+    public List<NotificationMessage> received() {
+        synchronized (mailbox) {
+            return new ArrayList<>(mailbox);
+        }
+    }
+
+    public void clear() {
+        synchronized (mailbox) {
+            mailbox.clear();
+        }
+    }
+}
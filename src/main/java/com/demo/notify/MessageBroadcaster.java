@@ -0,0 +1,163 @@
+package com.demo.notify;
+
+import com.demo.entity.vo.MessageVo;
+import com.demo.utils.MetricsSource;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 新通过审核留言的SSE推送
+ * 订阅连接走异步servlet，空闲时不占用Tomcat工作线程；广播时每条留言只序列化一次，订阅者分片后交给推送线程池并行发送
+ */
+@Component
+public class MessageBroadcaster implements MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(MessageBroadcaster.class);
+
+    private final ObjectMapper objectMapper;
+    private final int threads;
+    private final int chunkSize;
+    private final long timeout;
+    private final long heartbeat;
+
+    private final Set<SseEmitter> subscribers = ConcurrentHashMap.newKeySet();
+    private ExecutorService fanOutPool;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+
+    public MessageBroadcaster(ObjectMapper objectMapper,
+                              @Value("${message.stream.threads:4}") int threads,
+                              @Value("${message.stream.chunk-size:500}") int chunkSize,
+                              @Value("${message.stream.timeout:1800000}") long timeout,
+                              @Value("${message.stream.heartbeat:20000}") long heartbeat) {
+        this.objectMapper = objectMapper;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.timeout = timeout;
+        this.heartbeat = heartbeat;
+    }
+
+    @PostConstruct
+    public void start() {
+        fanOutPool = Executors.newFixedThreadPool(threads, daemon("message-stream"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemon("message-stream-heartbeat"));
+        scheduler.scheduleAtFixedRate(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        fanOutPool.shutdownNow();
+        for (SseEmitter emitter : subscribers) {
+            emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * 新建一个订阅，连接超时、出错或客户端断开时自动移除
+     */
+    public SseEmitter subscribe() {
+        return register(new SseEmitter(timeout));
+    }
+
+    SseEmitter register(SseEmitter emitter) {
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.add(emitter);
+        return emitter;
+    }
+
+    /**
+     * 广播一条新通过的留言，调用方线程只负责序列化和分片，不等待发送完成
+     */
+    public List<Future<?>> publish(MessageVo messageVo) {
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(messageVo);
+        } catch (JsonProcessingException e) {
+            log.warn("cannot serialize message {}", messageVo.getMessageID(), e);
+            return new ArrayList<>();
+        }
+        published.incrementAndGet();
+        String id = String.valueOf(messageVo.getMessageID());
+        return fanOut(emitter -> emitter.send(SseEmitter.event().id(id).name("message").data(data, MediaType.APPLICATION_JSON)));
+    }
+
+    private void heartbeat() {
+        fanOut(emitter -> emitter.send(SseEmitter.event().comment("ping")));
+    }
+
+    private List<Future<?>> fanOut(Delivery delivery) {
+        List<SseEmitter> targets = new ArrayList<>(subscribers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < targets.size(); from += chunkSize) {
+            List<SseEmitter> chunk = targets.subList(from, Math.min(from + chunkSize, targets.size()));
+            futures.add(fanOutPool.submit(() -> {
+                for (SseEmitter emitter : chunk) {
+                    try {
+                        delivery.send(emitter);
+                        delivered.incrementAndGet();
+                    } catch (Exception e) {
+                        // 客户端已断开，写失败后结束这个连接
+                        disconnected.incrementAndGet();
+                        subscribers.remove(emitter);
+                        emitter.completeWithError(e);
+                    }
+                }
+            }));
+        }
+        return futures;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private interface Delivery {
+        void send(SseEmitter emitter) throws Exception;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicLong count = new AtomicLong();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public String metricsName() {
+        return "messageStream";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("subscribers", subscribers.size());
+        metrics.put("published", published.get());
+        metrics.put("delivered", delivered.get());
+        metrics.put("disconnected", disconnected.get());
+        return metrics;
+    }
+}
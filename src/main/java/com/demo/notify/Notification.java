@@ -0,0 +1,28 @@
+package com.demo.notify;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 待发送的订单结果通知，只携带id，用户联系方式在发送线程中再查询
+ */
+@Data
+@NoArgsConstructor
+public class Notification {
+    public static final String ORDER_CONFIRMED = "order.confirmed";
+    public static final String ORDER_REJECTED = "order.rejected";
+
+    private String type;
+
+    private String userID;
+
+    private int orderID;
+
+    private int attempts;
+
+    public Notification(String type, String userID, int orderID) {
+        this.type = type;
+        this.userID = userID;
+        this.orderID = orderID;
+    }
+}
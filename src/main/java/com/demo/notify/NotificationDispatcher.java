@@ -0,0 +1,245 @@
+package com.demo.notify;
+
+import com.demo.dao.OrderDao;
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.entity.Order;
+import com.demo.entity.User;
+import com.demo.entity.Venue;
+import com.demo.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单结果通知的异步派发
+ * 提交方只做一次非阻塞的offer，队列满时直接丢弃并计数；后台worker成批取出并发送，失败后按指数退避重新入队
+ * 重试入队时队列满算作又失败了一次，继续退避，达到最大次数后放弃
+ */
+@Component
+public class NotificationDispatcher implements MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @Autowired
+    private NotificationTransport transport;
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private OrderDao orderDao;
+    @Autowired
+    private VenueDao venueDao;
+
+    @Value("${notification.queue-capacity:1000}")
+    private int queueCapacity;
+    @Value("${notification.workers:2}")
+    private int workers;
+    @Value("${notification.batch-size:20}")
+    private int batchSize;
+    @Value("${notification.max-attempts:5}")
+    private int maxAttempts;
+    @Value("${notification.backoff:500}")
+    private long backoff;
+    @Value("${notification.max-backoff:30000}")
+    private long maxBackoff;
+
+    private BlockingQueue<Notification> queue;
+    private ExecutorService workerPool;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long lastSent;
+    private volatile double drainRate;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        workerPool = Executors.newFixedThreadPool(workers, daemon("notification-worker"));
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::work);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemon("notification-retry"));
+        scheduler.scheduleAtFixedRate(this::sampleDrainRate, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workerPool.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 提交一条通知。在事务中调用时等事务提交后才入队，回滚则不发送
+     */
+    public void submit(Notification notification) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(notification);
+                }
+            });
+        } else {
+            enqueue(notification);
+        }
+    }
+
+    private void enqueue(Notification notification) {
+        submitted.incrementAndGet();
+        if (!queue.offer(notification)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 退避时间到了之后重新入队，不计入submitted
+     */
+    private void requeue(Notification notification) {
+        if (!queue.offer(notification)) {
+            retryLater(notification, null);
+        }
+    }
+
+    private void work() {
+        List<Notification> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Notification first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (Notification notification : batch) {
+                    deliver(notification);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void deliver(Notification notification) {
+        try {
+            NotificationMessage message = compose(notification);
+            if (message == null) {
+                skipped.incrementAndGet();
+                return;
+            }
+            transport.send(message);
+            sent.incrementAndGet();
+        } catch (Exception e) {
+            retryLater(notification, e);
+        }
+    }
+
+    /**
+     * @param cause 发送失败的异常，重试时队列满为null
+     */
+    private void retryLater(Notification notification, Exception cause) {
+        notification.setAttempts(notification.getAttempts() + 1);
+        if (notification.getAttempts() >= maxAttempts) {
+            failed.incrementAndGet();
+            log.warn("notification for order {} given up after {} attempts", notification.getOrderID(), notification.getAttempts(), cause);
+            return;
+        }
+        retried.incrementAndGet();
+        long delay = Math.min(maxBackoff, backoff << (notification.getAttempts() - 1));
+        scheduler.schedule(() -> requeue(notification), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 查询用户联系方式并生成消息内容，用户没有留下联系方式时返回null
+     */
+    private NotificationMessage compose(Notification notification) {
+        User user = userDao.findByUserID(notification.getUserID());
+        if (user == null) {
+            return null;
+        }
+        String channel;
+        String to;
+        if (user.getEmail() != null && !user.getEmail().isEmpty()) {
+            channel = NotificationMessage.EMAIL;
+            to = user.getEmail();
+        } else if (user.getPhone() != null && !user.getPhone().isEmpty()) {
+            channel = NotificationMessage.SMS;
+            to = user.getPhone();
+        } else {
+            return null;
+        }
+
+        Order order = orderDao.findByOrderID(notification.getOrderID());
+        String detail = "订单" + notification.getOrderID();
+        if (order != null) {
+            Venue venue = venueDao.findByVenueID(order.getVenueID());
+            detail = (venue == null ? "" : venue.getVenueName()) + "（"
+                    + (order.getStartTime() == null ? "" : TIME_FORMAT.format(order.getStartTime()))
+                    + "，" + order.getHours() + "小时）";
+        }
+        boolean confirmed = Notification.ORDER_CONFIRMED.equals(notification.getType());
+        String subject = confirmed ? "场馆预约已通过" : "场馆预约未通过";
+        String content = user.getUserName() + "您好，您预约的" + detail + (confirmed ? "已通过审核。" : "未通过审核。");
+        return new NotificationMessage(channel, to, subject, content);
+    }
+
+    private synchronized void sampleDrainRate() {
+        long current = sent.get();
+        // 每秒采样一次，做指数平滑
+        drainRate = drainRate * 0.7 + (current - lastSent) * 0.3;
+        lastSent = current;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicLong count = new AtomicLong();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public String metricsName() {
+        return "notification";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("submitted", submitted.get());
+        metrics.put("sent", sent.get());
+        metrics.put("skipped", skipped.get());
+        metrics.put("retried", retried.get());
+        metrics.put("failed", failed.get());
+        metrics.put("dropped", dropped.get());
+        metrics.put("drainRatePerSecond", Math.round(drainRate * 100) / 100.0);
+        return metrics;
+    }
+}
@@ -0,0 +1,27 @@
+package com.demo.notify;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationMessage {
+    public static final String EMAIL = "email";
+    public static final String SMS = "sms";
+
+    /**
+     * email 或 sms
+     */
+    private String channel;
+
+    /**
+     * 邮箱地址或手机号
+     */
+    private String to;
+
+    private String subject;
+
+    private String content;
+}
@@ -0,0 +1,9 @@
+package com.demo.notify;
+
+/**
+ * 通知的实际发送方式，抛出异常时由NotificationDispatcher退避重试
+ */
+public interface NotificationTransport {
+
+    void send(NotificationMessage message) throws Exception;
+}
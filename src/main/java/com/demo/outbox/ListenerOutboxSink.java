@@ -0,0 +1,33 @@
+package com.demo.outbox;
+
+import com.demo.entity.OutboxEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的事件监听，主要用于测试和同一JVM内的订阅方
+ */
+@Component
+public class ListenerOutboxSink implements OutboxSink {
+    private final List<Consumer<OutboxEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(Consumer<OutboxEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<OutboxEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        for (Consumer<OutboxEvent> listener : listeners) {
+            for (OutboxEvent event : events) {
+                listener.accept(event);
+            }
+        }
+    }
+}
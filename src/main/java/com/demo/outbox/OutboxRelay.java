@@ -0,0 +1,94 @@
+package com.demo.outbox;
+
+import com.demo.dao.OutboxEventDao;
+import com.demo.entity.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后台线程轮询发件箱，把未发布的事件按顺序成批投递给所有OutboxSink，成功后再标记为已发布
+ * 投递语义是至少一次：投递成功但标记前宕机的批次会在重启后再次投递
+ */
+@Component
+public class OutboxRelay {
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    @Autowired
+    private OutboxEventDao outboxEventDao;
+    @Autowired
+    private List<OutboxSink> sinks;
+
+    @Value("${outbox.relay.enabled:true}")
+    private boolean enabled;
+    @Value("${outbox.relay.interval:1000}")
+    private long interval;
+    @Value("${outbox.relay.batch-size:100}")
+    private int batchSize;
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::relaySafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void relaySafely() {
+        try {
+            relay();
+        } catch (Exception e) {
+            log.warn("outbox relay failed, will retry", e);
+        }
+    }
+
+    /**
+     * 投递所有积压事件，返回本次投递的条数
+     */
+    public int relay() throws Exception {
+        int total = 0;
+        while (true) {
+            List<OutboxEvent> batch = outboxEventDao.findByPublishedFalseOrderByEventID(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return total;
+            }
+            for (OutboxSink sink : sinks) {
+                sink.publish(batch);
+            }
+            List<Long> ids = new ArrayList<>(batch.size());
+            for (OutboxEvent event : batch) {
+                ids.add(event.getEventID());
+            }
+            outboxEventDao.markPublished(ids);
+            total += batch.size();
+            if (batch.size() < batchSize) {
+                return total;
+            }
+        }
+    }
+}
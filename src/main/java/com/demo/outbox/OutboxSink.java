@@ -0,0 +1,14 @@
+package com.demo.outbox;
+
+import com.demo.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * 发件箱事件的投递目标，由OutboxRelay按eventID顺序成批调用
+ * 抛出异常时该批次不会被标记为已发布，下次会重新投递，因此实现需要能容忍重复
+ */
+public interface OutboxSink {
+
+    void publish(List<OutboxEvent> events) throws Exception;
+}
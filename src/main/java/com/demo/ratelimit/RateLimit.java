@@ -0,0 +1,29 @@
+package com.demo.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标在controller方法上，按登录用户限流，超出后直接返回429
+ * 预算可以用rate-limit.endpoints.{value}.per-minute和burst覆盖
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimit {
+    /**
+     * 接口名，同名接口共用一份预算
+     */
+    String value();
+
+    /**
+     * 每分钟补充的次数
+     */
+    int perMinute() default 30;
+
+    /**
+     * 桶容量，允许的最大突发次数
+     */
+    int burst() default 10;
+}
@@ -0,0 +1,79 @@
+package com.demo.ratelimit;
+
+import com.demo.auth.TokenAuthFilter;
+import com.demo.session.SessionUser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在参数绑定和controller执行之前检查@RateLimit，超限时直接写429返回，不会走到service和数据库
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+    private static final String PREFIX = "rate-limit.endpoints.";
+
+    @Autowired
+    private TokenBucketLimiter limiter;
+    @Autowired
+    private Environment environment;
+
+    private final Map<Method, TokenBucketLimiter.Limit> limits = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        RateLimit rateLimit = handlerMethod.getMethodAnnotation(RateLimit.class);
+        if (rateLimit == null) {
+            return true;
+        }
+        TokenBucketLimiter.Limit limit = limits.computeIfAbsent(handlerMethod.getMethod(), m -> new TokenBucketLimiter.Limit(
+                environment.getProperty(PREFIX + rateLimit.value() + ".per-minute", Integer.class, rateLimit.perMinute()),
+                environment.getProperty(PREFIX + rateLimit.value() + ".burst", Integer.class, rateLimit.burst())));
+
+        long wait = limiter.tryAcquire(rateLimit.value(), clientKey(request), limit);
+        if (wait == 0) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait) + 1)));
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write("操作太频繁，请稍后再试");
+        return false;
+    }
+
+    /**
+     * 登录用户（令牌或会话）按userID限流，未登录的请求按来源地址限流；不为此创建session
+     */
+    private String clientKey(HttpServletRequest request) {
+        SessionUser principal = TokenAuthFilter.principal(request);
+        if (principal != null) {
+            return principal.getUserID();
+        }
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            Object user = session.getAttribute("user");
+            if (user == null) {
+                user = session.getAttribute("admin");
+            }
+            if (user instanceof SessionUser) {
+                return ((SessionUser) user).getUserID();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,162 @@
+package com.demo.ratelimit;
+
+import com.demo.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 按(接口, 用户)分桶的令牌桶限流，用GCRA实现：每个桶只有一个AtomicLong，记录理论上下一次请求到达的时间，
+ * 放行时CAS往后推一个发放间隔，不加锁
+ * 桶已经补满的时候和新建的桶没有区别，后台定期把这样的桶删掉，内存只和最近活跃的用户数有关
+ */
+@Component
+public class TokenBucketLimiter implements MetricsSource {
+
+    /**
+     * 发放间隔和桶容量，都以纳秒计
+     */
+    public static class Limit {
+        private final long interval;
+        private final long capacity;
+
+        public Limit(int perMinute, int burst) {
+            this.interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            this.capacity = interval * Math.max(1, burst);
+        }
+    }
+
+    private static class Bucket {
+        private final AtomicLong tat;
+
+        Bucket(long now) {
+            this.tat = new AtomicLong(now);
+        }
+    }
+
+    @Value("${rate-limit.max-buckets:100000}")
+    private int maxBuckets;
+    @Value("${rate-limit.sweep-interval:60000}")
+    private long sweepInterval;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private ScheduledExecutorService sweeper;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder overflow = new LongAdder();
+    private final AtomicLong evicted = new AtomicLong();
+    private final Map<String, LongAdder> limitedByEndpoint = new ConcurrentHashMap<>();
+
+    public TokenBucketLimiter() {
+        this.clock = System::nanoTime;
+    }
+
+    /**
+     * 测试用，时间由clock给出，以纳秒计
+     */
+    TokenBucketLimiter(LongSupplier clock, int maxBuckets) {
+        this.clock = clock;
+        this.maxBuckets = maxBuckets;
+    }
+
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * 尝试取一个令牌
+     *
+     * @return 0表示放行，否则是还需要等待的纳秒数
+     */
+    public long tryAcquire(String endpoint, String userID, Limit limit) {
+        long now = clock.getAsLong();
+        String key = endpoint + '\u0000' + userID;
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxBuckets) {
+                // 桶太多时宁可放行也不误伤正常用户，由overflow指标报警
+                overflow.increment();
+                allowed.increment();
+                return 0;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+        }
+        while (true) {
+            long tat = bucket.tat.get();
+            long next = Math.max(tat, now) + limit.interval;
+            long wait = next - now - limit.capacity;
+            if (wait > 0) {
+                limited.increment();
+                limitedByEndpoint.computeIfAbsent(endpoint, k -> new LongAdder()).increment();
+                return wait;
+            }
+            if (bucket.tat.compareAndSet(tat, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 删除已经补满的桶。和并发请求之间的竞争最多让一个请求多拿到一个令牌
+     */
+    void sweep() {
+        long now = clock.getAsLong();
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            if (entry.getValue().tat.get() - now <= 0 && buckets.remove(entry.getKey(), entry.getValue())) {
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 清空所有桶，测试之间隔离用
+     */
+    public void reset() {
+        buckets.clear();
+    }
+
+    @Override
+    public String metricsName() {
+        return "rateLimit";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new TreeMap<>();
+        metrics.put("allowed", allowed.sum());
+        metrics.put("limited", limited.sum());
+        metrics.put("buckets", buckets.size());
+        metrics.put("maxBuckets", maxBuckets);
+        metrics.put("evicted", evicted.get());
+        metrics.put("overflow", overflow.sum());
+        Map<String, Long> byEndpoint = new TreeMap<>();
+        limitedByEndpoint.forEach((endpoint, count) -> byEndpoint.put(endpoint, count.sum()));
+        metrics.put("limitedByEndpoint", byEndpoint);
+        return metrics;
+    }
+}
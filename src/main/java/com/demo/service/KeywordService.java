@@ -0,0 +1,35 @@
+package com.demo.service;
+
+import com.demo.entity.Keyword;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface KeywordService {
+
+    /**
+     * 命中直接驳回
+     */
+    int TYPE_HARD=1;
+    /**
+     * 命中转人工审核
+     */
+    int TYPE_SOFT=2;
+    /**
+     * 白名单，被它完整覆盖的HARD/SOFT命中不算数
+     */
+    int TYPE_ALLOW=3;
+
+    Page<Keyword> findAll(Pageable pageable);
+
+    /**
+     * 添加关键词，添加后后台重建过滤器
+     *
+     * @param keyword
+     * @return
+     */
+    int create(Keyword keyword);
+
+    void delById(int keywordID);
+
+    int countWord(String word);
+}
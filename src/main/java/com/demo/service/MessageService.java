@@ -3,6 +3,7 @@ package com.demo.service;
 import com.demo.entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 public interface MessageService {
 
@@ -19,6 +20,13 @@ public interface MessageService {
      */
      Page<Message> findByUser(String userID,Pageable pageable);
 
+    /**
+     * 分页返回用户留言，不查询总数
+     * @param pageable
+     * @return
+     */
+     Slice<Message> findByUserSlice(String userID,Pageable pageable);
+
     /**
      * 添加留言
      *
@@ -44,4 +52,6 @@ public interface MessageService {
 
     Page<Message> findPassState(Pageable pageable);
 
+    Slice<Message> findPassStateSlice(Pageable pageable);
+
 }
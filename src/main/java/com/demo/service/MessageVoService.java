@@ -2,10 +2,19 @@ package com.demo.service;
 
 import com.demo.entity.Message;
 import com.demo.entity.vo.MessageVo;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
 import java.util.List;
 
 public interface MessageVoService  {
     MessageVo returnMessageVoByMessageID(int messageID);
     List<MessageVo> returnVo(List<Message> messages);
+
+    /**
+     * 分页返回通过审核的留言，按时间倒序时优先从缓存的最新留言中取
+     * @param pageable
+     * @return
+     */
+    Page<MessageVo> findPassStateVo(Pageable pageable);
 }
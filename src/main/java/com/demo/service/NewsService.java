@@ -4,10 +4,16 @@ import com.demo.entity.News;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable
         ;
+import org.springframework.data.domain.Slice;
 
 public interface NewsService {
     Page<News> findAll(Pageable pageable);
 
+    /**
+     * 分页查看新闻，不查询总数
+     */
+    Slice<News> findAllSlice(Pageable pageable);
+
     News findById(int newsID);
 
     int create(News news);
@@ -3,9 +3,11 @@ package com.demo.service;
 import com.demo.entity.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface OrderService {
     int STATE_NO_AUDIT=1;
@@ -24,6 +26,13 @@ public interface OrderService {
 
     Page<Order> findNoAuditOrder(Pageable pageable);
 
+    /**
+     * 分页查看未审核订单，不查询总数
+     * @param pageable
+     * @return
+     */
+    Slice<Order> findNoAuditOrderSlice(Pageable pageable);
+
     List<Order> findAuditOrder();
 
 
@@ -31,6 +40,24 @@ public interface OrderService {
 
     Page<Order> findUserOrder(String userID,Pageable pageable);
 
+    Slice<Order> findUserOrderSlice(String userID,Pageable pageable);
+
+    /**
+     * 用户的订单总数，优先读缓存
+     * @param userID
+     * @return
+     */
+    int countUserOrder(String userID);
+
+    /**
+     * 按下单时间区间逐条导出订单，不会把整个结果集加载到内存
+     * @param start 起始时间（包含）
+     * @param end 结束时间（不包含）
+     * @param state 订单状态，0表示不过滤
+     * @param consumer 每条订单的处理逻辑
+     */
+    void exportOrder(LocalDateTime start, LocalDateTime end, int state, Consumer<Order> consumer);
+
     void updateOrder(int orderID,String venueName, LocalDateTime startTime, int hours, String userID);
     /**
      * 新建订单
@@ -0,0 +1,30 @@
+package com.demo.service;
+
+import com.demo.entity.OutboxEvent;
+
+import java.util.List;
+
+public interface OutboxService {
+
+    String ORDER = "order";
+    String MESSAGE = "message";
+
+    /**
+     * 在调用方的事务中写入一条事件，必须在事务内调用
+     *
+     * @param aggregateType 实体类型
+     * @param aggregateID   实体id
+     * @param eventType     事件类型
+     * @param payload       事件内容，序列化为JSON
+     */
+    void record(String aggregateType, int aggregateID, String eventType, Object payload);
+
+    /**
+     * 按游标读取变更，返回eventID大于cursor的事件；刚写入的事件要等过了outbox.feed.lag才返回
+     *
+     * @param cursor 上次读到的最后一个eventID
+     * @param limit  最多返回条数
+     * @return
+     */
+    List<OutboxEvent> findAfter(long cursor, int limit);
+}
@@ -31,7 +31,7 @@ public interface UserService {
     User checkLogin(String userID, String password);
 
     /**
-     * 创建用户
+     * 创建用户，user.password是用户输入的明文，保存前哈希
      *
      * @param user
      * @return
@@ -45,7 +45,16 @@ public interface UserService {
      */
     void delByID(int id);
 
+    /**
+     * 保存修改，不处理密码：user.password要么是原来存的哈希，要么是hashPassword的结果
+     */
     void updateUser(User user);
 
+    /**
+     * 修改密码时用：把用户输入的新密码哈希，controller设置到User上再调用updateUser
+     * 不能根据内容判断是否已经哈希过，用户完全可以选一个长得像哈希的密码
+     */
+    String hashPassword(String password);
+
     int countUserID(String userID);
 }
@@ -0,0 +1,55 @@
+package com.demo.service.impl;
+
+import com.demo.cache.EntityVersions;
+import com.demo.dao.KeywordDao;
+import com.demo.entity.Keyword;
+import com.demo.moderation.KeywordFilter;
+import com.demo.service.KeywordService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+@Service
+public class KeywordServiceImpl implements KeywordService {
+    @Autowired
+    private KeywordDao keywordDao;
+    @Autowired
+    private KeywordFilter keywordFilter;
+    @Autowired
+    private EntityVersions entityVersions;
+
+    @Override
+    public Page<Keyword> findAll(Pageable pageable) {
+        return keywordDao.findAll(pageable);
+    }
+
+    @Override
+    public int create(Keyword keyword) {
+        if(keyword.getType()<TYPE_HARD||keyword.getType()>TYPE_ALLOW) {
+            throw new RuntimeException("关键词类型错误");
+        }
+        int keywordID=keywordDao.save(keyword).getKeywordID();
+        changed();
+        return keywordID;
+    }
+
+    @Override
+    public void delById(int keywordID) {
+        keywordDao.deleteById(keywordID);
+        changed();
+    }
+
+    /**
+     * 本实例立即重新编译，别的实例靠版本号发现
+     */
+    private void changed() {
+        entityVersions.bump(EntityVersions.KEYWORD);
+        keywordFilter.rebuild();
+    }
+
+    @Override
+    public int countWord(String word) {
+        return keywordDao.countByWord(word);
+    }
+}
@@ -1,17 +1,38 @@
 package com.demo.service.impl;
 
+import com.demo.cache.ApprovedMessageFeed;
 import com.demo.dao.MessageDao;
+import com.demo.dao.UserDao;
 import com.demo.entity.Message;
+import com.demo.entity.User;
+import com.demo.entity.vo.MessageVo;
+import com.demo.notify.MessageBroadcaster;
 import com.demo.service.MessageService;
+import com.demo.service.OutboxService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Service
 public class MessageServiceImpl implements MessageService {
     @Autowired
     private MessageDao messageDao;
+    @Autowired
+    private OutboxService outboxService;
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private ApprovedMessageFeed approvedMessageFeed;
+    @Autowired
+    private MessageBroadcaster messageBroadcaster;
 
     @Override
     public Message findById(int messageID) {
@@ -26,36 +47,86 @@ public class MessageServiceImpl implements MessageService {
     }
 
     @Override
+    public Slice<Message> findByUserSlice(String userID, Pageable pageable) {
+        return messageDao.findSliceByUserID(userID,pageable);
+    }
+
+    @Override
+    @Transactional
     public int create(Message message) {
-        return messageDao.save(message).getMessageID();
+        Message saved=messageDao.save(message);
+        recordModeration(saved);
+        if(saved.getState()==STATE_PASS) {
+            MessageVo messageVo=toVo(saved);
+            long version=approvedMessageFeed.bump();
+            afterCommit(() -> {
+                approvedMessageFeed.add(messageVo,version);
+                messageBroadcaster.publish(messageVo);
+            });
+        }
+        return saved.getMessageID();
     }
 
     @Override
+    @Transactional
     public void delById(int messageID) {
+        Message message=messageDao.findById(messageID).orElse(null);
+        boolean wasPass=message!=null&&message.getState()==STATE_PASS;
         messageDao.deleteById(messageID);
+        long version=approvedMessageFeed.bump();
+        afterCommit(() -> approvedMessageFeed.remove(messageID,wasPass,version));
     }
 
     @Override
+    @Transactional
     public void update(Message message) {
-        messageDao.save(message);
+        Message saved=messageDao.save(message);
+        recordModeration(saved);
+        // 修改前的状态已经被调用方改掉了，由缓存根据是否在窗口中判断
+        MessageVo messageVo=saved.getState()==STATE_PASS?toVo(saved):null;
+        long version=approvedMessageFeed.bump();
+        afterCommit(() -> {
+            approvedMessageFeed.remove(saved.getMessageID(),false,version);
+            if(messageVo!=null) {
+                approvedMessageFeed.add(messageVo,version);
+                messageBroadcaster.publish(messageVo);
+            }
+        });
     }
 
     @Override
+    @Transactional
     public void confirmMessage(int messageID) {
         Message message=messageDao.findByMessageID(messageID);
         if(message==null) {
             throw new RuntimeException("留言不存在");
         }
         messageDao.updateState(STATE_PASS,message.getMessageID());
+        recordState(message,STATE_PASS,"message.published");
+        if(message.getState()!=STATE_PASS) {
+            MessageVo messageVo=toVo(message);
+            messageVo.setState(STATE_PASS);
+            long version=approvedMessageFeed.bump();
+            afterCommit(() -> {
+                approvedMessageFeed.add(messageVo,version);
+                messageBroadcaster.publish(messageVo);
+            });
+        }
     }
 
     @Override
+    @Transactional
     public void rejectMessage(int messageID) {
         Message message=messageDao.findByMessageID(messageID);
         if(message==null) {
             throw new RuntimeException("留言不存在");
         }
         messageDao.updateState(STATE_REJECT,message.getMessageID());
+        recordState(message,STATE_REJECT,"message.rejected");
+        if(message.getState()==STATE_PASS) {
+            long version=approvedMessageFeed.bump();
+            afterCommit(() -> approvedMessageFeed.remove(messageID,true,version));
+        }
     }
 
     @Override
@@ -68,4 +139,49 @@ public class MessageServiceImpl implements MessageService {
         return messageDao.findAllByState(STATE_PASS,pageable);
     }
 
+    @Override
+    public Slice<Message> findPassStateSlice(Pageable pageable) {
+        return messageDao.findSliceByState(STATE_PASS,pageable);
+    }
+
+    private void recordState(Message message, int state, String eventType) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("messageID", message.getMessageID());
+        payload.put("userID", message.getUserID());
+        payload.put("state", state);
+        outboxService.record(OutboxService.MESSAGE, message.getMessageID(), eventType, payload);
+    }
+
+    /**
+     * 自动审核直接通过或驳回的留言同样记录状态变更
+     */
+    private void recordModeration(Message message) {
+        if(message.getState()==STATE_PASS) {
+            recordState(message,STATE_PASS,"message.published");
+        } else if(message.getState()==STATE_REJECT) {
+            recordState(message,STATE_REJECT,"message.rejected");
+        }
+    }
+
+    private MessageVo toVo(Message message) {
+        User user=userDao.findByUserID(message.getUserID());
+        return new MessageVo(message.getMessageID(),message.getUserID(),message.getContent(),message.getTime(),
+                user==null?null:user.getUserName(),user==null?null:user.getPicture(),message.getState());
+    }
+
+    /**
+     * 缓存在事务提交后才更新，回滚时保持原样
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
 }
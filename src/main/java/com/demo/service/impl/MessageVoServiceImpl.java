@@ -1,12 +1,19 @@
 package com.demo.service.impl;
 
+import com.demo.cache.ApprovedMessageFeed;
 import com.demo.dao.MessageDao;
 import com.demo.dao.UserDao;
 import com.demo.entity.Message;
 import com.demo.entity.User;
 import com.demo.entity.vo.MessageVo;
+import com.demo.service.MessageService;
 import com.demo.service.MessageVoService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -14,10 +21,14 @@ import java.util.List;
 
 @Service
 public class MessageVoServiceImpl implements MessageVoService {
+    private static final Sort FEED_SORT = Sort.by("time").descending();
+
     @Autowired
     private MessageDao messageDao;
     @Autowired
     private UserDao userDao;
+    @Autowired
+    private ApprovedMessageFeed approvedMessageFeed;
 
     @Override
     public MessageVo returnMessageVoByMessageID(int messageID) {
@@ -36,4 +47,22 @@ public class MessageVoServiceImpl implements MessageVoService {
         }
         return list;
     }
+
+    @Override
+    public Page<MessageVo> findPassStateVo(Pageable pageable) {
+        if (pageable.getSort().equals(FEED_SORT)) {
+            ApprovedMessageFeed.Snapshot snapshot = approvedMessageFeed.get(this::loadFeed);
+            List<MessageVo> content = snapshot.slice(pageable.getOffset(), pageable.getPageSize());
+            if (content != null) {
+                return new PageImpl<>(content, pageable, snapshot.getTotal());
+            }
+        }
+        Page<Message> messages = messageDao.findAllByState(MessageService.STATE_PASS, pageable);
+        return new PageImpl<>(returnVo(messages.getContent()), pageable, messages.getTotalElements());
+    }
+
+    private ApprovedMessageFeed.Snapshot loadFeed() {
+        Page<Message> messages = messageDao.findAllByState(MessageService.STATE_PASS, PageRequest.of(0, approvedMessageFeed.capacity(), FEED_SORT));
+        return new ApprovedMessageFeed.Snapshot(returnVo(messages.getContent()), messages.getTotalElements());
+    }
 }
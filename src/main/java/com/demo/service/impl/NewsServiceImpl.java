@@ -1,23 +1,40 @@
 package com.demo.service.impl;
 
+import com.demo.cache.EntityVersions;
+import com.demo.cache.PageCache;
 import com.demo.dao.NewsDao;
 import com.demo.entity.News;
 import com.demo.service.NewsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Pageable;
 
 @Service
 public class NewsServiceImpl implements NewsService {
+    /**
+     * 展示新闻的公共页面
+     */
+    private static final String[] PAGES={"/index","/news_list","/news"};
+
     @Autowired
     private NewsDao newsDao;
+    @Autowired
+    private PageCache pageCache;
+    @Autowired
+    private EntityVersions entityVersions;
 
     @Override
     public Page<News> findAll(Pageable pageable) {
         return newsDao.findAll(pageable);
     }
 
+    @Override
+    public Slice<News> findAllSlice(Pageable pageable) {
+        return newsDao.findSliceBy(pageable);
+    }
+
     @Override
     public News findById(int newsID) {
         return newsDao.getOne(newsID);
@@ -25,16 +42,28 @@ public class NewsServiceImpl implements NewsService {
 
     @Override
     public int create(News news) {
-        return newsDao.save(news).getNewsID();
+        int newsID=newsDao.save(news).getNewsID();
+        changed();
+        return newsID;
     }
 
     @Override
     public void delById(int newsID) {
         newsDao.deleteById(newsID);
+        changed();
     }
 
     @Override
     public void update(News news) {
         newsDao.save(news);
+        changed();
+    }
+
+    /**
+     * 写入后作废展示页面的缓存并更新版本号
+     */
+    private void changed() {
+        pageCache.invalidate(PAGES);
+        entityVersions.bump(EntityVersions.NEWS);
     }
 }
@@ -1,19 +1,31 @@
 package com.demo.service.impl;
 
+import com.demo.cache.OrderCountCache;
 import com.demo.dao.OrderDao;
 
 import com.demo.dao.VenueDao;
 import com.demo.entity.Venue;
 import com.demo.entity.Order;
+import com.demo.notify.Notification;
+import com.demo.notify.NotificationDispatcher;
 import com.demo.service.OrderService;
+import com.demo.service.OutboxService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class OrderServiceImpl implements OrderService {
@@ -23,6 +35,16 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private VenueDao venueDao;
 
+    @Autowired
+    private OutboxService outboxService;
+    @Autowired
+    private NotificationDispatcher notificationDispatcher;
+    @Autowired
+    private OrderCountCache orderCountCache;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Override
     public Order findById(int OrderID) {
         return orderDao.getOne(OrderID);
@@ -38,11 +60,35 @@ public class OrderServiceImpl implements OrderService {
         return orderDao.findAllByUserID(userID,pageable);
     }
 
+    @Override
+    public Slice<Order> findUserOrderSlice(String userID, Pageable pageable) {
+        return orderDao.findSliceByUserID(userID,pageable);
+    }
+
+    @Override
+    public int countUserOrder(String userID) {
+        return orderCountCache.get(userID, () -> orderDao.countByUserID(userID));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportOrder(LocalDateTime start, LocalDateTime end, int state, Consumer<Order> consumer) {
+        try (Stream<Order> orders = state == 0 ? orderDao.streamByOrderTime(start, end)
+                : orderDao.streamByStateAndOrderTime(state, start, end)) {
+            orders.forEach(order -> {
+                consumer.accept(order);
+                // 处理完立即脱离持久化上下文，否则一级缓存会随导出行数增长
+                entityManager.detach(order);
+            });
+        }
+    }
+
 
     @Override
     public void updateOrder(int orderID, String venueName, LocalDateTime startTime, int hours,String userID)  {
         Venue venue =venueDao.findByVenueName(venueName);
         Order order=orderDao.findByOrderID(orderID);
+        String oldUserID=order.getUserID();
         order.setState(STATE_NO_AUDIT);
         order.setHours(hours);
         order.setVenueID(venue.getVenueID());
@@ -52,6 +98,10 @@ public class OrderServiceImpl implements OrderService {
         order.setTotal(hours* venue.getPrice());
 
         orderDao.save(order);
+        if(!userID.equals(oldUserID)) {
+            orderCountCache.decrement(oldUserID);
+            orderCountCache.increment(userID);
+        }
     }
 
     @Override
@@ -68,38 +118,51 @@ public class OrderServiceImpl implements OrderService {
         order.setUserID(userID);
         order.setTotal(hours* venue.getPrice());
         orderDao.save(order);
+        orderCountCache.increment(userID);
     }
 
     @Override
     public void delOrder(int orderID) {
+        Order order=orderDao.findByOrderID(orderID);
         orderDao.deleteById(orderID);
+        if(order != null) {
+            orderCountCache.decrement(order.getUserID());
+        }
     }
 
     @Override
+    @Transactional
     public void confirmOrder(int orderID) {
         Order order=orderDao.findByOrderID(orderID);
         if(order == null) {
             throw new RuntimeException("订单不存在");
         }
         orderDao.updateState(STATE_WAIT,order.getOrderID());
+        recordState(order,STATE_WAIT,"order.confirmed");
+        notificationDispatcher.submit(new Notification(Notification.ORDER_CONFIRMED,order.getUserID(),order.getOrderID()));
     }
 
     @Override
+    @Transactional
     public void finishOrder(int orderID) {
         Order order=orderDao.findByOrderID(orderID);
         if(order == null) {
             throw new RuntimeException("订单不存在");
         }
         orderDao.updateState(STATE_FINISH,order.getOrderID());
+        recordState(order,STATE_FINISH,"order.finished");
     }
 
     @Override
+    @Transactional
     public void rejectOrder(int orderID) {
         Order order=orderDao.findByOrderID(orderID);
         if(order == null) {
             throw new RuntimeException("订单不存在");
         }
         orderDao.updateState(STATE_REJECT,order.getOrderID());
+        recordState(order,STATE_REJECT,"order.rejected");
+        notificationDispatcher.submit(new Notification(Notification.ORDER_REJECTED,order.getUserID(),order.getOrderID()));
     }
 
     @Override
@@ -107,8 +170,24 @@ public class OrderServiceImpl implements OrderService {
         return orderDao.findAllByState(STATE_NO_AUDIT,pageable);
     }
 
+    @Override
+    public Slice<Order> findNoAuditOrderSlice(Pageable pageable) {
+        return orderDao.findSliceByState(STATE_NO_AUDIT,pageable);
+    }
+
     @Override
     public List<Order> findAuditOrder() {
         return orderDao.findAudit(STATE_WAIT,STATE_FINISH);
     }
+
+    private void recordState(Order order, int state, String eventType) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("orderID", order.getOrderID());
+        payload.put("userID", order.getUserID());
+        payload.put("venueID", order.getVenueID());
+        payload.put("state", state);
+        payload.put("startTime", order.getStartTime());
+        payload.put("hours", order.getHours());
+        outboxService.record(OutboxService.ORDER, order.getOrderID(), eventType, payload);
+    }
 }
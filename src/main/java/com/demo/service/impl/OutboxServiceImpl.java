@@ -0,0 +1,55 @@
+package com.demo.service.impl;
+
+import com.demo.dao.OutboxEventDao;
+import com.demo.entity.OutboxEvent;
+import com.demo.service.OutboxService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+public class OutboxServiceImpl implements OutboxService {
+    @Autowired
+    private OutboxEventDao outboxEventDao;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 变更流只返回写入超过这么久的事件，毫秒，要大于最长的写事务
+     * eventID在插入时分配、提交顺序却不一定相同，游标越过某个id后，更小的id晚提交就会被永远跳过；
+     * 等提交都完成再返回，游标就不会越过还没提交的事件
+     */
+    @Value("${outbox.feed.lag:5000}")
+    private long lag;
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String aggregateType, int aggregateID, String eventType, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setAggregateType(aggregateType);
+        event.setAggregateID(aggregateID);
+        event.setEventType(eventType);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("事件内容无法序列化", e);
+        }
+        event.setTime(LocalDateTime.now());
+        event.setPublished(false);
+        outboxEventDao.save(event);
+    }
+
+    @Override
+    public List<OutboxEvent> findAfter(long cursor, int limit) {
+        LocalDateTime before = LocalDateTime.now().minusNanos(lag * 1000000);
+        return outboxEventDao.findByEventIDGreaterThanAndTimeBeforeOrderByEventID(cursor, before, PageRequest.of(0, limit));
+    }
+}
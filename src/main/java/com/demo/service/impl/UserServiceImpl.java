@@ -1,5 +1,9 @@
 package com.demo.service.impl;
 
+import com.demo.auth.PasswordHasher;
+import com.demo.auth.PasswordVerifier;
+import com.demo.cache.ApprovedMessageFeed;
+import com.demo.cache.TakenNames;
 import com.demo.dao.UserDao;
 import com.demo.entity.User;
 import com.demo.service.UserService;
@@ -12,6 +16,14 @@ import org.springframework.stereotype.Service;
 public class UserServiceImpl implements UserService {
     @Autowired
     private UserDao userDao;
+    @Autowired
+    private ApprovedMessageFeed approvedMessageFeed;
+    @Autowired
+    private TakenNames takenNames;
+    @Autowired
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private PasswordVerifier passwordVerifier;
 
     @Override
     public User findByUserID(String userID) {
@@ -30,28 +42,59 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User checkLogin(String userID, String password) {
-        return userDao.findByUserIDAndPassword(userID,password);
+        User user=userDao.findByUserID(userID);
+        // 不存在的userID不做哈希，checkUserID.do本来就能查到userID是否存在
+        if(user==null||!passwordVerifier.verify(userID,password,user.getPassword())) {
+            return null;
+        }
+        // 旧的明文密码或迭代次数过低的哈希，借这次登录拿到的明文重新哈希
+        if(passwordHasher.needsRehash(user.getPassword())) {
+            user.setPassword(passwordHasher.hash(password));
+            userDao.save(user);
+        }
+        return user;
     }
 
     @Override
     public int create(User user) {
+        user.setPassword(hashPassword(user.getPassword()));
         userDao.save(user);
+        takenNames.userIDs().add(user.getUserID());
         return userDao.findAll().size();
     }
 
     @Override
     public void delByID(int id) {
         userDao.deleteById(id);
+        takenNames.userIDs().remove();
+        // 别的实例的快照靠版本号作废
+        approvedMessageFeed.bump();
+        approvedMessageFeed.invalidate();
     }
 
 
     @Override
     public void updateUser(User user) {
         userDao.save(user);
+        takenNames.userIDs().rename(user.getUserID());
+        approvedMessageFeed.updateUser(user.getUserID(),user.getUserName(),user.getPicture(),approvedMessageFeed.bump());
     }
 
     @Override
     public int countUserID(String userID) {
-        return userDao.countByUserID(userID);
+        // 大多数输入都是没人用过的，过滤器说一定没有就不查库
+        if(!takenNames.userIDs().mightContain(userID)) {
+            return 0;
+        }
+        int count=userDao.countByUserID(userID);
+        if(count==0) {
+            takenNames.userIDs().falsePositive();
+        }
+        return count;
+    }
+
+    @Override
+    public String hashPassword(String password) {
+        return password==null?null:passwordHasher.hash(password);
     }
 }
@@ -1,5 +1,8 @@
 package com.demo.service.impl;
 
+import com.demo.cache.EntityVersions;
+import com.demo.cache.PageCache;
+import com.demo.cache.TakenNames;
 import com.demo.dao.VenueDao;
 import com.demo.entity.Venue;
 import com.demo.service.VenueService;
@@ -12,8 +15,19 @@ import java.util.List;
 
 @Service
 public class VenueServiceImpl implements VenueService {
+    /**
+     * 展示场馆的公共页面
+     */
+    private static final String[] PAGES={"/index","/venue_list"};
+
     @Autowired
     private VenueDao venueDao;
+    @Autowired
+    private PageCache pageCache;
+    @Autowired
+    private EntityVersions entityVersions;
+    @Autowired
+    private TakenNames takenNames;
 
     @Override
     public Venue findByVenueID(int id) {
@@ -37,21 +51,43 @@ public class VenueServiceImpl implements VenueService {
 
     @Override
     public int create(Venue venue) {
-        return venueDao.save(venue).getVenueID();
+        int venueID=venueDao.save(venue).getVenueID();
+        takenNames.venueNames().add(venue.getVenueName());
+        changed();
+        return venueID;
     }
 
     @Override
     public void update(Venue venue) {
         venueDao.save(venue);
+        takenNames.venueNames().rename(venue.getVenueName());
+        changed();
     }
 
     @Override
     public void delById(int id) {
         venueDao.deleteById(id);
+        takenNames.venueNames().remove();
+        changed();
     }
 
     @Override
     public int countVenueName(String venueName) {
-        return venueDao.countByVenueName(venueName);
+        if(!takenNames.venueNames().mightContain(venueName)) {
+            return 0;
+        }
+        int count=venueDao.countByVenueName(venueName);
+        if(count==0) {
+            takenNames.venueNames().falsePositive();
+        }
+        return count;
+    }
+
+    /**
+     * 写入后作废展示页面的缓存并更新版本号
+     */
+    private void changed() {
+        pageCache.invalidate(PAGES);
+        entityVersions.bump(EntityVersions.VENUE);
     }
 }
@@ -0,0 +1,85 @@
+package com.demo.session;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * 会话保存在数据库的app_session表中，所有实例共享
+ * 属性没有修改时只更新last_access_time，不重写属性；按过期时间删除有索引
+ */
+@Component
+@ConditionalOnProperty(name = "session.store", havingValue = "jdbc")
+public class JdbcSessionRepository implements SessionRepository {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public JdbcSessionRepository() {
+    }
+
+    JdbcSessionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void createTable() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS app_session ("
+                + "session_id VARCHAR(36) NOT NULL PRIMARY KEY, "
+                + "creation_time BIGINT NOT NULL, "
+                + "last_access_time BIGINT NOT NULL, "
+                + "max_inactive_interval INT NOT NULL, "
+                + "expiry_time BIGINT NOT NULL, "
+                + "attributes BLOB NOT NULL)");
+        try {
+            jdbcTemplate.execute("CREATE INDEX app_session_expiry ON app_session (expiry_time)");
+        } catch (DataAccessException e) {
+            // 索引已经存在
+        }
+    }
+
+    @Override
+    public StoredSession find(String id) {
+        List<StoredSession> sessions = jdbcTemplate.query(
+                "SELECT creation_time, last_access_time, max_inactive_interval, attributes FROM app_session "
+                        + "WHERE session_id = ? AND expiry_time > ?",
+                (rs, i) -> new StoredSession(id, rs.getLong(1), rs.getLong(2), rs.getInt(3),
+                        SessionCodec.decode(rs.getBytes(4))),
+                id, System.currentTimeMillis());
+        return sessions.isEmpty() ? null : sessions.get(0);
+    }
+
+    @Override
+    public void save(StoredSession session) {
+        if (!session.isChanged() && jdbcTemplate.update(
+                "UPDATE app_session SET last_access_time = ?, expiry_time = ? WHERE session_id = ?",
+                session.getLastAccessedTime(), session.getExpiryTime(), session.getId()) > 0) {
+            return;
+        }
+        byte[] attributes = SessionCodec.encode(session.getAttributes());
+        int updated = jdbcTemplate.update("UPDATE app_session SET last_access_time = ?, max_inactive_interval = ?, "
+                        + "expiry_time = ?, attributes = ? WHERE session_id = ?",
+                session.getLastAccessedTime(), session.getMaxInactiveInterval(), session.getExpiryTime(),
+                attributes, session.getId());
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO app_session (session_id, creation_time, last_access_time, "
+                            + "max_inactive_interval, expiry_time, attributes) VALUES (?, ?, ?, ?, ?, ?)",
+                    session.getId(), session.getCreationTime(), session.getLastAccessedTime(),
+                    session.getMaxInactiveInterval(), session.getExpiryTime(), attributes);
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        jdbcTemplate.update("DELETE FROM app_session WHERE session_id = ?", id);
+    }
+
+    @Override
+    public int deleteExpired(long now) {
+        return jdbcTemplate.update("DELETE FROM app_session WHERE expiry_time <= ?", now);
+    }
+}
@@ -0,0 +1,76 @@
+package com.demo.session;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 单实例内存存储，属性按SessionCodec编码后保存，行为和JDBC存储一致，用于开发和测试
+ */
+@Component
+@ConditionalOnProperty(name = "session.store", havingValue = "memory")
+public class MapSessionRepository implements SessionRepository {
+    private final Map<String, Entry> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public StoredSession find(String id) {
+        Entry entry = sessions.get(id);
+        if (entry == null) {
+            return null;
+        }
+        StoredSession session = new StoredSession(id, entry.creationTime, entry.lastAccessedTime,
+                entry.maxInactiveInterval, SessionCodec.decode(entry.data));
+        if (session.isExpired(System.currentTimeMillis())) {
+            sessions.remove(id, entry);
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * 属性没改时只更新访问时间，保留存储里当前的属性；读旧值和写新值在compute里原子完成，
+     * 否则另一个请求同时只更新访问时间时会把这里刚改的属性覆盖回去
+     */
+    @Override
+    public void save(StoredSession session) {
+        sessions.compute(session.getId(), (id, old) -> {
+            byte[] data = session.isChanged() || old == null ? SessionCodec.encode(session.getAttributes()) : old.data;
+            return new Entry(session.getCreationTime(), session.getLastAccessedTime(),
+                    session.getMaxInactiveInterval(), data);
+        });
+    }
+
+    @Override
+    public void delete(String id) {
+        sessions.remove(id);
+    }
+
+    @Override
+    public int deleteExpired(long now) {
+        int count = 0;
+        for (Map.Entry<String, Entry> entry : sessions.entrySet()) {
+            Entry value = entry.getValue();
+            if (value.maxInactiveInterval > 0 && now >= value.lastAccessedTime + value.maxInactiveInterval * 1000L
+                    && sessions.remove(entry.getKey(), value)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static class Entry {
+        final long creationTime;
+        final long lastAccessedTime;
+        final int maxInactiveInterval;
+        final byte[] data;
+
+        Entry(long creationTime, long lastAccessedTime, int maxInactiveInterval, byte[] data) {
+            this.creationTime = creationTime;
+            this.lastAccessedTime = lastAccessedTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.demo.session;
+
+/**
+ * 会话存储，由session.store选择实现；多个实例共享同一个存储时负载均衡不需要粘性会话
+ */
+public interface SessionRepository {
+    /**
+     * @return 会话，不存在或已过期时返回null
+     */
+    StoredSession find(String id);
+
+    /**
+     * 保存会话；属性没有修改时实现可以只更新最后访问时间
+     */
+    void save(StoredSession session);
+
+    void delete(String id);
+
+    /**
+     * 删除已过期的会话
+     *
+     * @return 删除的会话数
+     */
+    int deleteExpired(long now);
+}
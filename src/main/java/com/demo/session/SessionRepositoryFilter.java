@@ -0,0 +1,501 @@
+package com.demo.session;
+
+import com.demo.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionContext;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用SessionRepository里的会话替换容器的HttpSession，会话id放在cookie里，任何一个实例都能读到
+ * 响应开始写出（重定向、flush）之前先保存会话，客户端拿到响应后立刻发往其他实例的请求也能看到最新的属性
+ * 属性没变时按session.touch-interval节流，只偶尔更新最后访问时间；session.store为servlet时不启用，仍用容器会话
+ * 排在整页缓存和准入控制之前，后面的过滤器和拦截器通过request.getSession拿到的都是这里的会话
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class SessionRepositoryFilter extends OncePerRequestFilter implements MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(SessionRepositoryFilter.class);
+
+    @Autowired(required = false)
+    private SessionRepository repository;
+
+    @Value("${session.cookie-name:SESSION}")
+    private String cookieName;
+    /**
+     * 会话过期时间，秒
+     */
+    @Value("${session.timeout:1800}")
+    private int timeout;
+    @Value("${session.touch-interval:60000}")
+    private long touchInterval;
+    @Value("${session.cleanup-interval:60000}")
+    private long cleanupInterval;
+
+    private ScheduledExecutorService executor;
+
+    private final AtomicLong loaded = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong touched = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        if (repository == null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::cleanupSafely, cleanupInterval, cleanupInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void cleanupSafely() {
+        try {
+            expired.addAndGet(repository.deleteExpired(System.currentTimeMillis()));
+        } catch (Exception e) {
+            log.warn("session cleanup failed, will retry", e);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return repository == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SessionRequest sessionRequest = new SessionRequest(request, response);
+        try {
+            chain.doFilter(sessionRequest, sessionRequest.response);
+        } finally {
+            sessionRequest.commitSession();
+        }
+    }
+
+    private Cookie cookie(HttpServletRequest request, String value, int maxAge) {
+        Cookie cookie = new Cookie(cookieName, value);
+        cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setMaxAge(maxAge);
+        return cookie;
+    }
+
+    private class SessionRequest extends HttpServletRequestWrapper {
+        private final SessionResponse response;
+        private String requestedId;
+        private boolean requestedIdRead;
+        private RepositorySession session;
+        private boolean requestedSessionLoaded;
+        /**
+         * changeSessionId之前的id，保存时删除
+         */
+        private String previousId;
+
+        SessionRequest(HttpServletRequest request, HttpServletResponse response) {
+            super(request);
+            this.response = new SessionResponse(response, this);
+        }
+
+        @Override
+        public HttpSession getSession() {
+            return getSession(true);
+        }
+
+        @Override
+        public HttpSession getSession(boolean create) {
+            if (session != null && !session.invalid) {
+                return session;
+            }
+            if (session == null && !requestedSessionLoaded) {
+                requestedSessionLoaded = true;
+                String id = getRequestedSessionId();
+                StoredSession stored = id == null ? null : repository.find(id);
+                if (stored != null) {
+                    loaded.incrementAndGet();
+                    session = new RepositorySession(stored, false);
+                    return session;
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            if (session != null && previousId == null) {
+                // 本次请求中失效过的会话，保存时要删掉
+                previousId = session.stored.getId();
+            }
+            created.incrementAndGet();
+            session = new RepositorySession(new StoredSession(timeout), true);
+            writeCookie(session.getId());
+            return session;
+        }
+
+        @Override
+        public String changeSessionId() {
+            HttpSession current = getSession(false);
+            if (current == null) {
+                throw new IllegalStateException("no session to change the id of");
+            }
+            if (previousId == null) {
+                previousId = session.stored.getId();
+            }
+            String id = session.stored.changeId();
+            writeCookie(id);
+            return id;
+        }
+
+        @Override
+        public String getRequestedSessionId() {
+            if (!requestedIdRead) {
+                requestedIdRead = true;
+                Cookie[] cookies = getCookies();
+                if (cookies != null) {
+                    for (Cookie cookie : cookies) {
+                        if (cookieName.equals(cookie.getName()) && !cookie.getValue().isEmpty()) {
+                            requestedId = cookie.getValue();
+                            break;
+                        }
+                    }
+                }
+            }
+            return requestedId;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdValid() {
+            getSession(false);
+            return session != null && !session.invalid && !session.isNew
+                    && session.getId().equals(getRequestedSessionId());
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromCookie() {
+            return getRequestedSessionId() != null;
+        }
+
+        @Override
+        public boolean isRequestedSessionIdFromURL() {
+            return false;
+        }
+
+        private void writeCookie(String id) {
+            if (!response.isCommitted()) {
+                response.addCookie(cookie(this, id, -1));
+            }
+        }
+
+        /**
+         * 保存或删除会话，响应开始写出前和请求结束时各调用一次，第二次只在属性又有变化时才写
+         */
+        void commitSession() {
+            if (previousId != null) {
+                repository.delete(previousId);
+                previousId = null;
+            }
+            if (session == null) {
+                return;
+            }
+            StoredSession stored = session.stored;
+            if (session.invalid) {
+                if (!session.deleted) {
+                    session.deleted = true;
+                    repository.delete(stored.getId());
+                    invalidated.incrementAndGet();
+                    if (!response.isCommitted()) {
+                        response.addCookie(cookie(this, "", 0));
+                    }
+                }
+                return;
+            }
+            if (stored.isChanged()) {
+                repository.save(stored);
+                stored.markSaved();
+                session.savedAccessTime = stored.getLastAccessedTime();
+                saved.incrementAndGet();
+            } else if (stored.getLastAccessedTime() - session.savedAccessTime >= touchInterval) {
+                repository.save(stored);
+                session.savedAccessTime = stored.getLastAccessedTime();
+                touched.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 响应开始写出前先保存会话
+     */
+    private static class SessionResponse extends HttpServletResponseWrapper {
+        private final SessionRequest request;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        SessionResponse(HttpServletResponse response, SessionRequest request) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            request.commitSession();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            request.commitSession();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            request.commitSession();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            request.commitSession();
+            super.flushBuffer();
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                ServletOutputStream delegate = super.getOutputStream();
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        request.commitSession();
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        request.commitSession();
+                        delegate.close();
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(super.getWriter()) {
+                    @Override
+                    public void flush() {
+                        request.commitSession();
+                        super.flush();
+                    }
+
+                    @Override
+                    public void close() {
+                        request.commitSession();
+                        super.close();
+                    }
+                };
+            }
+            return writer;
+        }
+    }
+
+    private class RepositorySession implements HttpSession {
+        private final StoredSession stored;
+        private final boolean isNew;
+        private long savedAccessTime;
+        private boolean invalid;
+        private boolean deleted;
+
+        RepositorySession(StoredSession stored, boolean isNew) {
+            this.stored = stored;
+            this.isNew = isNew;
+            this.savedAccessTime = stored.getLastAccessedTime();
+            stored.setLastAccessedTime(System.currentTimeMillis());
+        }
+
+        private void checkValid() {
+            if (invalid) {
+                throw new IllegalStateException("session has been invalidated");
+            }
+        }
+
+        @Override
+        public long getCreationTime() {
+            checkValid();
+            return stored.getCreationTime();
+        }
+
+        @Override
+        public String getId() {
+            return stored.getId();
+        }
+
+        @Override
+        public long getLastAccessedTime() {
+            checkValid();
+            return savedAccessTime;
+        }
+
+        @Override
+        public ServletContext getServletContext() {
+            return SessionRepositoryFilter.this.getServletContext();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(int interval) {
+            stored.setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public int getMaxInactiveInterval() {
+            return stored.getMaxInactiveInterval();
+        }
+
+        @Override
+        @Deprecated
+        public HttpSessionContext getSessionContext() {
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            checkValid();
+            return stored.getAttribute(name);
+        }
+
+        @Override
+        @Deprecated
+        public Object getValue(String name) {
+            return getAttribute(name);
+        }
+
+        @Override
+        public Enumeration<String> getAttributeNames() {
+            checkValid();
+            return Collections.enumeration(stored.getAttributes().keySet());
+        }
+
+        @Override
+        @Deprecated
+        public String[] getValueNames() {
+            checkValid();
+            return stored.getAttributes().keySet().toArray(new String[0]);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            checkValid();
+            stored.setAttribute(name, value);
+        }
+
+        @Override
+        @Deprecated
+        public void putValue(String name, Object value) {
+            setAttribute(name, value);
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            checkValid();
+            stored.removeAttribute(name);
+        }
+
+        @Override
+        @Deprecated
+        public void removeValue(String name) {
+            removeAttribute(name);
+        }
+
+        @Override
+        public void invalidate() {
+            checkValid();
+            invalid = true;
+        }
+
+        @Override
+        public boolean isNew() {
+            checkValid();
+            return isNew;
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "sessions";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("store", repository == null ? "servlet" : repository.getClass().getSimpleName());
+        metrics.put("loaded", loaded.get());
+        metrics.put("created", created.get());
+        metrics.put("saved", saved.get());
+        metrics.put("touched", touched.get());
+        metrics.put("invalidated", invalidated.get());
+        metrics.put("expired", expired.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,34 @@
+package com.demo.session;
+
+import com.demo.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 登录后放进会话的用户信息，会话属性"user"/"admin"都是这个类型
+ * 只保留识别身份和页面头部要显示的字段，不含密码；邮箱、电话等需要时按userID查库
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionUser implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int id;
+
+    private String userID;
+
+    private String userName;
+
+    private String picture;
+
+    private boolean admin;
+
+    public static SessionUser of(User user) {
+        return new SessionUser(user.getId(), user.getUserID(), user.getUserName(), user.getPicture(),
+                user.getIsadmin() == 1);
+    }
+}
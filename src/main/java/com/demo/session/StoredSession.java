@@ -0,0 +1,109 @@
+package com.demo.session;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 会话在SessionRepository中保存的内容，和容器无关
+ * 属性被setAttribute/removeAttribute过时标记为已修改，保存时才需要写属性，否则只更新最后访问时间
+ */
+public class StoredSession {
+    private String id;
+    private final long creationTime;
+    private long lastAccessedTime;
+    /**
+     * 秒，小于等于0表示不过期
+     */
+    private int maxInactiveInterval;
+    private final Map<String, Object> attributes;
+    private boolean changed;
+
+    public StoredSession(int maxInactiveInterval) {
+        this(UUID.randomUUID().toString(), System.currentTimeMillis(), System.currentTimeMillis(),
+                maxInactiveInterval, new LinkedHashMap<>());
+        changed = true;
+    }
+
+    public StoredSession(String id, long creationTime, long lastAccessedTime, int maxInactiveInterval,
+                         Map<String, Object> attributes) {
+        this.id = id;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.attributes = attributes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 换一个新id，登录后调用防止会话固定
+     */
+    public String changeId() {
+        id = UUID.randomUUID().toString();
+        changed = true;
+        return id;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public long getLastAccessedTime() {
+        return lastAccessedTime;
+    }
+
+    public void setLastAccessedTime(long lastAccessedTime) {
+        this.lastAccessedTime = lastAccessedTime;
+    }
+
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    public void setMaxInactiveInterval(int maxInactiveInterval) {
+        this.maxInactiveInterval = maxInactiveInterval;
+        changed = true;
+    }
+
+    public long getExpiryTime() {
+        return maxInactiveInterval <= 0 ? Long.MAX_VALUE : lastAccessedTime + maxInactiveInterval * 1000L;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= getExpiryTime();
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            removeAttribute(name);
+            return;
+        }
+        attributes.put(name, value);
+        changed = true;
+    }
+
+    public void removeAttribute(String name) {
+        if (attributes.remove(name) != null) {
+            changed = true;
+        }
+    }
+
+    public boolean isChanged() {
+        return changed;
+    }
+
+    public void markSaved() {
+        changed = false;
+    }
+}
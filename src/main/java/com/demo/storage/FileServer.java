@@ -0,0 +1,225 @@
+package com.demo.storage;
+
+import com.demo.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把本地文件写到响应里：
+ * 大文件交给Tomcat用sendfile发送，内核直接从页缓存拷到socket；容器不支持时用FileChannel.transferTo
+ * 支持单个Range区间（断点续传、视频拖动），ETag/Last-Modified协商缓存，内容寻址的文件名返回immutable
+ */
+@Component
+public class FileServer implements MetricsSource {
+    /**
+     * Tomcat的sendfile约定，见org.apache.catalina.Globals，这里不直接依赖Tomcat的类
+     */
+    static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    /**
+     * 小于这个字节数的文件直接拷贝，sendfile的系统调用开销不划算；和Tomcat DefaultServlet的默认值一致
+     */
+    @Value("${file-serving.sendfile-threshold:49152}")
+    private long sendfileThreshold;
+    /**
+     * 文件名不是内容哈希时的缓存时间，过期后用ETag/Last-Modified协商
+     */
+    @Value("${file-serving.max-age:3600}")
+    private long maxAge;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong partial = new AtomicLong();
+    private final AtomicLong sendfile = new AtomicLong();
+    private final AtomicLong transferred = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public FileServer() {
+    }
+
+    FileServer(long sendfileThreshold, long maxAge) {
+        this.sendfileThreshold = sendfileThreshold;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * @param immutable 文件名包含内容哈希，内容永远不变，浏览器和CDN可以缓存一年且不用再验证
+     */
+    public void serve(Path file, boolean immutable, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requests.incrementAndGet();
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : "public, max-age=" + maxAge);
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            notModified.incrementAndGet();
+            return;
+        }
+        String contentType = request.getServletContext().getMimeType(file.getFileName().toString());
+        response.setContentType(contentType == null ? "application/octet-stream" : contentType);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = length - 1;
+        long[] range = range(request, etag, lastModified, length);
+        if (range == UNSATISFIABLE) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        if (range != null) {
+            start = range[0];
+            end = range[1];
+            partial.incrementAndGet();
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+        bytes.addAndGet(count);
+
+        if (count >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // 请求处理完后由Tomcat的poller线程发送，请求线程马上释放
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            sendfile.incrementAndGet();
+            return;
+        }
+        transferred.incrementAndGet();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    /**
+     * 不在本机的文件（共享存储）按流拷贝，不支持Range和协商缓存
+     *
+     * @param name 文件名，用来确定Content-Type
+     */
+    public void serve(InputStream content, String name, boolean immutable, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        requests.incrementAndGet();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : "public, max-age=" + maxAge);
+        String contentType = request.getServletContext().getMimeType(name);
+        response.setContentType(contentType == null ? "application/octet-stream" : contentType);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        transferred.incrementAndGet();
+        bytes.addAndGet(StreamUtils.copy(content, response.getOutputStream()));
+    }
+
+    /**
+     * 解析Range头，只支持单个区间；多区间、格式不对或If-Range不匹配时返回null，按整个文件返回
+     */
+    static long[] range(HttpServletRequest request, String etag, long lastModified, long length) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            // If-Range是过期的ETag或者日期早于文件修改时间，说明客户端手里的前半截已经过期
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                return null;
+            }
+            try {
+                long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+                if (date < 0 || lastModified / 1000 > date / 1000) {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // bytes=-500 最后500字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return UNSATISFIABLE;
+                }
+                if (length == 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                if (start >= length) {
+                    return UNSATISFIABLE;
+                }
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                if (end < start) {
+                    return null;
+                }
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "fileServing";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests", requests.get());
+        metrics.put("notModified", notModified.get());
+        metrics.put("partial", partial.get());
+        metrics.put("sendfile", sendfile.get());
+        metrics.put("transferTo", transferred.get());
+        metrics.put("bytes", bytes.get());
+        return metrics;
+    }
+}
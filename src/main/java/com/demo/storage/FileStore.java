@@ -0,0 +1,60 @@
+package com.demo.storage;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * 上传文件的存储，所有方法都用保存时返回的url作为文件标识，如"file/venue/ab/哈希.png"
+ * 数据库里只存url，换成多个节点共享的存储（对象存储、NFS等）时只需要另写一个实现
+ */
+public interface FileStore {
+    String URL_PREFIX = "file/";
+
+    /**
+     * 按内容寻址保存上传的文件，同样内容只保存一份
+     *
+     * @param directory 分类目录，如"venue"、"user"
+     * @return 文件的url，空文件返回""
+     */
+    String save(String directory, MultipartFile file) throws IOException;
+
+    /**
+     * 同上，边读边存，用于流式上传
+     *
+     * @param suffix 带点的后缀，如".png"
+     * @return 文件的url
+     */
+    String save(String directory, InputStream content, String suffix) throws IOException;
+
+    boolean exists(String url);
+
+    /**
+     * 文件不存在时抛出java.nio.file.NoSuchFileException
+     */
+    InputStream open(String url) throws IOException;
+
+    /**
+     * 文件在本机文件系统上的路径，下载时可以交给sendfile发送；文件不存在或存储不在本机时返回null，调用方改用open()
+     */
+    default Path localPath(String url) {
+        return null;
+    }
+
+    /**
+     * 写入或覆盖一个派生文件（如缩略图），写完之前其他读者看不到半截内容
+     */
+    void put(String url, InputStream content) throws IOException;
+
+    /**
+     * 删除directory下没有被引用的文件，派生文件跟随原文件
+     *
+     * @param references 文件url到引用数
+     * @param grace 修改时间在这个毫秒数之内的文件不删
+     * @return 删除的文件数
+     */
+    int collectGarbage(String directory, Map<String, Long> references, long grace) throws IOException;
+}
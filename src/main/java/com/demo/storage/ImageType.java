@@ -0,0 +1,60 @@
+package com.demo.storage;
+
+/**
+ * 按文件开头的魔数识别图片格式，不信任文件名后缀和浏览器给的Content-Type
+ */
+public enum ImageType {
+    PNG(".png"), JPEG(".jpg"), GIF(".gif"), BMP(".bmp"), WEBP(".webp");
+
+    /**
+     * 识别需要的最多字节数
+     */
+    public static final int HEAD_LENGTH = 12;
+
+    private final String suffix;
+
+    ImageType(String suffix) {
+        this.suffix = suffix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @param head 文件开头，不足HEAD_LENGTH时length为实际长度
+     * @return 不是支持的图片格式时返回null
+     */
+    public static ImageType sniff(byte[] head, int length) {
+        if (startsWith(head, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return PNG;
+        }
+        if (startsWith(head, length, 0xFF, 0xD8, 0xFF)) {
+            return JPEG;
+        }
+        if (startsWith(head, length, 'G', 'I', 'F', '8') && length >= 6
+                && (head[4] == '7' || head[4] == '9') && head[5] == 'a') {
+            return GIF;
+        }
+        if (startsWith(head, length, 'B', 'M') && length >= 6) {
+            return BMP;
+        }
+        if (startsWith(head, length, 'R', 'I', 'F', 'F') && length >= 12
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return WEBP;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] head, int length, int... magic) {
+        if (length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((head[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
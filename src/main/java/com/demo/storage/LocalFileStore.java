@@ -0,0 +1,112 @@
+package com.demo.storage;
+
+import com.demo.utils.FileUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * 保存在本地文件系统的storage.local.root目录下，url "file/venue/ab/哈希.png"对应root/venue/ab/哈希.png
+ * 目录在classpath之外，打成jar包后也能写入，重新部署不会丢文件；多个节点共用时root应指向共享盘
+ */
+@Component
+public class LocalFileStore implements FileStore {
+    @Value("${storage.local.root:uploads}")
+    private String root;
+
+    private Path rootPath;
+
+    public LocalFileStore() {
+    }
+
+    public LocalFileStore(Path root) {
+        this.root = root.toString();
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        rootPath = Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    public Path getRoot() {
+        return rootPath;
+    }
+
+    @Override
+    public String save(String directory, MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            return "";
+        }
+        return URL_PREFIX + directory + "/" + FileUtil.savePicture(resolve(directory).toString(), file);
+    }
+
+    @Override
+    public String save(String directory, InputStream content, String suffix) throws IOException {
+        return URL_PREFIX + directory + "/" + FileUtil.savePicture(resolve(directory).toString(), content, suffix);
+    }
+
+    @Override
+    public boolean exists(String url) {
+        return Files.isRegularFile(path(url));
+    }
+
+    @Override
+    public InputStream open(String url) throws IOException {
+        return Channels.newInputStream(FileChannel.open(path(url), StandardOpenOption.READ));
+    }
+
+    @Override
+    public Path localPath(String url) {
+        Path path = path(url);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    @Override
+    public void put(String url, InputStream content) throws IOException {
+        Path target = path(url);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".put-", ".tmp");
+        try {
+            FileUtil.copy(content, temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public int collectGarbage(String directory, Map<String, Long> references, long grace) throws IOException {
+        return FileUtil.collectGarbage(resolve(directory).toString(), URL_PREFIX + directory + "/", references, grace);
+    }
+
+    /**
+     * url转成root下的路径，拒绝跳出root的url
+     */
+    public Path path(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX)) {
+            throw new RuntimeException("不是上传文件的url：" + url);
+        }
+        return resolve(url.substring(URL_PREFIX.length()));
+    }
+
+    private Path resolve(String relative) {
+        Path path = rootPath.resolve(relative).normalize();
+        if (!path.startsWith(rootPath) || path.equals(rootPath)) {
+            throw new RuntimeException("非法的文件路径：" + relative);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,27 @@
+package com.demo.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+
+/**
+ * 默认的multipart解析会在进入controller之前把整个请求体读完，文件先落到临时目录
+ * upload.streaming-paths下的接口跳过这一步，由StreamingUpload边读边处理
+ */
+@Component("multipartResolver")
+public class StreamingMultipartResolver extends StandardServletMultipartResolver {
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    @Value("${upload.streaming-paths:}")
+    private String[] streamingPaths;
+
+    @Override
+    public boolean isMultipart(HttpServletRequest request) {
+        return super.isMultipart(request)
+                && !Arrays.asList(streamingPaths).contains(urlPathHelper.getPathWithinApplication(request));
+    }
+}
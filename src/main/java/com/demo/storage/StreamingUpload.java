@@ -0,0 +1,163 @@
+package com.demo.storage;
+
+import com.demo.utils.MetricsSource;
+import org.apache.tomcat.util.http.fileupload.FileItemIterator;
+import org.apache.tomcat.util.http.fileupload.FileItemStream;
+import org.apache.tomcat.util.http.fileupload.FileUploadBase;
+import org.apache.tomcat.util.http.fileupload.FileUploadException;
+import org.apache.tomcat.util.http.fileupload.servlet.ServletFileUpload;
+import org.apache.tomcat.util.http.fileupload.util.Streams;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式处理带图片的表单：边读请求体边解析，图片直接写进FileStore，不经过multipart临时目录
+ * 请求声明的长度超限时一个字节都不读就拒绝；图片读到第一块就按魔数判断格式，不是图片立即拒绝，后面的内容不再读
+ * 文件超过大小限制时在读到超限的那一块时中止，已经写了一半的临时文件由FileStore删掉
+ */
+@Component
+public class StreamingUpload implements MetricsSource {
+    @Autowired
+    private FileStore fileStore;
+
+    @Value("${upload.max-file-size:5MB}")
+    private DataSize maxFileSize;
+    @Value("${upload.max-request-size:6MB}")
+    private DataSize maxRequestSize;
+
+    private final AtomicLong streamed = new AtomicLong();
+    private final AtomicLong resolved = new AtomicLong();
+    private final AtomicLong pictures = new AtomicLong();
+    private final AtomicLong rejectedType = new AtomicLong();
+    private final AtomicLong rejectedSize = new AtomicLong();
+
+    /**
+     * 解析表单，fileField字段的图片保存到FileStore的directory目录下
+     * 请求已经被其他环节解析成MultipartHttpServletRequest（比如测试里的MockMvc）或者不是multipart时，按普通参数读取
+     */
+    public UploadForm parse(HttpServletRequest request, String directory, String fileField) throws IOException {
+        MultipartHttpServletRequest multipart = WebUtils.getNativeRequest(request, MultipartHttpServletRequest.class);
+        if (multipart != null || !ServletFileUpload.isMultipartContent(request)) {
+            resolved.incrementAndGet();
+            return parseResolved(request, multipart, directory, fileField);
+        }
+        streamed.incrementAndGet();
+        if (request.getContentLengthLong() > maxRequestSize.toBytes()) {
+            throw tooLarge();
+        }
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setSizeMax(maxRequestSize.toBytes());
+        upload.setFileSizeMax(maxFileSize.toBytes());
+        upload.setHeaderEncoding("UTF-8");
+        UploadForm form = new UploadForm();
+        try {
+            FileItemIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                // 出错时不关闭item的流，关闭会把这一项剩下的内容读完
+                InputStream in = item.openStream();
+                if (item.isFormField()) {
+                    form.put(item.getFieldName(), Streams.asString(in, "UTF-8"));
+                } else if (fileField.equals(item.getFieldName()) && form.getPicture() == null
+                        && item.getName() != null && !item.getName().isEmpty()) {
+                    form.setPicture(save(directory, in));
+                    in.close();
+                }
+            }
+        } catch (FileUploadBase.FileUploadIOException e) {
+            if (e.getCause() instanceof FileUploadBase.SizeException) {
+                throw tooLarge();
+            }
+            throw e;
+        } catch (FileUploadBase.SizeException e) {
+            throw tooLarge();
+        } catch (FileUploadException e) {
+            throw new UploadRejectedException(HttpServletResponse.SC_BAD_REQUEST, "上传内容格式错误");
+        }
+        return form;
+    }
+
+    private UploadForm parseResolved(HttpServletRequest request, MultipartHttpServletRequest multipart,
+                                     String directory, String fileField) throws IOException {
+        UploadForm form = new UploadForm();
+        for (Map.Entry<String, String[]> entry : request.getParameterMap().entrySet()) {
+            if (entry.getValue().length > 0) {
+                form.put(entry.getKey(), entry.getValue()[0]);
+            }
+        }
+        MultipartFile file = multipart == null ? null : multipart.getFile(fileField);
+        if (file != null && file.getOriginalFilename() != null && !file.getOriginalFilename().isEmpty()) {
+            if (file.getSize() > maxFileSize.toBytes()) {
+                throw tooLarge();
+            }
+            try (InputStream in = file.getInputStream()) {
+                form.setPicture(save(directory, in));
+            }
+        }
+        return form;
+    }
+
+    /**
+     * 先读出开头几个字节判断格式，再推回去和剩下的内容一起写入
+     *
+     * @return 图片url，内容为空时返回""
+     */
+    private String save(String directory, InputStream in) throws IOException {
+        PushbackInputStream content = new PushbackInputStream(in, ImageType.HEAD_LENGTH);
+        byte[] head = new byte[ImageType.HEAD_LENGTH];
+        int length = 0;
+        int n;
+        while (length < head.length && (n = content.read(head, length, head.length - length)) > 0) {
+            length += n;
+        }
+        if (length == 0) {
+            // 选了文件但内容为空，和以前一样当作清空图片
+            return "";
+        }
+        ImageType type = ImageType.sniff(head, length);
+        if (type == null) {
+            rejectedType.incrementAndGet();
+            throw new UploadRejectedException(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "只能上传png、jpg、gif、bmp、webp格式的图片");
+        }
+        content.unread(head, 0, length);
+        String url = fileStore.save(directory, content, type.getSuffix());
+        pictures.incrementAndGet();
+        return url;
+    }
+
+    private UploadRejectedException tooLarge() {
+        rejectedSize.incrementAndGet();
+        return new UploadRejectedException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                "图片不能超过" + maxFileSize.toMegabytes() + "MB");
+    }
+
+    @Override
+    public String metricsName() {
+        return "uploads";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("streamed", streamed.get());
+        metrics.put("resolved", resolved.get());
+        metrics.put("pictures", pictures.get());
+        metrics.put("rejectedType", rejectedType.get());
+        metrics.put("rejectedSize", rejectedSize.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,365 @@
+package com.demo.storage;
+
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.utils.FileUtil;
+import com.demo.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上传的场馆图片和头像原样保存，页面上只显示32px或100px，直接用原图每次都要下载几MB
+ * 上传后在后台线程池里按配置的宽度生成JPEG缩略图，和原图存在同一个FileStore里："哈希.png"旁边是"哈希_200.jpg"；
+ * 每个宽度都会生成，原图更窄时按原尺寸生成，前端按宽度拼出的缩略图url生成后总是存在
+ * 请求线程只提交任务，不等待；队列满时丢弃任务，页面继续用原图，下次渲染发现缩略图还不存在时再提交；
+ * 启动时在后台为数据库里已有的图片补生成缺少的缩略图
+ */
+@Component
+public class ThumbnailService implements MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    @Autowired
+    private FileStore fileStore;
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private VenueDao venueDao;
+
+    @Value("${storage.thumbnail.threads:2}")
+    private int threads;
+    @Value("${storage.thumbnail.queue-capacity:100}")
+    private int queueCapacity;
+    /**
+     * 页面上32px头像、100px和150px场馆图片的两倍，兼顾高分屏
+     */
+    @Value("${storage.thumbnail.widths:64,200,300}")
+    private int[] widths;
+    @Value("${storage.thumbnail.quality:0.8}")
+    private float quality;
+    @Value("${storage.thumbnail.backfill:true}")
+    private boolean backfill;
+
+    private ThreadPoolExecutor executor;
+    private Thread backfillThread;
+
+    /**
+     * 已提交还没执行完的原图url，页面反复渲染时同一张图只排一个任务
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong backfilled = new AtomicLong();
+
+    public ThumbnailService() {
+    }
+
+    ThumbnailService(FileStore fileStore, int[] widths, float quality) {
+        this(fileStore, null, null, widths, quality);
+    }
+
+    ThumbnailService(FileStore fileStore, UserDao userDao, VenueDao venueDao, int[] widths, float quality) {
+        this.fileStore = fileStore;
+        this.userDao = userDao;
+        this.venueDao = venueDao;
+        this.widths = widths.clone();
+        this.quality = quality;
+        this.threads = 1;
+        this.queueCapacity = 10;
+        Arrays.sort(this.widths);
+    }
+
+    @PostConstruct
+    public void start() {
+        Arrays.sort(widths);
+        AtomicInteger sequence = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "thumbnail-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        if (backfill) {
+            backfillThread = new Thread(this::backfill, "thumbnail-backfill");
+            backfillThread.setDaemon(true);
+            backfillThread.setPriority(Thread.MIN_PRIORITY);
+            backfillThread.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (backfillThread != null) {
+            backfillThread.interrupt();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * 为头像和场馆图片补生成缺少的缩略图，在单独的线程里逐个生成，不占上传用的队列
+     */
+    void backfill() {
+        List<String> urls = new ArrayList<>();
+        try {
+            for (Object[] row : userDao.countPictures()) {
+                urls.add((String) row[0]);
+            }
+            for (Object[] row : venueDao.countPictures()) {
+                urls.add((String) row[0]);
+            }
+        } catch (Exception e) {
+            log.warn("thumbnail backfill could not list pictures", e);
+            return;
+        }
+        for (String url : urls) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (url == null || !url.startsWith(FileStore.URL_PREFIX) || !missing(url)) {
+                continue;
+            }
+            if (pending.add(url)) {
+                try {
+                    backfilled.addAndGet(generateSafely(url));
+                } finally {
+                    pending.remove(url);
+                }
+            }
+        }
+    }
+
+    /**
+     * 上传保存后调用，在后台生成缩略图
+     *
+     * @param url FileStore.save返回的url
+     */
+    public void submit(String url) {
+        if (url == null || !url.startsWith(FileStore.URL_PREFIX) || !pending.add(url)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generateSafely(url);
+                } finally {
+                    pending.remove(url);
+                }
+            });
+            submitted.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            pending.remove(url);
+            rejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * 模板里用：缩略图已经生成时返回缩略图url，否则提交生成并先返回原图url
+     */
+    public String url(String picture, int width) {
+        String variant = FileUtil.variantOf(picture, width);
+        if (variant == null || variant.equals(picture)) {
+            return picture;
+        }
+        if (fileStore.exists(variant)) {
+            return variant;
+        }
+        submit(picture);
+        return picture;
+    }
+
+    private boolean missing(String url) {
+        for (int width : widths) {
+            if (!fileStore.exists(FileUtil.variantOf(url, width))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int generateSafely(String url) {
+        try {
+            // 原图已被回收或还没写完
+            if (!fileStore.exists(url)) {
+                return 0;
+            }
+            return generate(url);
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.warn("thumbnail generation failed for {}", url, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 为url生成所有宽度的缩略图，不放大：原图比某个宽度窄时按原尺寸生成；已经存在的跳过
+     *
+     * @return 新生成的缩略图数，不是图片时返回0
+     */
+    int generate(String url) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage image = read(url);
+        if (image == null) {
+            return 0;
+        }
+        int count = 0;
+        // 从大到小生成，每个缩略图从上一个缩出来，避免每次都从大图开始缩
+        BufferedImage current = flatten(image);
+        for (int i = widths.length - 1; i >= 0; i--) {
+            int width = widths[i];
+            current = scale(current, width);
+            String target = FileUtil.variantOf(url, width);
+            if (fileStore.exists(target)) {
+                continue;
+            }
+            fileStore.put(target, new ByteArrayInputStream(encode(current)));
+            count++;
+        }
+        generated.addAndGet(count);
+        nanos.addAndGet(System.nanoTime() - start);
+        return count;
+    }
+
+    /**
+     * 解码时隔行隔列采样，几千像素的原图不用整张解码进内存；不是图片时返回null
+     */
+    private BufferedImage read(String url) throws IOException {
+        try (InputStream source = fileStore.open(url);
+             ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                // 保留最大缩略图宽度的两倍以上，缩小质量不受影响
+                int subsampling = Math.max(1, reader.getWidth(0) / (widths[widths.length - 1] * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * JPEG没有透明通道，透明部分铺白底
+     */
+    private static BufferedImage flatten(BufferedImage image) {
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    /**
+     * 每次最多缩小一半，一步缩到位时双线性插值会丢掉太多像素，出现锯齿
+     */
+    private static BufferedImage scale(BufferedImage image, int width) {
+        BufferedImage current = image;
+        while (current.getWidth() > width) {
+            int next = Math.max(width, current.getWidth() / 2);
+            int height = Math.max(1, (int) Math.round((double) image.getHeight() * next / image.getWidth()));
+            BufferedImage scaled = new BufferedImage(next, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = scaled.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, next, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = scaled;
+        }
+        return current;
+    }
+
+    /**
+     * 缩略图只有几KB到几十KB，编码到内存后整体交给FileStore写入
+     */
+    private byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public String metricsName() {
+        return "thumbnails";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("submitted", submitted.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("queued", executor == null ? 0 : executor.getQueue().size());
+        metrics.put("generated", generated.get());
+        metrics.put("failures", failures.get());
+        metrics.put("backfilled", backfilled.get());
+        metrics.put("generateMillis", nanos.get() / 1_000_000);
+        return metrics;
+    }
+}
@@ -0,0 +1,122 @@
+package com.demo.storage;
+
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.utils.MetricsSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上传文件按内容去重后一个文件可能被多个用户/场馆引用，修改头像、场馆图片或删除记录时不能直接删旧文件
+ * 这里定期按User.picture和Venue.picture统计每个文件的引用数，删除引用数为0且超过宽限期的文件
+ */
+@Component
+public class UploadCollector implements MetricsSource {
+    private static final Logger log = LoggerFactory.getLogger(UploadCollector.class);
+
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private VenueDao venueDao;
+    @Autowired
+    private FileStore fileStore;
+
+    @Value("${storage.gc.enabled:true}")
+    private boolean enabled;
+    @Value("${storage.gc.interval:3600000}")
+    private long interval;
+    /**
+     * 刚上传还没保存到数据库的文件引用数也是0，修改时间在宽限期内的不删
+     */
+    @Value("${storage.gc.grace:3600000}")
+    private long grace;
+
+    private ScheduledExecutorService executor;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private volatile int referenced;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "upload-gc");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::collectSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void collectSafely() {
+        try {
+            collect();
+        } catch (Exception e) {
+            log.warn("upload gc failed, will retry", e);
+        }
+    }
+
+    /**
+     * 回收一次，返回删除的文件数
+     */
+    public int collect() throws Exception {
+        Map<String, Long> references = new HashMap<>();
+        addCounts(references, userDao.countPictures());
+        addCounts(references, venueDao.countPictures());
+        referenced = references.size();
+        int count = fileStore.collectGarbage("user", references, grace)
+                + fileStore.collectGarbage("venue", references, grace);
+        runs.incrementAndGet();
+        deleted.addAndGet(count);
+        if (count > 0) {
+            log.info("upload gc removed {} orphan files", count);
+        }
+        return count;
+    }
+
+    private static void addCounts(Map<String, Long> references, List<Object[]> counts) {
+        for (Object[] row : counts) {
+            if (row[0] != null) {
+                references.merge((String) row[0], ((Number) row[1]).longValue(), Long::sum);
+            }
+        }
+    }
+
+    @Override
+    public String metricsName() {
+        return "uploadGc";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("runs", runs.get());
+        metrics.put("referenced", referenced);
+        metrics.put("deleted", deleted.get());
+        return metrics;
+    }
+}
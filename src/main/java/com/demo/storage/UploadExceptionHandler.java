@@ -0,0 +1,23 @@
+package com.demo.storage;
+
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 上传被拒绝时返回413/415和原因，而不是500
+ */
+@ControllerAdvice
+public class UploadExceptionHandler {
+
+    @ExceptionHandler(UploadRejectedException.class)
+    public void rejected(UploadRejectedException e, HttpServletResponse response) throws IOException {
+        response.setStatus(e.getStatus());
+        // 没读完的请求体Tomcat最多吞掉max-swallow-size，超过就直接断开连接
+        response.setHeader("Connection", "close");
+        response.setContentType("text/plain;charset=UTF-8");
+        response.getWriter().write(e.getMessage());
+    }
+}
@@ -0,0 +1,35 @@
+package com.demo.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 流式解析后的上传表单：普通字段和已经保存好的图片url
+ */
+public class UploadForm {
+    private final Map<String, String> fields = new HashMap<>();
+    private String picture;
+
+    public String get(String name) {
+        return fields.get(name);
+    }
+
+    public int getInt(String name) {
+        return Integer.parseInt(fields.get(name));
+    }
+
+    void put(String name, String value) {
+        fields.putIfAbsent(name, value);
+    }
+
+    /**
+     * @return 保存后的图片url；表单里没有选择文件时返回null
+     */
+    public String getPicture() {
+        return picture;
+    }
+
+    void setPicture(String picture) {
+        this.picture = picture;
+    }
+}
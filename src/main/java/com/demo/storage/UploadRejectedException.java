@@ -0,0 +1,17 @@
+package com.demo.storage;
+
+/**
+ * 上传的内容不是图片或者超过大小限制，status是返回给客户端的HTTP状态码
+ */
+public class UploadRejectedException extends RuntimeException {
+    private final int status;
+
+    public UploadRejectedException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
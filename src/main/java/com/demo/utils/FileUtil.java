@@ -1,57 +1,187 @@
 package com.demo.utils;
 
-import org.springframework.util.ClassUtils;
-import org.springframework.util.ResourceUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
-import java.util.UUID;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class FileUtil {
+    /**
+     * 写入中的临时文件前缀，和正式文件在同一目录下，保证可以原子改名
+     */
+    private static final String TEMP_PREFIX = ".upload-";
+    private static final long TRANSFER_CHUNK = 1 << 20;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
 
     /**
-     * 保存上传的文件
+     * 图片缩略图的url，"file/user/ab/哈希.png"宽度200的缩略图是"file/user/ab/哈希_200.jpg"
      *
-     * @param picture
-     * @return 文件下载的url
-     * @throws Exception
+     * @return 不是上传文件时原样返回
      */
-    public static String saveVenueFile(MultipartFile picture) throws Exception {
+    public static String variantOf(String url, int width) {
+        if (url == null || !url.startsWith("file/")) {
+            return url;
+        }
+        return withoutExtension(url) + "_" + width + ".jpg";
+    }
 
-        if (picture.isEmpty()) {
-            return "";
+    /**
+     * 按内容寻址保存：边写临时文件边计算SHA-256，写完后原子改名为"哈希前两位/哈希.后缀"
+     * 同样内容的文件已经存在时直接返回已有路径，不再占用空间
+     *
+     * @return 相对filePath的文件路径
+     */
+    public static String savePicture(String filePath, MultipartFile picture) throws IOException {
+        return savePicture(filePath, picture.getInputStream(), suffix(picture.getOriginalFilename()));
+    }
+
+    /**
+     * 同上，边读边写，不需要先把整个上传缓存到内存或临时目录
+     *
+     * @param suffix 带点的后缀，如".png"，可以为空字符串
+     */
+    public static String savePicture(String filePath, InputStream content, String suffix) throws IOException {
+        Path dir = Paths.get(filePath);
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, TEMP_PREFIX, ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(content, digest)) {
+                copy(in, temp);
+            }
+            String hash = toHex(digest.digest());
+            String filename = hash.substring(0, 2) + "/" + hash + suffix;
+            Path target = dir.resolve(filename);
+            if (Files.exists(target)) {
+                // 刷新修改时间，防止回收器把刚被重新引用的孤儿文件删掉
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+                return filename;
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // 同样的内容被并发上传，对方已经写好
+            }
+            return filename;
+        } finally {
+            Files.deleteIfExists(temp);
         }
-        String fileDirPath = ClassUtils.getDefaultClassLoader().getResource("static").getPath() + "/file/venue";
-        return "file/venue/" + savePicture(fileDirPath, picture);
     }
 
-    public static String saveUserFile(MultipartFile picture) throws Exception{
-        if (picture.isEmpty()) {
-            return "";
+    /**
+     * 把流写入文件，已有内容会被覆盖；通过FileChannel按块传输，不经过额外的堆缓冲区拷贝
+     */
+    public static void copy(InputStream in, Path target) throws IOException {
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = out.transferFrom(source, position, TRANSFER_CHUNK)) > 0) {
+                position += transferred;
+            }
         }
-        String fileDirPath = ClassUtils.getDefaultClassLoader().getResource("static").getPath() + "/file/user";
-        return "file/user/" + savePicture(fileDirPath, picture);
     }
 
-    public static String savePicture(String filePath, MultipartFile picture) throws Exception{
-        File fileDir = new File(filePath);
-        System.out.println(fileDir.mkdirs());
+    /**
+     * 删除filePath下没有被引用的文件，包括中断上传留下的临时文件
+     * 缩略图跟随原图，原图有引用时缩略图也保留；修改时间在grace毫秒之内的不删，刚上传还没保存到数据库的文件引用数也是0
+     *
+     * @param urlPrefix 文件url中filePath对应的前缀，比如"file/user/"
+     * @param references 文件url到引用数
+     * @return 删除的文件数
+     */
+    public static int collectGarbage(String filePath, String urlPrefix, Map<String, Long> references, long grace) throws IOException {
+        Path dir = Paths.get(filePath);
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(dir)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        Set<String> referenced = new HashSet<>();
+        for (Map.Entry<String, Long> entry : references.entrySet()) {
+            if (entry.getValue() > 0) {
+                referenced.add(stem(entry.getKey()));
+            }
+        }
+        long deadline = System.currentTimeMillis() - grace;
+        int deleted = 0;
+        for (Path file : files) {
+            String url = urlPrefix + dir.relativize(file).toString().replace('\\', '/');
+            if (referenced.contains(stem(url))) {
+                continue;
+            }
+            try {
+                if (Files.getLastModifiedTime(file).toMillis() < deadline && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                // 文件可能已被并发删除，下次再处理
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 原图和它的缩略图共用的部分：去掉后缀和缩略图的"_宽度"
+     */
+    private static String stem(String url) {
+        return withoutExtension(url).replaceFirst("_\\d+$", "");
+    }
 
-        String filename = picture.getOriginalFilename();
+    private static String withoutExtension(String url) {
+        int dot = url.lastIndexOf('.');
+        return dot > url.lastIndexOf('/') ? url.substring(0, dot) : url;
+    }
 
-        System.out.println(fileDir.getAbsolutePath());
-        String suffixName = filename.substring(filename.lastIndexOf("."));
-        filename = UUID.randomUUID() + suffixName;
-        File newFile = new File(fileDir.getAbsolutePath() + File.separator + filename);
-        System.out.println(newFile.getAbsolutePath());
-        // 上传图片到 -》 “绝对路径”
-        picture.transferTo(newFile);
-        return filename;
+    /**
+     * 原文件名的后缀，统一小写，只保留字母数字
+     */
+    private static String suffix(String filename) {
+        if (filename == null || filename.lastIndexOf('.') < 0) {
+            return "";
+        }
+        String suffix = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase();
+        return suffix.matches("[a-z0-9]{1,10}") ? "." + suffix : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("不支持SHA-256", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
     }
 
 }
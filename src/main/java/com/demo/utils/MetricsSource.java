@@ -0,0 +1,13 @@
+package com.demo.utils;
+
+import java.util.Map;
+
+/**
+ * 提供运行指标的组件，由 /admin/metrics.do 统一汇总
+ */
+public interface MetricsSource {
+
+    String metricsName();
+
+    Map<String, Object> metrics();
+}
@@ -0,0 +1,52 @@
+package com.demo.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 构建时用：pom里prepare-package阶段的antrun调用，为静态资源生成同目录的.gz
+ * 参数是用系统路径分隔符连接的文件列表，由Ant的fileset按static.precompress匹配后传入
+ * 只用JDK自带的zip，不依赖构建机PATH上的gzip，也不需要脚本引擎
+ */
+public class Precompress {
+
+    public static void main(String[] args) throws IOException {
+        int count = 0;
+        for (String arg : args) {
+            for (String name : arg.split(File.pathSeparator)) {
+                if (!name.isEmpty() && gzip(Paths.get(name))) {
+                    count++;
+                }
+            }
+        }
+        System.out.println("precompressed " + count + " files");
+    }
+
+    /**
+     * .gz比原文件新时跳过，和Ant的gzip任务一样
+     */
+    static boolean gzip(Path source) throws IOException {
+        Path target = source.resolveSibling(source.getFileName() + ".gz");
+        if (Files.exists(target)
+                && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(source)) >= 0) {
+            return false;
+        }
+        Path tmp = source.resolveSibling(source.getFileName() + ".gz.tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp)) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            Files.copy(source, out);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package com.demo.view;
+
+import com.demo.entity.User;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.thymeleaf.TemplateSpec;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.ITemplateContext;
+import org.thymeleaf.context.IWebContext;
+import org.thymeleaf.engine.AttributeName;
+import org.thymeleaf.model.IProcessableElementTag;
+import org.thymeleaf.processor.element.AbstractAttributeTagProcessor;
+import org.thymeleaf.processor.element.IElementTagStructureHandler;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.util.EscapedAttributeUtils;
+import org.unbescape.html.HtmlEscape;
+
+import javax.servlet.http.HttpSession;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 把布局片段的内容插入到当前元素中，效果等同于th:include="模板 :: 片段(user=${session.xxx},flag=${session.xxx}!=null,page='属性值')"
+ * 片段按(页面, 是否登录)预渲染，用户名和头像先渲染成占位符，插入时替换成转义后的实际值，
+ * 转义方式和th:text、th:src一致，输出与直接include逐字节相同
+ */
+public class CachedFragmentProcessor extends AbstractAttributeTagProcessor {
+    private static final String USER_NAME = "__FRAGMENT_USER_NAME__";
+    private static final String USER_PICTURE = "__FRAGMENT_USER_PICTURE__";
+
+    private final FragmentCache cache;
+    private final String template;
+    private final String fragment;
+    /**
+     * 片段中user参数对应的会话属性，没有用户参数的片段为null
+     */
+    private final String sessionAttribute;
+
+    public CachedFragmentProcessor(String dialectPrefix, String attributeName, int precedence, FragmentCache cache,
+                                   String template, String fragment, String sessionAttribute) {
+        super(TemplateMode.HTML, dialectPrefix, null, false, attributeName, true, precedence, true);
+        this.cache = cache;
+        this.template = template;
+        this.fragment = fragment;
+        this.sessionAttribute = sessionAttribute;
+    }
+
+    @Override
+    protected void doProcess(ITemplateContext context, IProcessableElementTag tag, AttributeName attributeName,
+                             String attributeValue, IElementTagStructureHandler structureHandler) {
+        String page = attributeValue == null ? "" : attributeValue.trim();
+        Object user = sessionUser(context);
+        String userName = null;
+        String picture = null;
+        if (user != null) {
+            BeanWrapper wrapper = new BeanWrapperImpl(user);
+            userName = readable(wrapper, "userName");
+            picture = readable(wrapper, "picture");
+            if (picture == null) {
+                // 头像为空时th:src会去掉整个属性，无法用占位符表示，直接渲染
+                structureHandler.setBody(render(context, user, page), false);
+                return;
+            }
+        }
+
+        String key = fragment + "|" + page + "|" + (user != null) + "|" + context.getLocale();
+        String html = cache.get(key, () -> render(context, user == null ? null : placeholderUser(), page));
+        if (user != null) {
+            html = html.replace(USER_NAME, userName == null ? "" : HtmlEscape.escapeHtml4Xml(userName))
+                    .replace(USER_PICTURE, EscapedAttributeUtils.escapeAttribute(TemplateMode.HTML,
+                            picture.isEmpty() ? "default.jpg" : picture));
+        }
+        structureHandler.setBody(html, false);
+    }
+
+    private Object sessionUser(ITemplateContext context) {
+        if (sessionAttribute == null || !(context instanceof IWebContext)) {
+            return null;
+        }
+        HttpSession session = ((IWebContext) context).getSession();
+        return session == null ? null : session.getAttribute(sessionAttribute);
+    }
+
+    private static String readable(BeanWrapper wrapper, String property) {
+        if (!wrapper.isReadableProperty(property)) {
+            return null;
+        }
+        Object value = wrapper.getPropertyValue(property);
+        return value == null ? null : value.toString();
+    }
+
+    private static User placeholderUser() {
+        User user = new User();
+        user.setUserName(USER_NAME);
+        user.setPicture(USER_PICTURE);
+        return user;
+    }
+
+    /**
+     * 单独渲染片段，去掉片段根元素只保留内容，和th:include插入的内容一致
+     */
+    private String render(ITemplateContext context, Object user, String page) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("user", user);
+        variables.put("flag", user != null);
+        variables.put("page", page);
+        StringWriter writer = new StringWriter();
+        context.getConfiguration().getTemplateManager().parseAndProcess(
+                new TemplateSpec(template, Collections.singleton(fragment), TemplateMode.HTML, null),
+                new Context(context.getLocale(), variables), writer);
+        String html = writer.toString();
+        int start = html.indexOf('>') + 1;
+        int end = html.lastIndexOf("</");
+        return start > 0 && end >= start ? html.substring(start, end) : html;
+    }
+}
@@ -0,0 +1,64 @@
+package com.demo.view;
+
+import com.demo.utils.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 预渲染好的公共布局片段，键是片段名、页面名、是否登录和语言
+ * 和模板缓存共用spring.thymeleaf.cache开关：开发环境模板随时修改，每次重新渲染；生产环境每种组合只渲染一次
+ */
+@Component
+public class FragmentCache implements MetricsSource {
+    private final boolean enabled;
+    private final Map<String, String> rendered = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong renders = new AtomicLong();
+
+    public FragmentCache(@Value("${spring.thymeleaf.cache:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String get(String key, Supplier<String> renderer) {
+        if (!enabled) {
+            renders.incrementAndGet();
+            return renderer.get();
+        }
+        String html = rendered.get(key);
+        if (html != null) {
+            hits.incrementAndGet();
+            return html;
+        }
+        // 组合数有限，并发首次渲染时重复渲染一次也无妨，不加锁
+        renders.incrementAndGet();
+        html = renderer.get();
+        rendered.putIfAbsent(key, html);
+        return html;
+    }
+
+    public void clear() {
+        rendered.clear();
+    }
+
+    @Override
+    public String metricsName() {
+        return "fragmentCache";
+    }
+
+    @Override
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("entries", rendered.size());
+        metrics.put("hits", hits.get());
+        metrics.put("renders", renders.get());
+        return metrics;
+    }
+}
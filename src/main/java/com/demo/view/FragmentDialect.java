@@ -0,0 +1,32 @@
+package com.demo.view;
+
+import org.springframework.stereotype.Component;
+import org.thymeleaf.dialect.AbstractProcessorDialect;
+import org.thymeleaf.processor.IProcessor;
+import org.thymeleaf.standard.StandardDialect;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 公共布局片段的方言：fragment:header、fragment:left属性值为当前页面名，fragment:footer不需要值
+ */
+@Component
+public class FragmentDialect extends AbstractProcessorDialect {
+    private final FragmentCache cache;
+
+    public FragmentDialect(FragmentCache cache) {
+        super("Fragment", "fragment", StandardDialect.PROCESSOR_PRECEDENCE);
+        this.cache = cache;
+    }
+
+    @Override
+    public Set<IProcessor> getProcessors(String dialectPrefix) {
+        int precedence = getDialectProcessorPrecedence();
+        Set<IProcessor> processors = new HashSet<>();
+        processors.add(new CachedFragmentProcessor(dialectPrefix, "header", precedence, cache, "layout/header", "header", "user"));
+        processors.add(new CachedFragmentProcessor(dialectPrefix, "left", precedence, cache, "layout/left", "left", "admin"));
+        processors.add(new CachedFragmentProcessor(dialectPrefix, "footer", precedence, cache, "layout/footer", "Footer", null));
+        return processors;
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * 上传图片的缩略图：file/user/ab/哈希.png 宽度64的缩略图是 file/user/ab/哈希_64.jpg
+ * 缩略图在上传后由后台生成，每个宽度都有（原图更窄时按原尺寸），已有图片在服务启动时补生成；
+ * 刚上传还没生成完或生成失败时加载出错，退回原图
+ */
+function thumbnail(picture, width, attrs) {
+    var src = picture;
+    if (picture.indexOf('file/') === 0) {
+        var slash = picture.lastIndexOf('/');
+        var dot = picture.lastIndexOf('.');
+        src = (dot > slash ? picture.substring(0, dot) : picture) + '_' + width + '.jpg';
+    }
+    if (src === picture) {
+        return '<img src="' + picture + '" ' + attrs + '>';
+    }
+    return '<img src="' + src + '" data-original="' + picture + '" onerror="this.onerror=null;this.src=this.getAttribute(\'data-original\')" ' + attrs + '>';
+}
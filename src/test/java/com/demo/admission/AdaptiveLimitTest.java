@@ -0,0 +1,84 @@
+package com.demo.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveLimitTest {
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AdaptiveLimit limit = new AdaptiveLimit(10, 4, 20, 2.0, 0.5);
+    /**
+     * 构造时记下的上次下调时间是当时的nanoTime，样本都从它之后开始
+     */
+    private long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 先占住held个名额，再完成一个耗时rtt毫秒的请求，最后归还占住的名额
+     */
+    private void sample(int held, long rttMillis) {
+        for (int i = 0; i < held; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertTrue(limit.tryAcquire());
+        long start = now;
+        now += rttMillis * MILLI;
+        limit.release(start, now);
+        now += MILLI;
+        for (int i = 0; i < held; i++) {
+            limit.release();
+        }
+    }
+
+    private int current() {
+        return (Integer) limit.metrics().get("limit");
+    }
+
+    @Test
+    void increasesWhenBusyAndFast() {
+        for (int i = 0; i < 20; i++) {
+            sample(5, 1);
+        }
+        assertEquals(11, current());
+    }
+
+    @Test
+    void decreasesWhenBusyAndSlow() {
+        sample(5, 1);
+        sample(5, 5);
+        assertEquals(5, current());
+    }
+
+    /**
+     * 低负载时的慢样本是接口本身慢，不下调；快样本也不上调
+     */
+    @Test
+    void ignoresSamplesWhenMostlyIdle() {
+        sample(0, 1);
+        for (int i = 0; i < 50; i++) {
+            sample(0, 50);
+            sample(0, 1);
+        }
+        assertEquals(10, current());
+    }
+
+    @Test
+    void neverDropsBelowFloor() {
+        sample(5, 1);
+        for (int i = 0; i < 10; i++) {
+            // 始终保持一半以上的并发
+            sample((current() + 1) / 2 - 1, 10);
+        }
+        assertEquals(4, current());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        assertFalse(limit.tryAcquire());
+        assertEquals(1L, limit.metrics().get("shed"));
+    }
+}
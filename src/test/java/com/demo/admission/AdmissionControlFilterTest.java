@@ -0,0 +1,73 @@
+package com.demo.admission;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+public class AdmissionControlFilterTest {
+    @Autowired
+    private AdmissionControlFilter admissionControlFilter;
+
+    private int inflight(EndpointClass endpointClass) {
+        return (Integer) admissionControlFilter.limit(endpointClass).metrics().get("inflight");
+    }
+
+    private MockHttpServletRequest startAsync(String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setAsyncSupported(true);
+        admissionControlFilter.doFilter(request, new MockHttpServletResponse(), (req, resp) -> req.startAsync());
+        return request;
+    }
+
+    /**
+     * 管理端的异步任务在后台线程上执行期间一直占着名额，异步结束后才归还
+     */
+    @Test
+    void asyncRequestHoldsSlotUntilComplete() throws Exception {
+        int before = inflight(EndpointClass.ADMIN_API);
+
+        MockHttpServletRequest request = startAsync("/admin/getOrderList.do");
+        assertEquals(before + 1, inflight(EndpointClass.ADMIN_API));
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        assertEquals(before, inflight(EndpointClass.ADMIN_API));
+    }
+
+    /**
+     * 超时后容器还会通知完成，名额只归还一次
+     */
+    @Test
+    void timeoutThenCompleteReleasesOnce() throws Exception {
+        int before = inflight(EndpointClass.ADMIN_API);
+
+        MockHttpServletRequest request = startAsync("/admin/getOrderList.do");
+        MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext, request, asyncContext.getResponse()));
+        }
+        asyncContext.complete();
+
+        assertEquals(before, inflight(EndpointClass.ADMIN_API));
+    }
+
+    /**
+     * SSE长连接不占线程，容器接管后立即归还名额
+     */
+    @Test
+    void streamingRequestReleasesSlotImmediately() throws Exception {
+        int before = inflight(EndpointClass.PAGE);
+
+        startAsync("/message/stream");
+
+        assertEquals(before, inflight(EndpointClass.PAGE));
+    }
+}
@@ -0,0 +1,129 @@
+package com.demo.auth;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 登录密码校验压测，mvn test -Pbenchmark 运行
+ * 先测单核每秒能做多少次PBKDF2校验，再模拟撞库：大量客户端持续拿不同账号猜密码，
+ * 输出校验吞吐、被503快速拒绝的比例和延迟的p50/p99，p99应该被校验超时封顶而不是随并发增长
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {"password.verifier.timeout=" + LoginBenchmarkTest.TIMEOUT})
+public class LoginBenchmarkTest {
+    /**
+     * 比默认的1秒宽，在慢机器上一次哈希也能在超时内算完
+     */
+    static final int TIMEOUT = 3000;
+    private static final int WARMUP = 5;
+    private static final int ROUNDS = 20;
+    private static final long BURST_MILLIS = 10000;
+    /**
+     * 被拒绝后客户端再发下一次之前的间隔，相当于一次网络往返
+     */
+    private static final long REJECTED_PAUSE_MILLIS = 10;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private PasswordVerifier passwordVerifier;
+
+    @Test
+    void loginsPerSecondPerCore() throws Exception {
+        String stored = passwordHasher.hash("123456");
+        for (int i = 0; i < WARMUP; i++) {
+            passwordHasher.matches("123456", stored);
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        long wallStart = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            assertTrue(passwordHasher.matches("123456", stored));
+        }
+        long cpu = threads.getCurrentThreadCpuTime() - cpuStart;
+        long wall = System.nanoTime() - wallStart;
+        double hashMillis = cpu / 1e6 / ROUNDS;
+        System.out.printf("pbkdf2 iterations=%d cpu=%.1fms/login wall=%.1fms/login logins/sec/core=%.1f%n",
+                passwordHasher.getIterations(), hashMillis, wall / 1e6 / ROUNDS, 1000 / hashMillis);
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int clients = cores * 8;
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<Result>> futures = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BURST_MILLIS);
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            futures.add(pool.submit(() -> stuff(client, stored, deadline)));
+        }
+        Result total = new Result();
+        for (Future<Result> future : futures) {
+            total.add(future.get());
+        }
+        pool.shutdown();
+
+        long[] all = total.all();
+        long[] verified = total.verified.stream().mapToLong(Long::longValue).sorted().toArray();
+        double seconds = BURST_MILLIS / 1000.0;
+        System.out.printf("burst cores=%d clients=%d attempts=%d verified/sec=%.1f verified/sec/core=%.1f rejected=%.1f%%%n",
+                cores, clients, all.length, verified.length / seconds, verified.length / seconds / cores,
+                total.rejected.size() * 100.0 / all.length);
+        System.out.printf("latency all p50=%.1fms p99=%.1fms max=%.1fms, verified p50=%.1fms p99=%.1fms%n",
+                percentile(all, 0.5), percentile(all, 0.99), all[all.length - 1] / 1e6,
+                percentile(verified, 0.5), percentile(verified, 0.99));
+        System.out.println(passwordVerifier.metrics());
+
+        // 排队最多等到超时，估计排队时间时已经算上了自己这一次
+        assertTrue(percentile(all, 0.99) < TIMEOUT + hashMillis, "p99=" + percentile(all, 0.99) + "ms");
+    }
+
+    private static class Result {
+        private final List<Long> verified = new ArrayList<>();
+        private final List<Long> rejected = new ArrayList<>();
+
+        void add(Result other) {
+            verified.addAll(other.verified);
+            rejected.addAll(other.rejected);
+        }
+
+        long[] all() {
+            List<Long> all = new ArrayList<>(verified);
+            all.addAll(rejected);
+            return all.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, sorted.length * p)] / 1e6;
+    }
+
+    /**
+     * 每次换一个账号，账号限流不起作用，只靠校验线程池的容量兜底
+     */
+    private Result stuff(int client, String stored, long deadline) throws InterruptedException {
+        Result result = new Result();
+        for (int i = 0; System.nanoTime() < deadline; i++) {
+            long start = System.nanoTime();
+            try {
+                passwordVerifier.verify("stuff_" + client + "_" + i, "guess" + i, stored);
+                result.verified.add(System.nanoTime() - start);
+            } catch (LoginRejectedException e) {
+                result.rejected.add(System.nanoTime() - start);
+                Thread.sleep(REJECTED_PAUSE_MILLIS);
+            }
+        }
+        return result;
+    }
+}
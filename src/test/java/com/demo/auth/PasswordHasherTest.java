@@ -0,0 +1,43 @@
+package com.demo.auth;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHasherTest {
+    private final PasswordHasher hasher = new PasswordHasher(1000);
+
+    @Test
+    void hashesWithRandomSalt() {
+        String first = hasher.hash("123456");
+        String second = hasher.hash("123456");
+
+        assertTrue(first.startsWith("pbkdf2$1000$"));
+        assertNotEquals(first, second);
+        assertTrue(hasher.matches("123456", first));
+        assertTrue(hasher.matches("123456", second));
+        assertFalse(hasher.matches("1234567", first));
+        assertFalse(hasher.needsRehash(first));
+    }
+
+    /**
+     * 旧的明文记录照样能登录，但需要重新哈希；调高迭代次数后旧哈希也需要
+     */
+    @Test
+    void legacyRecordsNeedRehash() {
+        assertTrue(hasher.matches("123456", "123456"));
+        assertFalse(hasher.matches("123456", "654321"));
+        assertTrue(hasher.needsRehash("123456"));
+
+        String old = new PasswordHasher(500).hash("123456");
+        assertTrue(hasher.matches("123456", old));
+        assertTrue(hasher.needsRehash(old));
+    }
+
+    @Test
+    void malformedHashNeverMatches() {
+        assertFalse(hasher.matches("123456", "pbkdf2$1000$not-base64!"));
+        assertFalse(hasher.matches("123456", "pbkdf2$x$AAAA$AAAA"));
+        assertFalse(hasher.matches(null, hasher.hash("123456")));
+    }
+}
@@ -0,0 +1,114 @@
+package com.demo.auth;
+
+import com.demo.dao.UserDao;
+import com.demo.entity.User;
+import com.demo.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 登录走哈希校验：明文老数据登录后改成哈希，同一账号连续猜错被限流，但正确密码命中缓存照常登录
+ */
+@SpringBootTest(properties = {"password.iterations=1000", "password.attempts.burst=3", "password.attempts.per-minute=1"})
+public class PasswordVerifierTest {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserDao userDao;
+    @Autowired
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private PasswordVerifier passwordVerifier;
+
+    private User save(String userID, String password) {
+        User user = new User();
+        user.setUserID(userID);
+        user.setUserName(userID);
+        user.setPassword(password);
+        user.setPicture("");
+        return userDao.save(user);
+    }
+
+    /**
+     * 测试库在各个测试类之间共用，删掉这里加的用户
+     */
+    @AfterEach
+    void tearDown() {
+        userDao.findAll().stream()
+                .filter(user -> user.getUserID().startsWith("pw_"))
+                .forEach(userDao::delete);
+    }
+
+    @Test
+    void plaintextPasswordIsRehashedOnLogin() {
+        save("pw_legacy", "123456");
+
+        assertNull(userService.checkLogin("pw_legacy", "wrong"));
+        assertEquals("123456", userDao.findByUserID("pw_legacy").getPassword());
+
+        assertNotNull(userService.checkLogin("pw_legacy", "123456"));
+        String stored = userDao.findByUserID("pw_legacy").getPassword();
+        assertTrue(passwordHasher.isHashed(stored));
+        assertFalse(passwordHasher.needsRehash(stored));
+
+        assertNotNull(userService.checkLogin("pw_legacy", "123456"));
+        assertEquals(stored, userDao.findByUserID("pw_legacy").getPassword());
+    }
+
+    @Test
+    void newPasswordsAreStoredHashed() {
+        User user = new User();
+        user.setUserID("pw_new");
+        user.setUserName("pw_new");
+        user.setPassword("123456");
+        user.setPicture("");
+        userService.create(user);
+
+        String stored = userDao.findByUserID("pw_new").getPassword();
+        assertTrue(passwordHasher.isHashed(stored));
+        assertNotNull(userService.checkLogin("pw_new", "123456"));
+    }
+
+    /**
+     * 用户选的密码长得像哈希也照样哈希，注册和改密码后都能登录
+     */
+    @Test
+    void passwordThatLooksHashedIsStillHashed() {
+        User user = new User();
+        user.setUserID("pw_lookalike");
+        user.setUserName("pw_lookalike");
+        user.setPassword("pbkdf2$1000$abc$def");
+        user.setPicture("");
+        userService.create(user);
+
+        assertNotEquals("pbkdf2$1000$abc$def", userDao.findByUserID("pw_lookalike").getPassword());
+        assertNotNull(userService.checkLogin("pw_lookalike", "pbkdf2$1000$abc$def"));
+
+        User changed = userDao.findByUserID("pw_lookalike");
+        changed.setPassword(userService.hashPassword("pbkdf2$2000$ghi$jkl"));
+        userService.updateUser(changed);
+
+        assertNull(userService.checkLogin("pw_lookalike", "pbkdf2$1000$abc$def"));
+        assertNotNull(userService.checkLogin("pw_lookalike", "pbkdf2$2000$ghi$jkl"));
+    }
+
+    @Test
+    void guessingIsThrottledButOwnerStillLogsIn() {
+        String stored = passwordHasher.hash("123456");
+        assertTrue(passwordVerifier.verify("pw_target", "123456", stored));
+
+        assertFalse(passwordVerifier.verify("pw_target", "guess1", stored));
+        assertFalse(passwordVerifier.verify("pw_target", "guess2", stored));
+        LoginRejectedException e = assertThrows(LoginRejectedException.class,
+                () -> passwordVerifier.verify("pw_target", "guess3", stored));
+        assertEquals(429, e.getStatus());
+
+        long hits = (Long) passwordVerifier.metrics().get("cacheHits");
+        assertTrue(passwordVerifier.verify("pw_target", "123456", stored));
+        assertEquals(hits + 1, passwordVerifier.metrics().get("cacheHits"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.demo.auth;
+
+import com.demo.entity.User;
+import com.demo.service.OrderService;
+import com.demo.service.OrderVoService;
+import com.demo.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 开启令牌认证后，JSON接口只凭Authorization头识别用户，不用会话
+ */
+@SpringBootTest(properties = {"auth.token.enabled=true",
+        "auth.token.secret=MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY="})
+@AutoConfigureMockMvc
+public class TokenAuthFilterTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @MockBean
+    private UserService userService;
+    @MockBean
+    private OrderService orderService;
+    @MockBean
+    private OrderVoService orderVoService;
+
+    private String token() throws Exception {
+        when(userService.checkLogin(eq("token_user"), anyString()))
+                .thenReturn(new User(3, "token_user", "令牌用户", "pw", "e", "p", 0, ""));
+        String body = mockMvc.perform(post("/token.do")
+                        .param("userID", "token_user")
+                        .param("password", "pw"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.expiresIn").value(3600))
+                .andExpect(request().sessionAttributeDoesNotExist("user"))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("token").asText();
+    }
+
+    @Test
+    void tokenAuthenticatesJsonEndpoints() throws Exception {
+        String token = token();
+        when(orderService.findUserOrderSlice(eq("token_user"), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Collections.emptyList()));
+
+        mockMvc.perform(get("/getOrderList.do").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Has-More", "false"));
+
+        verify(orderService).findUserOrderSlice(eq("token_user"), any(Pageable.class));
+        verify(userService, times(1)).checkLogin(anyString(), anyString());
+    }
+
+    @Test
+    void invalidTokenIsRejected() throws Exception {
+        String token = token();
+
+        mockMvc.perform(get("/getOrderList.do").header("Authorization", "Bearer " + token + "x"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().string("WWW-Authenticate", "Bearer error=\"invalid_token\""));
+
+        verify(orderService, never()).findUserOrderSlice(anyString(), any(Pageable.class));
+    }
+
+    @Test
+    void wrongPasswordGetsNoToken() throws Exception {
+        mockMvc.perform(post("/token.do")
+                        .param("userID", "token_user")
+                        .param("password", "wrong"))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,51 @@
+package com.demo.auth;
+
+import com.demo.session.SessionUser;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenServiceTest {
+    private static final byte[] SECRET = new byte[32];
+
+    static {
+        Arrays.fill(SECRET, (byte) 7);
+    }
+
+    private final TokenService tokenService = new TokenService(SECRET, 3600);
+
+    @Test
+    void verifiesIssuedToken() {
+        String token = tokenService.issue(new SessionUser(7, "用户_1", "张三", "file/user/a.png", false), 1000);
+
+        assertTrue(token.length() < 80, token);
+        assertEquals(new SessionUser(7, "用户_1", null, null, false), tokenService.verify(token, 1000));
+        assertEquals(new SessionUser(7, "用户_1", null, null, false), tokenService.verify(token, 4599));
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        String token = tokenService.issue(new SessionUser(7, "u1", null, null, false), 1000);
+
+        assertNull(tokenService.verify(token, 4600));
+    }
+
+    /**
+     * 改了内容、用别的密钥签名或者格式不对都不通过
+     */
+    @Test
+    void rejectsForgedTokens() {
+        String token = tokenService.issue(new SessionUser(7, "u1", null, null, false), 1000);
+        String forged = tokenService.issue(new SessionUser(8, "u2", null, null, false), 1000);
+        byte[] otherSecret = SECRET.clone();
+        otherSecret[0] = 8;
+
+        assertNull(tokenService.verify(forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.')), 1000));
+        assertNull(new TokenService(otherSecret, 3600).verify(token, 1000));
+        assertNull(tokenService.verify("no-dot", 1000));
+        assertNull(tokenService.verify("." + token.substring(token.indexOf('.') + 1), 1000));
+        assertNull(tokenService.verify("!!.??", 1000));
+    }
+}
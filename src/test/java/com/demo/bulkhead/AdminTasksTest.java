@@ -0,0 +1,30 @@
+package com.demo.bulkhead;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdminTasksTest {
+
+    private static AdminTasks adminTasks(int threads, int adminPoolSize) {
+        AdminTasks adminTasks = new AdminTasks();
+        ReflectionTestUtils.setField(adminTasks, "threads", threads);
+        ReflectionTestUtils.setField(adminTasks, "adminPoolSize", adminPoolSize);
+        ReflectionTestUtils.setField(adminTasks, "queueCapacity", 1);
+        return adminTasks;
+    }
+
+    /**
+     * 线程数不小于管理端连接数时启动失败，而不是运行时让同步的管理端请求等连接超时
+     */
+    @Test
+    void rejectsThreadsNotBelowAdminPool() {
+        assertThrows(IllegalStateException.class, () -> adminTasks(6, 6).start());
+        assertThrows(IllegalStateException.class, () -> adminTasks(8, 6).start());
+
+        AdminTasks adminTasks = adminTasks(3, 6);
+        adminTasks.start();
+        adminTasks.stop();
+    }
+}
@@ -0,0 +1,33 @@
+package com.demo.bulkhead;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RoutingDataSourceTest {
+
+    /**
+     * 容器关闭时两个连接池都要关闭，否则devtools每次重启都会多留下一组连接
+     */
+    @Test
+    void destroyClosesEveryPool() throws Exception {
+        HikariDataSource user = new HikariDataSource();
+        HikariDataSource admin = new HikariDataSource();
+        Map<Object, Object> pools = new HashMap<>();
+        pools.put(Bulkhead.USER, user);
+        pools.put(Bulkhead.ADMIN, admin);
+        RoutingDataSource dataSource = new RoutingDataSource();
+        dataSource.setTargetDataSources(pools);
+        dataSource.setDefaultTargetDataSource(user);
+        dataSource.afterPropertiesSet();
+
+        dataSource.destroy();
+
+        assertTrue(user.isClosed());
+        assertTrue(admin.isClosed());
+    }
+}
@@ -0,0 +1,86 @@
+package com.demo.cache;
+
+import com.demo.dao.EntityVersionDao;
+import com.demo.entity.vo.MessageVo;
+import com.demo.service.MessageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"entity-versions.refresh=200"})
+public class ApprovedMessageFeedTest {
+    @Autowired
+    private ApprovedMessageFeed approvedMessageFeed;
+    @Autowired
+    private EntityVersionDao entityVersionDao;
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<ApprovedMessageFeed.Snapshot> loader = () -> {
+        loads.incrementAndGet();
+        return new ApprovedMessageFeed.Snapshot(Collections.singletonList(vo(1, 0)), 1);
+    };
+
+    private static MessageVo vo(int messageID, int minutes) {
+        return new MessageVo(messageID, "user", "content", LocalDateTime.of(2020, 1, 1, 0, minutes),
+                "user", "", MessageService.STATE_PASS);
+    }
+
+    @BeforeEach
+    void setUp() {
+        // 保证版本号这一行存在，下面直接改表模拟别的实例
+        approvedMessageFeed.bump();
+        approvedMessageFeed.invalidate();
+        approvedMessageFeed.get(loader);
+        loads.set(0);
+    }
+
+    /**
+     * 本实例的写入增量更新快照，不用回源
+     */
+    @Test
+    void localChangesUpdateSnapshotInPlace() {
+        approvedMessageFeed.add(vo(2, 1), approvedMessageFeed.bump());
+
+        ApprovedMessageFeed.Snapshot snapshot = approvedMessageFeed.get(loader);
+        assertEquals(0, loads.get());
+        assertEquals(2, snapshot.getTotal());
+        assertEquals(2, snapshot.slice(0, 10).get(0).getMessageID());
+    }
+
+    /**
+     * 别的实例写入（直接改版本号）后，最多refresh时间内重新回源
+     */
+    @Test
+    void changesFromOtherInstancesReloadSnapshot() throws Exception {
+        entityVersionDao.increment(EntityVersions.MESSAGE);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (loads.get() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "snapshot not reloaded");
+            Thread.sleep(20);
+            approvedMessageFeed.get(loader);
+        }
+        approvedMessageFeed.get(loader);
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * 增量更新和快照之间隔着别的实例的写入时，快照作废而不是在旧数据上叠加
+     */
+    @Test
+    void localChangeAfterRemoteWriteInvalidates() {
+        entityVersionDao.increment(EntityVersions.MESSAGE);
+        approvedMessageFeed.add(vo(2, 1), approvedMessageFeed.bump());
+
+        approvedMessageFeed.get(loader);
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,51 @@
+package com.demo.cache;
+
+import com.demo.dao.EntityVersionDao;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"entity-versions.refresh=200"})
+public class EntityVersionsTest {
+    private static final String TYPE = "entity-versions-test";
+
+    @Autowired
+    private EntityVersions entityVersions;
+    @Autowired
+    private EntityVersionDao entityVersionDao;
+
+    /**
+     * 本实例写入后版本号立刻变化，ETag跟着变
+     */
+    @Test
+    void bumpIsVisibleImmediately() {
+        long before = entityVersions.current(TYPE);
+        String etag = entityVersions.etag(TYPE, 1, 10);
+
+        entityVersions.bump(TYPE);
+
+        assertEquals(before + 1, entityVersions.current(TYPE));
+        assertNotEquals(etag, entityVersions.etag(TYPE, 1, 10));
+        assertEquals(before + 1, entityVersionDao.findById(TYPE).get().getVersion());
+    }
+
+    /**
+     * 别的实例写入（直接改表）后，本实例最多在refresh时间内还用旧版本号
+     */
+    @Test
+    void writesFromOtherInstancesAreSeenAfterRefresh() throws Exception {
+        entityVersions.bump(TYPE);
+        long before = entityVersions.current(TYPE);
+
+        entityVersionDao.increment(TYPE);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (entityVersions.current(TYPE) == before) {
+            assertTrue(System.currentTimeMillis() < deadline, "version not refreshed");
+            Thread.sleep(20);
+        }
+        assertEquals(before + 1, entityVersions.current(TYPE));
+    }
+}
@@ -0,0 +1,118 @@
+package com.demo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NameFilterTest {
+
+    @Test
+    void answersMaybeUntilBuilt() {
+        NameFilter filter = new NameFilter(10, 0.01);
+
+        assertFalse(filter.isReady());
+        assertTrue(filter.mightContain("anything"));
+
+        filter.rebuild(2, names -> Arrays.asList("alice", "bob").forEach(names));
+
+        assertTrue(filter.mightContain("alice"));
+        assertFalse(filter.mightContain("carol"));
+        assertEquals("ExactSet", filter.metrics().get("type"));
+    }
+
+    /**
+     * MySQL默认排序规则下count能查到的写法都要回答可能有
+     */
+    @Test
+    void matchesCaseInsensitiveCollation() {
+        NameFilter filter = new NameFilter(10, 0.01);
+        filter.rebuild(1, names -> names.accept("Café"));
+
+        assertTrue(filter.mightContain("cafe"));
+        assertTrue(filter.mightContain("CAFÉ "));
+        assertFalse(filter.mightContain("caffe"));
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndFewFalsePositives() {
+        NameFilter filter = new NameFilter(100, 0.01);
+        filter.rebuild(20000, names -> {
+            for (int i = 0; i < 20000; i++) {
+                names.accept("user" + i);
+            }
+        });
+        assertEquals("BloomFilter", filter.metrics().get("type"));
+
+        for (int i = 0; i < 20000; i++) {
+            assertTrue(filter.mightContain("user" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        // 按2倍容量分配，实际误判率远低于1%
+        assertTrue(falsePositives < 200, falsePositives + " false positives");
+    }
+
+    /**
+     * 重建扫描期间新增的名字不能丢
+     */
+    @Test
+    void keepsNamesAddedDuringRebuild() {
+        NameFilter filter = new NameFilter(10, 0.01);
+        filter.rebuild(0, names -> {
+        });
+
+        filter.rebuild(1, names -> {
+            names.accept("scanned");
+            filter.add("added-while-scanning");
+        });
+
+        assertTrue(filter.mightContain("scanned"));
+        assertTrue(filter.mightContain("added-while-scanning"));
+    }
+
+    /**
+     * 本实例的增删计入行数，只有别的实例改过数据库时行数才对不上
+     */
+    @Test
+    void tracksRowCountToDetectOtherInstances() {
+        NameFilter filter = new NameFilter(10, 0.01);
+        assertEquals(Long.MAX_VALUE, filter.age());
+        filter.rebuild(2, names -> Arrays.asList("alice", "bob").forEach(names));
+        assertFalse(filter.diverged(2));
+        assertTrue(filter.age() < 1000);
+
+        filter.add("carol");
+        filter.rename("carol2");
+        assertFalse(filter.diverged(3));
+        filter.remove();
+        assertFalse(filter.diverged(2));
+
+        // 别的实例注册了一个
+        assertTrue(filter.diverged(3));
+    }
+
+    @Test
+    void renamesAndDeletesTriggerRebuild() {
+        NameFilter filter = new NameFilter(10, 0.01);
+        filter.rebuild(0, names -> {
+        });
+        assertFalse(filter.needsRebuild());
+
+        filter.rename("same");
+        filter.rename("same");
+        for (int i = 0; i < 100; i++) {
+            filter.remove();
+        }
+        assertTrue(filter.needsRebuild());
+
+        filter.rebuild(1, names -> Collections.singletonList("same").forEach(names));
+        assertFalse(filter.needsRebuild());
+    }
+}
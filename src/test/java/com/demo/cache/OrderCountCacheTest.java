@@ -0,0 +1,41 @@
+package com.demo.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OrderCountCacheTest {
+
+    @Test
+    void localChangesAdjustCachedCount() {
+        OrderCountCache cache = new OrderCountCache(10, 60000);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(3, cache.get("user", () -> loads.incrementAndGet() + 2));
+        cache.increment("user");
+        cache.increment("user");
+        cache.decrement("user");
+
+        assertEquals(4, cache.get("user", () -> loads.incrementAndGet() + 2));
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * 别的实例增删的订单这里看不到，过期后重新回源才和数据库一致
+     */
+    @Test
+    void expiredCountIsReloaded() throws Exception {
+        OrderCountCache cache = new OrderCountCache(10, 50);
+        AtomicInteger database = new AtomicInteger(3);
+
+        assertEquals(3, cache.get("user", database::get));
+        database.set(5);
+        cache.increment("user");
+        assertEquals(4, cache.get("user", database::get));
+
+        Thread.sleep(60);
+        assertEquals(5, cache.get("user", database::get));
+    }
+}
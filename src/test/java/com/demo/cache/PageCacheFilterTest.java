@@ -0,0 +1,167 @@
+package com.demo.cache;
+
+import com.demo.dao.NewsDao;
+import com.demo.entity.News;
+import com.demo.entity.User;
+import com.demo.service.NewsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = "page-cache.enabled=true")
+@AutoConfigureMockMvc
+public class PageCacheFilterTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private NewsService newsService;
+    @MockBean
+    private NewsDao newsDao;
+
+    private List<News> mockNewsList(int size) {
+        List<News> newsList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            newsList.add(new News(i + 1, "title " + i, "content " + i, LocalDateTime.now()));
+        }
+        return newsList;
+    }
+
+    /**
+     * 匿名访客第二次访问直接命中缓存，不再查询数据库
+     */
+    @Test
+    void anonymousPageServedFromCache() throws Exception {
+        when(newsDao.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(mockNewsList(3)));
+
+        MvcResult first = mockMvc.perform(get("/news_list?case=hit"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Page-Cache", "MISS"))
+                .andReturn();
+        MvcResult second = mockMvc.perform(get("/news_list?case=hit"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Page-Cache", "HIT"))
+                .andReturn();
+
+        assertArrayEquals(first.getResponse().getContentAsByteArray(), second.getResponse().getContentAsByteArray());
+        // 一次渲染查两次：列表和总页数
+        verify(newsDao, times(2)).findAll(any(Pageable.class));
+    }
+
+    /**
+     * 客户端支持gzip时返回预先压缩好的字节
+     */
+    @Test
+    void gzipServedWhenAccepted() throws Exception {
+        when(newsDao.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(mockNewsList(3)));
+
+        byte[] plain = mockMvc.perform(get("/news_list?case=gzip"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] gzipped = mockMvc.perform(get("/news_list?case=gzip")
+                        .header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertArrayEquals(plain, gunzip(gzipped));
+    }
+
+    /**
+     * 已登录用户的页面带用户信息，不走缓存
+     */
+    @Test
+    void loggedInUserBypassesCache() throws Exception {
+        when(newsDao.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(mockNewsList(3)));
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", new User(1, "test", "test", "password", "email", "phone", 0, "picture"));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/news_list?case=user").session(session))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("X-Page-Cache", nullValue()));
+        }
+        verify(newsDao, times(4)).findAll(any(Pageable.class));
+    }
+
+    /**
+     * 管理员修改新闻后，展示新闻的页面重新渲染
+     */
+    @Test
+    void newsWriteInvalidatesPages() throws Exception {
+        when(newsDao.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(mockNewsList(3)));
+        mockMvc.perform(get("/news_list?case=invalidate"))
+                .andExpect(header().string("X-Page-Cache", "MISS"));
+        mockMvc.perform(get("/news_list?case=invalidate"))
+                .andExpect(header().string("X-Page-Cache", "HIT"));
+
+        newsService.update(new News(1, "title", "changed", LocalDateTime.now()));
+
+        mockMvc.perform(get("/news_list?case=invalidate"))
+                .andExpect(header().string("X-Page-Cache", "MISS"));
+    }
+
+    /**
+     * 同一页面同时未命中时只渲染一次
+     */
+    @Test
+    void concurrentMissesRenderOnce() throws Exception {
+        when(newsDao.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return new PageImpl<>(mockNewsList(3));
+        });
+
+        int clients = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                results.add(pool.submit(() -> mockMvc.perform(get("/news_list?case=flight"))
+                        .andReturn().getResponse().getStatus()));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(200, result.get().intValue());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        verify(newsDao, times(2)).findAll(any(Pageable.class));
+    }
+
+    private byte[] gunzip(byte[] bytes) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
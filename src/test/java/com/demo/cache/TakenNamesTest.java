@@ -0,0 +1,77 @@
+package com.demo.cache;
+
+import com.demo.dao.UserDao;
+import com.demo.entity.User;
+import com.demo.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 从数据库建好过滤器后，没人用过的userID不查库，新注册的userID马上能查到
+ */
+@SpringBootTest(properties = {"taken-names.check-interval=3600000", "taken-names.batch-size=2"})
+public class TakenNamesTest {
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private TakenNames takenNames;
+    @Autowired
+    private UserDao userDao;
+
+    private static User user(String userID) {
+        User user = new User();
+        user.setUserID(userID);
+        user.setUserName(userID);
+        user.setPassword("pw");
+        user.setPicture("");
+        return user;
+    }
+
+    /**
+     * 测试库在各个测试类之间共用，删掉这里加的用户
+     */
+    @AfterEach
+    void tearDown() {
+        userDao.findAll().stream()
+                .filter(user -> user.getUserID().startsWith("taken_") || "free_name".equals(user.getUserID()))
+                .forEach(userDao::delete);
+    }
+
+    @Test
+    void availabilityChecksSkipDatabaseForUnusedNames() {
+        for (int i = 0; i < 5; i++) {
+            userService.create(user("taken_" + i));
+        }
+        takenNames.rebuildUserIDs();
+        Map<String, Object> before = takenNames.userIDs().metrics();
+
+        assertEquals(1, userService.countUserID("taken_3"));
+        assertEquals(0, userService.countUserID("free_name"));
+        userService.create(user("free_name"));
+        assertEquals(1, userService.countUserID("free_name"));
+
+        Map<String, Object> after = takenNames.userIDs().metrics();
+        assertEquals((Long) before.get("absent") + 1, after.get("absent"));
+        assertEquals((Long) before.get("maybe") + 2, after.get("maybe"));
+    }
+
+    /**
+     * 别的实例注册的用户（直接写库，不经过这里的UserService）在下次检查时重建后能查到
+     */
+    @Test
+    void rebuildsWhenAnotherInstanceAddedUsers() {
+        takenNames.rebuildUserIDs();
+        assertEquals(0, userService.countUserID("taken_elsewhere"));
+
+        userDao.save(user("taken_elsewhere"));
+        takenNames.refresh();
+
+        assertEquals(1, userService.countUserID("taken_elsewhere"));
+    }
+}
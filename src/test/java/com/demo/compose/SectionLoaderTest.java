@@ -0,0 +1,72 @@
+package com.demo.compose;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用户端连接池为4时区块线程最多2个，队列容量1，方便构造线程和队列都满的情况
+ */
+@SpringBootTest(properties = {"bulkhead.user.pool-size=4", "compose.threads=8",
+        "compose.queue-capacity=1", "compose.timeout=5000"})
+public class SectionLoaderTest {
+    @Autowired
+    private SectionLoader sectionLoader;
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 并发加载的区块数不超过用户端连接池的一半，排不上队的区块直接用默认值，不在请求线程里加载
+     */
+    @Test
+    void concurrencyIsCappedBelowUserPool() throws Exception {
+        assertEquals(2, sectionLoader.metrics().get("threads"));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+        AtomicInteger onCaller = new AtomicInteger();
+        Supplier<String> blocking = () -> {
+            if (Thread.currentThread() == caller) {
+                onCaller.incrementAndGet();
+            }
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return "loaded";
+        };
+
+        CompletableFuture<String> first = sectionLoader.load("test.first", blocking, "fallback");
+        CompletableFuture<String> second = sectionLoader.load("test.second", blocking, "fallback");
+        await(() -> running.get() == 2);
+        CompletableFuture<String> queued = sectionLoader.load("test.queued", blocking, "fallback");
+        CompletableFuture<String> rejected = sectionLoader.load("test.rejected", blocking, "fallback");
+
+        assertEquals("fallback", rejected.getNow(null));
+        release.countDown();
+        assertEquals("loaded", first.get(5, TimeUnit.SECONDS));
+        assertEquals("loaded", second.get(5, TimeUnit.SECONDS));
+        assertEquals("loaded", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, onCaller.get());
+    }
+}
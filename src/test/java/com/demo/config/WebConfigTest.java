@@ -0,0 +1,79 @@
+package com.demo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class WebConfigTest {
+    private static final Pattern VERSIONED_CSS = Pattern.compile("/css/bootstrap-[0-9a-f]{32}\\.css");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private String versionedBootstrapCss() throws Exception {
+        String html = mockMvc.perform(get("/login"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Matcher matcher = VERSIONED_CSS.matcher(html);
+        assertTrue(matcher.find(), "模板里的静态资源链接应带内容版本号");
+        return matcher.group();
+    }
+
+    /**
+     * 带版本号的url缓存一年
+     */
+    @Test
+    void versionedAssetsAreCachedForAYear() throws Exception {
+        mockMvc.perform(get(versionedBootstrapCss()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/css"))
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public"));
+    }
+
+    /**
+     * 有构建时生成的.gz时，浏览器接受gzip就直接返回它
+     */
+    @Test
+    void servesPrecompressedVariant() throws Exception {
+        String url = versionedBootstrapCss();
+        File css = new ClassPathResource("static/css/bootstrap.css").getFile();
+        File gz = new File(css.getPath() + ".gz");
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(Files.readAllBytes(css.toPath()));
+        }
+        Files.write(gz.toPath(), compressed.toByteArray());
+        try {
+            MvcResult result = mockMvc.perform(get(url).header("Accept-Encoding", "gzip, deflate"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Content-Encoding", "gzip"))
+                    .andExpect(header().string("Vary", "Accept-Encoding"))
+                    .andReturn();
+            assertArrayEquals(compressed.toByteArray(), result.getResponse().getContentAsByteArray());
+
+            mockMvc.perform(get(url))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist("Content-Encoding"));
+        } finally {
+            Files.delete(gz.toPath());
+        }
+    }
+}
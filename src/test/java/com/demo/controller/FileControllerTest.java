@@ -0,0 +1,70 @@
+package com.demo.controller;
+
+import com.demo.admission.AdmissionControlFilter;
+import com.demo.admission.EndpointClass;
+import com.demo.storage.FileStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.NoSuchFileException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * FileStore换成不在本机的实现（mock），文件只能通过open()读取
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class FileControllerTest {
+    private static final String HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private AdmissionControlFilter admissionControlFilter;
+    @MockBean
+    private FileStore fileStore;
+
+    @Test
+    void servesFilesFromNonLocalStore() throws Exception {
+        String url = "file/venue/01/" + HASH + ".png";
+        when(fileStore.open(url)).thenReturn(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        mockMvc.perform(get("/" + url))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string("Cache-Control", "public, max-age=31536000, immutable"))
+                .andExpect(content().bytes(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void missingFileIsNotFound() throws Exception {
+        when(fileStore.open(anyString())).thenThrow(new NoSuchFileException("missing"));
+
+        mockMvc.perform(get("/file/venue/01/missing.png"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * 文件下载不占PAGE的并发名额，也不参与延迟基线
+     */
+    @Test
+    void fileRequestsBypassAdmissionControl() throws Exception {
+        when(fileStore.open(anyString())).thenReturn(new ByteArrayInputStream(new byte[]{1}));
+        Object admitted = admissionControlFilter.limit(EndpointClass.PAGE).metrics().get("admitted");
+
+        mockMvc.perform(get("/file/venue/01/" + HASH + ".png"))
+                .andExpect(status().isOk());
+
+        assertEquals(admitted, admissionControlFilter.limit(EndpointClass.PAGE).metrics().get("admitted"));
+    }
+}
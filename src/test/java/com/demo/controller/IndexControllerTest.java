@@ -22,12 +22,15 @@ import org.springframework.web.servlet.ModelAndView;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -93,8 +96,7 @@ public class IndexControllerTest {
     void indexTestWhenNoData() throws Exception {
         when(newsService.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(new ArrayList<>()) );
         when(venueService.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(new ArrayList<>()) );
-        when(messageService.findPassState(any(Pageable.class))).thenReturn(new PageImpl<>(new ArrayList<>()) );
-        when(messageVoService.returnVo(any(List.class))).thenReturn(new ArrayList<>());
+        when(messageVoService.findPassStateVo(any(Pageable.class))).thenReturn(new PageImpl<>(new ArrayList<>()) );
 
         mockMvc.perform(get("/index"))
                 .andExpect(status().isOk())
@@ -103,12 +105,14 @@ public class IndexControllerTest {
                 .andExpect(model().attribute("news_list", hasSize(0)))
                 .andExpect(model().attribute("venue_list", hasSize(0)))
                 .andExpect(model().attribute("message_list", hasSize(0)))
+                .andExpect(content().string(containsString("navbar-brand")))
+                .andExpect(content().string(containsString("Copyright")))
                 .andReturn();
         // 语句覆盖
         verify(newsService, times(1)).findAll(any(Pageable.class));
         verify(venueService, times(1)).findAll(any(Pageable.class));
-        verify(messageService, times(1)).findPassState(any(Pageable.class));
-        verify(messageVoService, times(1)).returnVo(any(List.class));
+        verify(messageVoService, times(1)).findPassStateVo(any(Pageable.class));
+        verify(messageService, never()).findPassState(any(Pageable.class));
     }
 
     /**
@@ -127,10 +131,8 @@ public class IndexControllerTest {
                 .thenReturn(new PageImpl<>(mockNewsList) );
         when(venueService.findAll(any(Pageable.class)))
                 .thenReturn(new PageImpl<>(mockVenueList) );
-        when(messageService.findPassState(any(Pageable.class)))
-                .thenReturn(new PageImpl<>(mockMessageList) );
-        when(messageVoService.returnVo(any(List.class)))
-                .thenReturn(mockMessageVoList);
+        when(messageVoService.findPassStateVo(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(mockMessageVoList) );
 
         MvcResult mvcResult = mockMvc.perform(get("/index"))
                 .andExpect(status().isOk())
@@ -156,8 +158,65 @@ public class IndexControllerTest {
         // 语句覆盖
         verify(newsService, times(1)).findAll(any(Pageable.class));
         verify(venueService, times(1)).findAll(any(Pageable.class));
-        verify(messageService, times(1)).findPassState(any(Pageable.class));
-        verify(messageVoService, times(1)).returnVo(any(List.class));
+        verify(messageVoService, times(1)).findPassStateVo(any(Pageable.class));
+        verify(messageService, never()).findPassState(any(Pageable.class));
+    }
+
+    /**
+     * 三个区块在页面区块线程池中并行加载，不占用请求线程
+     * @see IndexController#index(Model)
+     */
+    @Test
+    void indexTestLoadsSectionsConcurrently() throws Exception {
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        when(newsService.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return new PageImpl<>(new ArrayList<>());
+        });
+        when(venueService.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return new PageImpl<>(new ArrayList<>());
+        });
+        when(messageVoService.findPassStateVo(any(Pageable.class))).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return new PageImpl<>(new ArrayList<>());
+        });
+
+        mockMvc.perform(get("/index"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("index"));
+
+        assertEquals(3, threads.size());
+        for (String thread : threads) {
+            assertTrue(thread.startsWith("page-section-"));
+        }
+    }
+
+    /**
+     * 某个区块超时后使用该区块上一次成功的结果，其余区块照常返回最新数据
+     * @see IndexController#index(Model)
+     */
+    @Test
+    void indexTestWhenSectionTimesOut() throws Exception {
+        when(newsService.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(mockNewsList(3)));
+        when(venueService.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(mockVenueList(3)));
+        when(messageVoService.findPassStateVo(any(Pageable.class))).thenReturn(new PageImpl<>(mockMessageVoList(3)));
+        mockMvc.perform(get("/index"))
+                .andExpect(status().isOk());
+
+        when(newsService.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(mockNewsList(1)));
+        when(venueService.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return new PageImpl<>(mockVenueList(1));
+        });
+
+        long start = System.currentTimeMillis();
+        mockMvc.perform(get("/index"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("news_list", hasSize(1)))
+                .andExpect(model().attribute("venue_list", hasSize(3)))
+                .andExpect(model().attribute("message_list", hasSize(3)));
+        assertTrue(System.currentTimeMillis() - start < 2000);
     }
 
     /**
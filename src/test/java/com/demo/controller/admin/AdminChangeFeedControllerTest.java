@@ -0,0 +1,88 @@
+package com.demo.controller.admin;
+
+import com.demo.entity.OutboxEvent;
+import com.demo.service.OutboxService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AdminChangeFeedControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @MockBean
+    private OutboxService outboxService;
+
+    private List<OutboxEvent> getMockEventList(long from, int size) {
+        List<OutboxEvent> events = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            events.add(new OutboxEvent(from + i, "order", i, "order.confirmed", "{}", LocalDateTime.now(), false));
+        }
+        return events;
+    }
+
+    /**
+     * 当游标之后有事件时，测试changeFeed方法
+     * @see AdminChangeFeedController#changeFeed
+     */
+    @Test
+    void changeFeedTestWhenHasEvents() throws Exception {
+        when(outboxService.findAfter(eq(10L), eq(100)))
+                .thenReturn(getMockEventList(11, 3));
+
+        mockMvc.perform(get("/admin/changeFeed.do")
+                        .param("after", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events", hasSize(3)))
+                .andExpect(jsonPath("$.cursor", equalTo(13)));
+
+        verify(outboxService, times(1)).findAfter(eq(10L), eq(100));
+    }
+
+    /**
+     * 当游标之后没有事件时，cursor保持不变
+     * @see AdminChangeFeedController#changeFeed
+     */
+    @Test
+    void changeFeedTestWhenNoEvents() throws Exception {
+        when(outboxService.findAfter(eq(13L), eq(100)))
+                .thenReturn(new ArrayList<>());
+
+        mockMvc.perform(get("/admin/changeFeed.do")
+                        .param("after", "13"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events", hasSize(0)))
+                .andExpect(jsonPath("$.cursor", equalTo(13)));
+    }
+
+    /**
+     * 当limit超过上限时，按上限查询
+     * @see AdminChangeFeedController#changeFeed
+     */
+    @Test
+    void changeFeedTestWhenLimitTooLarge() throws Exception {
+        when(outboxService.findAfter(eq(0L), eq(500)))
+                .thenReturn(new ArrayList<>());
+
+        mockMvc.perform(get("/admin/changeFeed.do")
+                        .param("limit", "100000"))
+                .andExpect(status().isOk());
+
+        verify(outboxService, times(1)).findAfter(eq(0L), eq(500));
+    }
+}
@@ -0,0 +1,156 @@
+package com.demo.controller.admin;
+
+import com.demo.dao.KeywordDao;
+import com.demo.entity.Keyword;
+import com.demo.moderation.KeywordFilter;
+import com.demo.service.KeywordService;
+import com.demo.service.MessageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AdminKeywordControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private KeywordFilter keywordFilter;
+    @MockBean
+    private KeywordService keywordService;
+    @MockBean
+    private KeywordDao keywordDao;
+
+    private List<Keyword> getMockKeywordList(int size) {
+        List<Keyword> keywords = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            keywords.add(new Keyword(i + 1, "word" + i, KeywordService.TYPE_HARD));
+        }
+        return keywords;
+    }
+
+    /**
+     * 测试关键词管理页面的总页数
+     * @see AdminKeywordController#keyword_manage
+     */
+    @Test
+    void keywordManageTest() throws Exception {
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("keywordID").descending());
+        when(keywordService.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(getMockKeywordList(10), pageable, 25));
+
+        mockMvc.perform(get("/keyword_manage"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("admin/keyword_manage"))
+                .andExpect(model().attribute("total", 3));
+    }
+
+    /**
+     * 测试分页获取关键词
+     * @see AdminKeywordController#keywordList
+     */
+    @Test
+    void keywordListTest() throws Exception {
+        when(keywordService.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(getMockKeywordList(3)));
+
+        mockMvc.perform(get("/keywordList.do").param("page", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)));
+    }
+
+    /**
+     * 添加新关键词，返回true
+     * @see AdminKeywordController#addKeyword
+     */
+    @Test
+    void addKeywordTestWhenNew() throws Exception {
+        when(keywordService.countWord("spam")).thenReturn(0);
+
+        mockMvc.perform(post("/addKeyword.do")
+                        .param("word", " spam ")
+                        .param("type", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+
+        verify(keywordService).create(new Keyword(0, "spam", KeywordService.TYPE_HARD));
+    }
+
+    /**
+     * 添加已存在的关键词，返回false且不保存
+     * @see AdminKeywordController#addKeyword
+     */
+    @Test
+    void addKeywordTestWhenExists() throws Exception {
+        when(keywordService.countWord("spam")).thenReturn(1);
+
+        mockMvc.perform(post("/addKeyword.do")
+                        .param("word", "spam")
+                        .param("type", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("false"));
+
+        verify(keywordService, never()).create(any(Keyword.class));
+    }
+
+    /**
+     * 删除关键词
+     * @see AdminKeywordController#delKeyword
+     */
+    @Test
+    void delKeywordTest() throws Exception {
+        mockMvc.perform(post("/delKeyword.do").param("keywordID", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+
+        verify(keywordService).delById(1);
+    }
+
+    /**
+     * 用关键词试审留言：无命中通过，命中HARD驳回，只命中SOFT转人工，被白名单覆盖的命中不算
+     * @see AdminKeywordController#checkKeyword
+     */
+    @Test
+    void checkKeywordTest() throws Exception {
+        when(keywordDao.findAll()).thenReturn(Arrays.asList(
+                new Keyword(1, "badword", KeywordService.TYPE_HARD),
+                new Keyword(2, "广告", KeywordService.TYPE_SOFT),
+                new Keyword(3, "not badword", KeywordService.TYPE_ALLOW)));
+        keywordFilter.rebuild();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(3).equals(keywordFilter.metrics().get("keywords")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        checkState("场馆很干净，服务很好", MessageService.STATE_PASS);
+        checkState("this is a BADWORD", MessageService.STATE_REJECT);
+        checkState("ＢａｄＷｏｒｄ", MessageService.STATE_REJECT);
+        checkState("欢迎来看广告", MessageService.STATE_NO_AUDIT);
+        checkState("it is not badword at all", MessageService.STATE_PASS);
+        checkState("not badword, but badword", MessageService.STATE_REJECT);
+    }
+
+    private void checkState(String content, int state) throws Exception {
+        mockMvc.perform(post("/checkKeyword.do").param("content", content))
+                .andExpect(status().isOk())
+                .andExpect(content().string(String.valueOf(state)));
+    }
+}
@@ -0,0 +1,29 @@
+package com.demo.controller.admin;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AdminMetricsControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * 测试metrics方法，应包含通知队列的指标
+     * @see AdminMetricsController#metrics
+     */
+    @Test
+    void metricsTest() throws Exception {
+        mockMvc.perform(get("/admin/metrics.do"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notification.queueDepth").exists())
+                .andExpect(jsonPath("$.notification.drainRatePerSecond").exists());
+    }
+}
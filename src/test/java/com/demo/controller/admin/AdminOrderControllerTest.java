@@ -1,10 +1,13 @@
 package com.demo.controller.admin;
 
 
+import com.demo.bulkhead.Bulkhead;
 import com.demo.entity.Order;
+import com.demo.entity.Venue;
 import com.demo.entity.vo.OrderVo;
 import com.demo.service.OrderService;
 import com.demo.service.OrderVoService;
+import com.demo.service.VenueService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -14,14 +17,22 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -36,6 +47,8 @@ public class AdminOrderControllerTest {
     private OrderService orderService;
     @MockBean
     private OrderVoService orderVoService;
+    @MockBean
+    private VenueService venueService;
 
     private List<Order> getMockOrderList(int size){
         List<Order> orderList = new ArrayList<>();
@@ -82,7 +95,10 @@ public class AdminOrderControllerTest {
         when(orderService.findNoAuditOrder(any(Pageable.class)))
                 .thenReturn(mockOrderPage);
 
-        mockMvc.perform(get("/reservation_manage"))
+        MvcResult mvcResult = mockMvc.perform(get("/reservation_manage"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(view().name("admin/reservation_manage"))
                 .andExpect(model().attribute("order_list", mockOrderVoList))
@@ -110,7 +126,10 @@ public class AdminOrderControllerTest {
         when(orderService.findNoAuditOrder(any(Pageable.class)))
                 .thenReturn(mockOrderPage);
 
-        mockMvc.perform(get("/reservation_manage"))
+        MvcResult mvcResult = mockMvc.perform(get("/reservation_manage"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(view().name("admin/reservation_manage"))
                 .andExpect(model().attribute("order_list", mockOrderVoList))
@@ -121,6 +140,31 @@ public class AdminOrderControllerTest {
         verify(orderService,times(1)).findNoAuditOrder(any(Pageable.class));
     }
 
+    /**
+     * reservation_manage在管理端线程池中执行，数据库访问走管理端连接池
+     * @see AdminOrderController#reservation_manage
+     */
+    @Test
+    void reservation_manageTestRunsInAdminBulkhead() throws Exception {
+        List<String> seen = new ArrayList<>();
+        when(orderService.findAuditOrder()).thenAnswer(invocation -> {
+            seen.add(Thread.currentThread().getName());
+            seen.add(Bulkhead.current().name());
+            return new ArrayList<>();
+        });
+        when(orderVoService.returnVo(any(List.class))).thenReturn(new ArrayList<>());
+        when(orderService.findNoAuditOrder(any(Pageable.class))).thenReturn(new PageImpl<>(new ArrayList<>()));
+
+        MvcResult mvcResult = mockMvc.perform(get("/reservation_manage"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk());
+
+        assertTrue(seen.get(0).startsWith("admin-task-"));
+        assertEquals(Bulkhead.ADMIN.name(), seen.get(1));
+    }
+
     /**
      * 当未审查order数据存在并且参数Page正确时，
      * 测试getNoAuditOrder方法
@@ -132,17 +176,21 @@ public class AdminOrderControllerTest {
         List<Order> mockOrderList = getMockOrderList(size);
         Page<Order> mockOrderPage = new PageImpl<>(mockOrderList);
         List<OrderVo> mockOrderVoList = getMockOrderVoList(mockOrderList);
-        when(orderService.findNoAuditOrder(any(Pageable.class)))
+        when(orderService.findNoAuditOrderSlice(any(Pageable.class)))
                 .thenReturn(mockOrderPage);
         when(orderVoService.returnVo(any(List.class)))
                 .thenReturn(mockOrderVoList);
 
-        mockMvc.perform(get("/admin/getOrderList.do")
+        MvcResult mvcResult = mockMvc.perform(get("/admin/getOrderList.do")
                         .param("page", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(size)));
+                .andExpect(jsonPath("$", hasSize(size)))
+                .andExpect(header().string("X-Has-More", "false"));
 
-        verify(orderService,times(1)).findNoAuditOrder(any(Pageable.class));
+        verify(orderService,times(1)).findNoAuditOrderSlice(any(Pageable.class));
         verify(orderVoService,times(1)).returnVo(any(List.class));
     }
     /**
@@ -156,17 +204,20 @@ public class AdminOrderControllerTest {
         List<Order> mockOrderList = getMockOrderList(size);
         Page<Order> mockOrderPage = new PageImpl<>(mockOrderList);
         List<OrderVo> mockOrderVoList = getMockOrderVoList(mockOrderList);
-        when(orderService.findNoAuditOrder(any(Pageable.class)))
+        when(orderService.findNoAuditOrderSlice(any(Pageable.class)))
                 .thenReturn(mockOrderPage);
         when(orderVoService.returnVo(any(List.class)))
                 .thenReturn(mockOrderVoList);
 
-        mockMvc.perform(get("/admin/getOrderList.do")
+        MvcResult mvcResult = mockMvc.perform(get("/admin/getOrderList.do")
                         .param("page", "100"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
 
-        verify(orderService,times(1)).findNoAuditOrder(any(Pageable.class));
+        verify(orderService,times(1)).findNoAuditOrderSlice(any(Pageable.class));
         verify(orderVoService,times(1)).returnVo(any(List.class));
     }
 
@@ -179,17 +230,20 @@ public class AdminOrderControllerTest {
         List<Order> mockOrderList = new ArrayList<>();
         Page<Order> mockOrderPage = new PageImpl<>(mockOrderList);
         List<OrderVo> mockOrderVoList = getMockOrderVoList(mockOrderList);
-        when(orderService.findNoAuditOrder(any(Pageable.class)))
+        when(orderService.findNoAuditOrderSlice(any(Pageable.class)))
                 .thenReturn(mockOrderPage);
         when(orderVoService.returnVo(any(List.class)))
                 .thenReturn(mockOrderVoList);
 
-        mockMvc.perform(get("/admin/getOrderList.do")
+        MvcResult mvcResult = mockMvc.perform(get("/admin/getOrderList.do")
                         .param("page", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andExpect(content().string("[]"));
 
-        verify(orderService,times(1)).findNoAuditOrder(any(Pageable.class));
+        verify(orderService,times(1)).findNoAuditOrderSlice(any(Pageable.class));
         verify(orderVoService,times(1)).returnVo(any(List.class));
     }
 
@@ -203,7 +257,7 @@ public class AdminOrderControllerTest {
         List<Order> mockOrderList = new ArrayList<>();
         Page<Order> mockOrderPage = new PageImpl<>(mockOrderList);
         List<OrderVo> mockOrderVoList = getMockOrderVoList(mockOrderList);
-        when(orderService.findNoAuditOrder(any(Pageable.class)))
+        when(orderService.findNoAuditOrderSlice(any(Pageable.class)))
                 .thenReturn(mockOrderPage);
         when(orderVoService.returnVo(any(List.class)))
                 .thenReturn(mockOrderVoList);
@@ -213,7 +267,7 @@ public class AdminOrderControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(mockOrderList.toString()));
 
-        verify(orderService,times(1)).findNoAuditOrder(any(Pageable.class));
+        verify(orderService,times(1)).findNoAuditOrderSlice(any(Pageable.class));
         verify(orderVoService,times(1)).returnVo(any(List.class));
     }
 
@@ -275,4 +329,79 @@ public class AdminOrderControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string("true"));
     }
+
+    /**
+     * 当日期区间内有订单时，测试exportOrder方法
+     * @see AdminOrderController#exportOrder
+     */
+    @Test
+    void exportOrderTestWhenDataExists() throws Exception {
+        List<Order> mockOrderList = getMockOrderList(3);
+        Venue venue = new Venue(1, "venue,A", "description", 100, "picture", "address", "open_time", "close_time");
+        when(venueService.findAll()).thenReturn(Collections.singletonList(venue));
+        doAnswer(invocation -> {
+            Consumer<Order> consumer = invocation.getArgument(3);
+            mockOrderList.forEach(consumer);
+            return null;
+        }).when(orderService).exportOrder(any(LocalDateTime.class), any(LocalDateTime.class), eq(0), any());
+
+        MvcResult mvcResult = mockMvc.perform(get("/admin/exportOrder.do")
+                        .param("startDate", "2020-01-01")
+                        .param("endDate", "2020-12-31"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // 导出边查边写，不能被异步超时截断
+        assertEquals(-1, mvcResult.getRequest().getAsyncContext().getTimeout());
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", containsString("order_2020-01-01_2020-12-31.csv")))
+                .andExpect(content().string(containsString("订单号,用户,场馆")))
+                .andExpect(content().string(containsString("1,userID,\"venue,A\",未审核")));
+
+        verify(orderService, times(1)).exportOrder(eq(LocalDateTime.of(2020, 1, 1, 0, 0)),
+                eq(LocalDateTime.of(2021, 1, 1, 0, 0)), eq(0), any());
+    }
+
+    /**
+     * 用户ID或场馆名以公式字符开头时，导出的单元格前加单引号
+     * @see AdminOrderController#exportOrder
+     */
+    @Test
+    void exportOrderTestWhenCellLooksLikeFormula() throws Exception {
+        Order order = getMockOrderList(1).get(0);
+        order.setUserID("=HYPERLINK(\"http://x\")");
+        order.setVenueID(1);
+        Venue venue = new Venue(1, "@SUM(A1)", "description", 100, "picture", "address", "open_time", "close_time");
+        when(venueService.findAll()).thenReturn(Collections.singletonList(venue));
+        doAnswer(invocation -> {
+            Consumer<Order> consumer = invocation.getArgument(3);
+            consumer.accept(order);
+            return null;
+        }).when(orderService).exportOrder(any(LocalDateTime.class), any(LocalDateTime.class), eq(0), any());
+
+        MvcResult mvcResult = mockMvc.perform(get("/admin/exportOrder.do")
+                        .param("startDate", "2020-01-01")
+                        .param("endDate", "2020-12-31"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("0,\"'=HYPERLINK(\"\"http://x\"\")\",'@SUM(A1),未审核")));
+    }
+
+    /**
+     * 当日期格式错误时，测试exportOrder方法
+     * @see AdminOrderController#exportOrder
+     */
+    @Test
+    void exportOrderTestWhenDateFormatError() throws Exception {
+        try {
+            mockMvc.perform(get("/admin/exportOrder.do")
+                    .param("startDate", "2020-1-1")
+                    .param("endDate", "2020-12-31"));
+        } catch (Exception e) {
+            assert e.getCause() instanceof java.time.format.DateTimeParseException;
+        }
+        verify(orderService, times(0)).exportOrder(any(), any(), anyInt(), any());
+    }
 }
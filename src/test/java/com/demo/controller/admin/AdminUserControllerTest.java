@@ -3,7 +3,6 @@ package com.demo.controller.admin;
 
 import com.demo.entity.User;
 import com.demo.service.UserService;
-import com.demo.utils.FileUtil;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -18,6 +18,7 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -30,6 +31,11 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @SpringBootTest
 @AutoConfigureMockMvc
 public class AdminVenueControllerTest {
+    /**
+     * 上传只接受真正的图片，按文件头识别格式
+     */
+    private static final byte[] PNG_DATA = "\u0089PNG\r\n\u001a\nsome image data".getBytes(StandardCharsets.ISO_8859_1);
+
 
     @Autowired
     private MockMvc mockMvc;
@@ -119,7 +125,7 @@ public class AdminVenueControllerTest {
      */
     @Test
     public void testAddVenue() throws Exception {
-        MockMultipartFile file = new MockMultipartFile("picture", "filename.png", "image/png", "some image data".getBytes());
+        MockMultipartFile file = new MockMultipartFile("picture", "filename.png", "image/png", PNG_DATA);
 
         Venue dummyVenue = new Venue(1, "New Venue", "A new venue description", 100, "filename.png", "123 Venue St", "09:00", "21:00");
         when(venueService.create(any(Venue.class))).thenReturn(1);  // Assume creation is successful and returns a positive ID
@@ -144,7 +150,7 @@ public class AdminVenueControllerTest {
      */
     @Test
     public void testAddVenueFailure() throws Exception {
-        MockMultipartFile file = new MockMultipartFile("picture", "filename.png", "image/png", "some image data".getBytes());
+        MockMultipartFile file = new MockMultipartFile("picture", "filename.png", "image/png", PNG_DATA);
         when(venueService.create(any(Venue.class))).thenReturn(0);  // Simulate failure
 
         mockMvc.perform(multipart("/addVenue.do")
@@ -199,7 +205,7 @@ public class AdminVenueControllerTest {
     @Test
     public void testModifyVenue_Success() throws Exception {
         int venueID = 1;
-        MockMultipartFile file = new MockMultipartFile("picture", "filename.png", "image/png", "some image data".getBytes());
+        MockMultipartFile file = new MockMultipartFile("picture", "filename.png", "image/png", PNG_DATA);
         Venue updatedVenue = new Venue(venueID, "Updated Venue", "Updated Description", 200, "updatedPicture.png", "Updated Address", "10:00", "22:00");
 
         when(venueService.findByVenueID(venueID)).thenReturn(updatedVenue);
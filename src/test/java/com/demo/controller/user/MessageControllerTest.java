@@ -4,8 +4,12 @@ import com.demo.entity.Message;
 import com.demo.entity.User;
 import com.demo.entity.vo.MessageVo;
 import com.demo.exception.LoginException;
+import com.demo.moderation.KeywordFilter;
+import com.demo.ratelimit.TokenBucketLimiter;
 import com.demo.service.MessageService;
 import com.demo.service.MessageVoService;
+import com.demo.session.SessionUser;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -40,6 +44,18 @@ public class MessageControllerTest {
     private MessageService messageService;
     @MockBean
     private MessageVoService messageVoService;
+    @MockBean
+    private KeywordFilter keywordFilter;
+    @Autowired
+    private TokenBucketLimiter tokenBucketLimiter;
+
+    /**
+     * 限流桶在缓存的Spring上下文里跨测试保留，每个测试从空桶开始
+     */
+    @BeforeEach
+    void resetRateLimit() {
+        tokenBucketLimiter.reset();
+    }
 
     private List<Message> mockMessageList(int size){
         List<Message> messages = new ArrayList<>();
@@ -74,15 +90,16 @@ public class MessageControllerTest {
         Pageable pageable = PageRequest.of(0, 5, Sort.by("time").descending());
         List<Message> messageList = Collections.singletonList(new Message(1, "user1", "Content here", LocalDateTime.now(), 1));
         Page<Message> page = new PageImpl<>(messageList, pageable, messageList.size());
+        List<MessageVo> messageVos = mockMessageVoList(1);
 
         // Mocking the service method to return a non-null Page object
-        when(messageService.findPassState(pageable)).thenReturn(page);
+        when(messageVoService.findPassStateVo(pageable)).thenReturn(new PageImpl<>(messageVos, pageable, messageVos.size()));
         when(messageService.findByUser(anyString(), any(Pageable.class))).thenReturn(page);  // Mock this too if it's used similarly
 
         // Setting up a mock user session
         MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders
                 .get("/message_list")
-                .sessionAttr("user",    new User(1,"1","1","1","1","1",0,"1"));  // Assuming User class has a constructor User(String userID, String username)
+                .sessionAttr("user",    SessionUser.of(new User(1,"1","1","1","1","1",0,"1")));  // Assuming User class has a constructor User(String userID, String username)
 
         mockMvc.perform(requestBuilder)
                 .andExpect(status().isOk())
@@ -90,8 +107,8 @@ public class MessageControllerTest {
                 .andExpect(model().attributeExists("user_total"))
                 .andExpect(view().name("message_list"));
 
-        verify(messageService).findPassState(any(Pageable.class));
-        verify(messageVoService).returnVo(anyList());
+        verify(messageVoService).findPassStateVo(any(Pageable.class));
+        verify(messageService, never()).findPassState(any(Pageable.class));
         verify(messageService).findByUser(eq("1"), any(Pageable.class));
     }
     /**
@@ -106,24 +123,74 @@ public class MessageControllerTest {
     }
     /**
      * 用户查看消息列表
+     * 第一页在缓存范围内，从缓存的最新留言中取
      */
     @Test
     public void testGetMessageList_ValidRequest() throws Exception {
         int size = 5;
         Pageable pageable = PageRequest.of(0, 5, Sort.by("time").descending());
-        List<Message> messages = mockMessageList(size);
         List<MessageVo> messageVos = mockMessageVoList(size);
 
-        when(messageService.findPassState(any(Pageable.class))).thenReturn(new PageImpl<>(messages));
-        when(messageVoService.returnVo(messages)).thenReturn(messageVos);
+        when(messageVoService.findPassStateVo(pageable)).thenReturn(new PageImpl<>(messageVos, pageable, 12));
 
         mockMvc.perform(get("/message/getMessageList").param("page", "1"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(size)))
+                .andExpect(header().string("X-Has-More", "true"))
                 .andDo(print());
 
-        verify(messageService).findPassState(any(Pageable.class));
-        verify(messageVoService).returnVo(any(List.class));
+        verify(messageVoService).findPassStateVo(pageable);
+        verify(messageService, never()).findPassStateSlice(any(Pageable.class));
+        verify(messageService, never()).findPassState(any(Pageable.class));
+    }
+
+    /**
+     * 用户查看消息列表
+     * 页码超出缓存范围，查库且不统计总数
+     */
+    @Test
+    public void testGetMessageList_BeyondFeed() throws Exception {
+        int size = 5;
+        Pageable pageable = PageRequest.of(20, 5, Sort.by("time").descending());
+        List<Message> messages = mockMessageList(size);
+        List<MessageVo> messageVos = mockMessageVoList(size);
+
+        when(messageService.findPassStateSlice(pageable)).thenReturn(new SliceImpl<>(messages, pageable, false));
+        when(messageVoService.returnVo(messages)).thenReturn(messageVos);
+
+        mockMvc.perform(get("/message/getMessageList").param("page", "21"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(size)))
+                .andExpect(header().string("X-Has-More", "false"));
+
+        verify(messageService).findPassStateSlice(pageable);
+        verify(messageVoService, never()).findPassStateVo(any(Pageable.class));
+        verify(messageService, never()).findPassState(any(Pageable.class));
+    }
+
+    /**
+     * 用户订阅新留言推送成功
+     * 用户已登录，请求转为异步处理
+     */
+    @Test
+    public void testMessageStream_WithUser() throws Exception {
+        mockMvc.perform(get("/message/stream")
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
+                .andExpect(request().asyncStarted());
+    }
+
+    /**
+     * 用户订阅新留言推送失败
+     * 用户未登录
+     */
+    @Test
+    public void testMessageStream_WithoutUser() throws Exception {
+        try {
+            mockMvc.perform(get("/message/stream"));
+        } catch (Exception e) {
+            assert e.getCause() instanceof LoginException;
+            assert e.getCause().getMessage().equals("请登录！");
+        }
     }
 
     /**
@@ -135,16 +202,17 @@ public class MessageControllerTest {
         List<Message> messages = mockMessageList(10);
         List<MessageVo> messageVos = mockMessageVoList(10);
         Pageable pageable = PageRequest.of(0, 5, Sort.by("time").descending());
-        when(messageService.findByUser(eq("1"), any(Pageable.class))).thenReturn(new PageImpl<>(messages));
+        when(messageService.findByUserSlice(eq("1"), any(Pageable.class))).thenReturn(new SliceImpl<>(messages));
         when(messageVoService.returnVo(messages)).thenReturn(messageVos);
 
         mockMvc.perform(get("/message/findUserList").param("page", "1")
-                        .sessionAttr("user", new User(1,"1","1","1","1","1",0,"1")))
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(10)))
+                .andExpect(header().string("X-Has-More", "false"))
                 .andDo(print());
 
-        verify(messageService).findByUser(eq("1"), any(Pageable.class));
+        verify(messageService).findByUserSlice(eq("1"), any(Pageable.class));
         verify(messageVoService).returnVo(messages);
     }
     /**
@@ -167,13 +235,71 @@ public class MessageControllerTest {
         mockMvc.perform(post("/sendMessage")
                         .param("userID", "1")
                         .param("content", "Hello, World!")
-                        .sessionAttr("user", new User(1,"1","1","1","1","1",0,"1")))
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("/message_list"))
                 .andDo(print());
 
         verify(messageService).create(any(Message.class));
     }
+    /**
+     * 用户发布信息，自动审核的结果作为留言状态保存
+     */
+    @Test
+    public void testSendMessage_Moderated() throws Exception {
+        when(keywordFilter.moderate("spam spam")).thenReturn(MessageService.STATE_REJECT);
+
+        mockMvc.perform(post("/sendMessage")
+                        .param("userID", "1")
+                        .param("content", "spam spam")
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
+                .andExpect(status().is3xxRedirection());
+
+        verify(keywordFilter).moderate("spam spam");
+        verify(messageService).create(argThat(message -> message.getState() == MessageService.STATE_REJECT));
+    }
+
+    /**
+     * 用户连续发布超过突发预算时返回429，不再调用service
+     */
+    @Test
+    public void testSendMessage_RateLimited() throws Exception {
+        SessionUser user = SessionUser.of(new User(2,"rate_limited_user","1","1","1","1",0,"1"));
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/sendMessage")
+                            .param("userID", "rate_limited_user")
+                            .param("content", "flood " + i)
+                            .sessionAttr("user", user))
+                    .andExpect(status().is3xxRedirection());
+        }
+        mockMvc.perform(post("/sendMessage")
+                        .param("userID", "rate_limited_user")
+                        .param("content", "flood")
+                        .sessionAttr("user", user))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+
+        verify(messageService, times(5)).create(argThat(message -> "rate_limited_user".equals(message.getUserID())));
+    }
+
+    /**
+     * 用户编辑信息，重新自动审核
+     */
+    @Test
+    public void testModifyMessage_Moderated() throws Exception {
+        when(messageService.findById(1)).thenReturn(new Message(1, "1", "Original content", LocalDateTime.now(), 3));
+        when(keywordFilter.moderate("clean content")).thenReturn(MessageService.STATE_PASS);
+
+        mockMvc.perform(post("/modifyMessage.do")
+                        .param("messageID", "1")
+                        .param("content", "clean content")
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+
+        verify(messageService).update(argThat(message -> message.getState() == MessageService.STATE_PASS));
+    }
+
     /**
      * 用户发布信息失败
      * 信息内容为空
@@ -183,7 +309,7 @@ public class MessageControllerTest {
         mockMvc.perform(post("/sendMessage")
                         .param("userID", "1")
                         .param("content", "")
-                        .sessionAttr("user", new User(1,"1","1","1","1","1",0,"1")))
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
                 .andExpect(status().isBadRequest())
                 .andDo(print());
     }
@@ -198,7 +324,7 @@ public class MessageControllerTest {
         mockMvc.perform(post("/modifyMessage.do")
                         .param("messageID", "1")
                         .param("content", "Updated content here.")
-                        .sessionAttr("user", new User(1,"1","1","1","1","1",0,"1")))
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
                 .andExpect(status().isOk())
                 .andExpect(content().string("true"))
                 .andDo(print());
@@ -218,7 +344,7 @@ public class MessageControllerTest {
         mockMvc.perform(post("/modifyMessage.do")
                         .param("messageID", "1")
                         .param("content", "")
-                        .sessionAttr("user", new User(1,"1","1","1","1","1",0,"1")))
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
                 .andExpect(status().isBadRequest())
                 .andDo(print());
 
@@ -236,7 +362,7 @@ public class MessageControllerTest {
         mockMvc.perform(post("/modifyMessage.do")
                         .param("messageID", "999")
                         .param("content", "This should fail.")
-                        .sessionAttr("user", new User(1,"1","1","1","1","1",0,"1")))
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
                 .andExpect(status().isNotFound())
                 .andDo(print());
 
@@ -252,7 +378,7 @@ public class MessageControllerTest {
 
         mockMvc.perform(post("/delMessage.do")
                         .param("messageID", "1")
-                        .sessionAttr("user", new User(1,"1","1","1","1","1",0,"1")))
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
                 .andExpect(status().isOk())
                 .andExpect(content().string("true"))
                 .andDo(print());
@@ -270,7 +396,7 @@ public class MessageControllerTest {
 
         mockMvc.perform(post("/delMessage.do")
                         .param("messageID", "999")
-                        .sessionAttr("user", new User(1,"1","1","1","1","1",0,"1")))
+                        .sessionAttr("user", SessionUser.of(new User(1,"1","1","1","1","1",0,"1"))))
                 .andExpect(status().isNotFound())
                 .andDo(print());
 
@@ -1,5 +1,6 @@
 package com.demo.controller.user;
 
+import com.demo.cache.EntityVersions;
 import com.demo.entity.Message;
 import com.demo.entity.News;
 import com.demo.entity.User;
@@ -44,6 +45,8 @@ public class NewsControllerTest {
 
     @MockBean
     private NewsService newsService;
+    @Autowired
+    private EntityVersions entityVersions;
 
     private List<News> mockNewsList(int size) {
         List<News> newsList = new ArrayList<>();
@@ -100,18 +103,47 @@ public class NewsControllerTest {
     public void testNewsListPaged() throws Exception {
         List<News> newsList = mockNewsList(5);
         Pageable pageable = PageRequest.of(0, 5, Sort.by("time").descending());
-        Page<News> page = new PageImpl<>(newsList, pageable, newsList.size());
+        Slice<News> page = new SliceImpl<>(newsList, pageable, false);
 
-        when(newsService.findAll(any(Pageable.class))).thenReturn(page);
+        when(newsService.findAllSlice(any(Pageable.class))).thenReturn(page);
 
         mockMvc.perform(get("/news/getNewsList").param("page", "1"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.content", hasSize(5)))
                 .andExpect(jsonPath("$.content[0].title", is("News Title 0")))
-                .andExpect(jsonPath("$.totalPages", is(1)))
+                .andExpect(jsonPath("$.last", is(true)))
+                .andExpect(header().string("X-Has-More", "false"))
                 .andDo(print());
 
-        verify(newsService).findAll(any(Pageable.class));
+        verify(newsService).findAllSlice(any(Pageable.class));
+        verify(newsService, never()).findAll(any(Pageable.class));
+    }
+    /**
+     * 新闻没有变化时带If-None-Match返回304且不查数据库，新闻变化后重新返回数据
+     */
+    @Test
+    public void testNewsListNotModified() throws Exception {
+        Pageable pageable = PageRequest.of(0, 5, Sort.by("time").descending());
+        when(newsService.findAllSlice(any(Pageable.class))).thenReturn(new SliceImpl<>(mockNewsList(5), pageable, false));
+
+        String etag = mockMvc.perform(get("/news/getNewsList").param("page", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/news/getNewsList").param("page", "1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(newsService, times(1)).findAllSlice(any(Pageable.class));
+
+        mockMvc.perform(get("/news/getNewsList").param("page", "2").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+        entityVersions.bump(EntityVersions.NEWS);
+        mockMvc.perform(get("/news/getNewsList").param("page", "1").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(5)));
+        verify(newsService, times(3)).findAllSlice(any(Pageable.class));
     }
     /**
      * 用户查看新闻列表成功
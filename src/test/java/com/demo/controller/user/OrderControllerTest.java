@@ -1,13 +1,19 @@
 package com.demo.controller.user;
 
+import com.demo.admission.AdaptiveLimit;
+import com.demo.admission.AdmissionControlFilter;
+import com.demo.admission.EndpointClass;
 import com.demo.entity.Order;
 import com.demo.entity.User;
 import com.demo.entity.Venue;
 import com.demo.entity.vo.OrderVo;
 import com.demo.exception.LoginException;
+import com.demo.ratelimit.TokenBucketLimiter;
 import com.demo.service.OrderService;
 import com.demo.service.OrderVoService;
 import com.demo.service.VenueService;
+import com.demo.session.SessionUser;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -15,7 +21,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.context.TestExecutionListeners;
@@ -41,6 +50,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 public class OrderControllerTest {
     @Autowired
     private MockMvc mockMvc;
+    @Autowired
+    private AdmissionControlFilter admissionControlFilter;
 
     @MockBean
     private OrderService orderService;
@@ -48,6 +59,16 @@ public class OrderControllerTest {
     private OrderVoService orderVoService;
     @MockBean
     private VenueService venueService;
+    @Autowired
+    private TokenBucketLimiter tokenBucketLimiter;
+
+    /**
+     * 限流桶在缓存的Spring上下文里跨测试保留，每个测试从空桶开始
+     */
+    @BeforeEach
+    void resetRateLimit() {
+        tokenBucketLimiter.reset();
+    }
 
     private User getMockUser(String userId){
         User mockUser = mock(User.class);
@@ -56,7 +77,7 @@ public class OrderControllerTest {
     }
     private MockHttpSession getMockHttpSession(User user) {
         MockHttpSession mockHttpSession = new MockHttpSession();
-        mockHttpSession.setAttribute("user", user);
+        mockHttpSession.setAttribute("user", user == null ? null : SessionUser.of(user));
         return  mockHttpSession;
     }
     private List<Order> getMockOrderList(int size){
@@ -114,8 +135,8 @@ public class OrderControllerTest {
         User mockUser = getMockUser("1");
         MockHttpSession session = getMockHttpSession(mockUser);
 
-        when(orderService.findUserOrder(eq(mockUser.getUserID()), any(Pageable.class)))
-                .thenReturn(new PageImpl<>(new ArrayList<>()));
+        when(orderService.countUserOrder(eq(mockUser.getUserID())))
+                .thenReturn(0);
 
         mockMvc.perform(get("/order_manage")
                         .session(session))
@@ -124,7 +145,8 @@ public class OrderControllerTest {
                 .andExpect(model().attribute("total", equalTo(1)))
                 .andReturn();
 
-        verify(orderService, times(1)).findUserOrder(eq(mockUser.getUserID()), any(Pageable.class));
+        verify(orderService, times(1)).countUserOrder(eq(mockUser.getUserID()));
+        verify(orderService, times(0)).findUserOrder(anyString(), any(Pageable.class));
     }
 
     /**
@@ -135,19 +157,18 @@ public class OrderControllerTest {
     void order_manageTestWhenHasData() throws Exception{
         User mockUser = getMockUser("1");
         MockHttpSession session = getMockHttpSession(mockUser);
-        int size = 5;
-        List<Order> orderList = getMockOrderList(size);
-        Page<Order> page = new PageImpl<>(orderList);
-        when(orderService.findUserOrder(eq(mockUser.getUserID()), any(Pageable.class)))
-                .thenReturn(page);
+        // 11条订单，每页5条，共3页
+        when(orderService.countUserOrder(eq(mockUser.getUserID())))
+                .thenReturn(11);
 
         mockMvc.perform(get("/order_manage").session(session))
                 .andExpect(status().isOk())
                 .andExpect(view().name("order_manage"))
-                .andExpect(model().attribute("total", equalTo(page.getTotalPages())))
+                .andExpect(model().attribute("total", equalTo(3)))
                 .andReturn();
 
-        verify(orderService, times(1)).findUserOrder(eq(mockUser.getUserID()), any(Pageable.class));
+        verify(orderService, times(1)).countUserOrder(eq(mockUser.getUserID()));
+        verify(orderService, times(0)).findUserOrder(anyString(), any(Pageable.class));
     }
 
     /**
@@ -226,7 +247,7 @@ public class OrderControllerTest {
         User mockUser = getMockUser("1");
         MockHttpSession session = getMockHttpSession(mockUser);
 
-        when(orderService.findUserOrder(eq(mockUser.getUserID()), any(Pageable.class)))
+        when(orderService.findUserOrderSlice(eq(mockUser.getUserID()), any(Pageable.class)))
                 .thenReturn(new PageImpl<>(new ArrayList<>()));
         when(orderVoService.returnVo(anyList()))
                 .thenReturn(new ArrayList<>());
@@ -238,11 +259,39 @@ public class OrderControllerTest {
                 .andExpect(jsonPath("$", hasSize(0)))
                 .andReturn();
 
-        verify(orderService, times(1)).findUserOrder(eq(mockUser.getUserID()), any(Pageable.class));
+        verify(orderService, times(1)).findUserOrderSlice(eq(mockUser.getUserID()), any(Pageable.class));
         verify(orderVoService, times(1)).returnVo(anyList());
     }
 
 
+    /**
+     * 用户接口并发已满时，测试order_list方法直接返回503和Retry-After，不调用service
+     * @see OrderController#order_list
+     */
+    @Test
+    void order_listTestWhenOverloaded() throws Exception{
+        User mockUser = getMockUser("1");
+        MockHttpSession session = getMockHttpSession(mockUser);
+        AdaptiveLimit limit = admissionControlFilter.limit(EndpointClass.USER_API);
+        int held = 0;
+        while (limit.tryAcquire()) {
+            held++;
+        }
+        try {
+            mockMvc.perform(get("/getOrderList.do")
+                            .param("page", "1")
+                            .session(session))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists("Retry-After"));
+        } finally {
+            for (int i = 0; i < held; i++) {
+                limit.release();
+            }
+        }
+
+        verify(orderService, never()).findUserOrderSlice(anyString(), any(Pageable.class));
+    }
+
     /**
      * 当用户已登录时，请求参数Page正确，并且有订单数据。测试order_list方法
      * @see OrderController#order_list
@@ -252,8 +301,8 @@ public class OrderControllerTest {
         User mockUser = getMockUser("1");
         MockHttpSession session = getMockHttpSession(mockUser);
         int size = 5;
-        Page<Order> page = new PageImpl<>(getMockOrderList(size));
-        when(orderService.findUserOrder(eq(mockUser.getUserID()), any(Pageable.class)))
+        Slice<Order> page = new SliceImpl<>(getMockOrderList(size), PageRequest.of(0, size), true);
+        when(orderService.findUserOrderSlice(eq(mockUser.getUserID()), any(Pageable.class)))
                 .thenReturn(page);
 
         when(orderVoService.returnVo(anyList()))
@@ -265,9 +314,10 @@ public class OrderControllerTest {
                         .session(session))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(size)))
+                .andExpect(header().string("X-Has-More", "true"))
                 .andReturn();
 
-        verify(orderService, times(1)).findUserOrder(eq(mockUser.getUserID()), any(Pageable.class));
+        verify(orderService, times(1)).findUserOrderSlice(eq(mockUser.getUserID()), any(Pageable.class));
         verify(orderVoService, times(1)).returnVo(anyList());
     }
 
@@ -281,7 +331,7 @@ public class OrderControllerTest {
         User mockUser = getMockUser("1");
         MockHttpSession session = getMockHttpSession(mockUser);
 
-        when(orderService.findUserOrder(eq(mockUser.getUserID()), any(Pageable.class)))
+        when(orderService.findUserOrderSlice(eq(mockUser.getUserID()), any(Pageable.class)))
                 .thenReturn(new PageImpl<>(new ArrayList<>()));
         when(orderVoService.returnVo(anyList()))
                 .thenReturn(new ArrayList<>());
@@ -293,7 +343,7 @@ public class OrderControllerTest {
                 .andExpect(jsonPath("$", hasSize(0)))
                 .andReturn();
 
-        verify(orderService, times(0)).findUserOrder(eq(mockUser.getUserID()), any(Pageable.class));
+        verify(orderService, times(0)).findUserOrderSlice(eq(mockUser.getUserID()), any(Pageable.class));
         verify(orderVoService, times(0)).returnVo(anyList());
     }
 
@@ -318,6 +368,36 @@ public class OrderControllerTest {
         }
     }
 
+    /**
+     * 同一用户连续下单超过突发预算时，测试addOrder方法返回429且不再调用service
+     * @see OrderController#addOrder
+     */
+    @Test
+    void add_orderTestWhenRateLimited() throws Exception{
+        User mockUser = getMockUser("rate_limited_user");
+        MockHttpSession session = getMockHttpSession(mockUser);
+        doNothing().when(orderService)
+                .submit(anyString(), any(LocalDateTime.class), anyInt(), anyString());
+
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/addOrder.do")
+                            .param("venueName", "venueName")
+                            .param("startTime", "2020-01-01 12:00")
+                            .param("hours", "1")
+                    .session(session))
+                    .andExpect(status().is3xxRedirection());
+        }
+        mockMvc.perform(post("/addOrder.do")
+                        .param("venueName", "venueName")
+                        .param("startTime", "2020-01-01 12:00")
+                        .param("hours", "1")
+                .session(session))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+
+        verify(orderService, times(5)).submit(anyString(), any(LocalDateTime.class), anyInt(), eq("rate_limited_user"));
+    }
+
     /**
      * 当用户已登录时，并且参数都正确时，测试addOrder方法
      * 传入的data未被使用
@@ -2,7 +2,8 @@ package com.demo.controller.user;
 
 import com.demo.entity.User;
 import com.demo.service.UserService;
-import com.demo.utils.FileUtil;
+import com.demo.session.SessionUser;
+import com.demo.storage.FileStore;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -33,6 +34,8 @@ public class UserControllerTest {
     private MockMvc mockMvc;
     @MockBean
     private UserService userService;
+    @Autowired
+    private FileStore fileStore;
 
     private User  getMockUser(boolean isLegal, boolean isUser){
         if(!isLegal)
@@ -55,7 +58,7 @@ public class UserControllerTest {
         user.setPhone(phone);
         user.setIsadmin(isAdmin); // 0代表是User，1代表是Admin
         if(picture!=null && !Objects.equals(picture.getOriginalFilename(), "")){
-            user.setPicture(FileUtil.saveUserFile(picture));
+            user.setPicture(fileStore.save("user", picture));
         }
         return user;
     }
@@ -63,9 +66,9 @@ public class UserControllerTest {
     private MockHttpSession getMockHttpSession(User user, boolean isUser){
         MockHttpSession session = new MockHttpSession();
         if(isUser)
-            session.setAttribute("user", user);
+            session.setAttribute("user", SessionUser.of(user));
         else
-            session.setAttribute("admin", user);
+            session.setAttribute("admin", SessionUser.of(user));
         return session;
     }
 
@@ -106,7 +109,7 @@ public class UserControllerTest {
                 .andExpect(content().string("/index"))
                 .andExpect(request -> assertEquals(
                         "User objects are not equal",
-                        mockUser,
+                        SessionUser.of(mockUser),
                         request.getRequest().getSession().getAttribute("user")));
     }
 
@@ -127,7 +130,7 @@ public class UserControllerTest {
                 .andExpect(content().string("/admin_index"))
                 .andExpect(request -> assertEquals(
                         "User objects are not equal",
-                        mockUser,
+                        SessionUser.of(mockUser),
                         request.getRequest().getSession().getAttribute("admin")));
     }
 
@@ -205,6 +208,25 @@ public class UserControllerTest {
                 .andExpect(status().is3xxRedirection());
     }
 
+    /**
+     * userID已被占用时不创建用户，回到注册页；不依赖checkUserID.do的过滤器
+     */
+    @Test
+    void registerTestWhenUserIDTaken() throws Exception{
+        User existing = getMockUser(true,true);
+        when(userService.findByUserID("taken")).thenReturn(existing);
+
+        mockMvc.perform(post("/register.do")
+                        .param("userID","taken")
+                        .param("userName","User")
+                        .param("password","123456")
+                        .param("email","")
+                        .param("phone",""))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("signup"));
+        verify(userService, never()).create(any(User.class));
+    }
+
     /**
      * （等价类划分）测试logout函数，用户已经登录（session中有user）
      */
@@ -273,7 +295,7 @@ public class UserControllerTest {
                         )
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("user_info"))
-                .andExpect(request().sessionAttribute("user", samePropertyValuesAs(expectedUser)));
+                .andExpect(request().sessionAttribute("user", samePropertyValuesAs(SessionUser.of(expectedUser))));
 
         verify(userService, times(1)).findByUserID(eq("test_user"));
         verify(userService, times(1)).updateUser(any(User.class));
@@ -355,7 +377,7 @@ public class UserControllerTest {
                 )
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("user_info"))
-                .andExpect(request().sessionAttribute("user", samePropertyValuesAs(expectedUser)));
+                .andExpect(request().sessionAttribute("user", samePropertyValuesAs(SessionUser.of(expectedUser))));
 
         verify(userService, times(1)).findByUserID(eq("test_user"));
         verify(userService, times(1)).updateUser(any(User.class));
@@ -370,7 +392,7 @@ public class UserControllerTest {
                 )
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("user_info"))
-                .andExpect(request().sessionAttribute("user", samePropertyValuesAs(expectedUser)));
+                .andExpect(request().sessionAttribute("user", samePropertyValuesAs(SessionUser.of(expectedUser))));
 
     }
 
@@ -400,7 +422,7 @@ public class UserControllerTest {
                 )
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("user_info"))
-                .andExpect(request().sessionAttribute("user", samePropertyValuesAs(expectedUser)));
+                .andExpect(request().sessionAttribute("user", samePropertyValuesAs(SessionUser.of(expectedUser))));
 
         verify(userService, times(1)).findByUserID(eq("test_user"));
         verify(userService, times(1)).updateUser(any(User.class));
@@ -475,12 +497,15 @@ public class UserControllerTest {
      */
     @Test
     void user_infoTestWhenUserLogin() throws Exception{
-        MockHttpSession mockHttpSession = getMockHttpSession(
-                getRealUser(0,"test_user", "test", "123456", "", "",  0, null), true);
+        User user = getRealUser(0,"test_user", "test", "123456", "", "",  0, null);
+        MockHttpSession mockHttpSession = getMockHttpSession(user, true);
+        when(userService.findByUserID(eq("test_user")))
+                .thenReturn(user);
 
         mockMvc.perform(get("/user_info")
                         .session(mockHttpSession))
                 .andExpect(status().isOk())
-                .andExpect(view().name("user_info"));
+                .andExpect(view().name("user_info"))
+                .andExpect(model().attribute("user", user));
     }
 }
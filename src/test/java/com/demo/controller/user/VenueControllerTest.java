@@ -1,5 +1,6 @@
 package com.demo.controller.user;
 
+import com.demo.cache.EntityVersions;
 import com.demo.entity.Venue;
 import com.demo.service.VenueService;
 import org.junit.jupiter.api.Test;
@@ -31,6 +32,8 @@ public class VenueControllerTest {
 
     @MockBean
     private VenueService venueService;
+    @Autowired
+    private EntityVersions entityVersions;
 
     private List<Venue> mockVenueList(int size) {
         List<Venue> venueList = new ArrayList<>();
@@ -97,6 +100,30 @@ public class VenueControllerTest {
         verify(venueService).findAll(any(Pageable.class));
     }
 
+    /**
+     * 测试场馆没有变化时带If-None-Match返回304且不查数据库，场馆变化后重新返回数据
+     */
+    @Test
+    public void testVenueListNotModified() throws Exception {
+        Pageable pageable = PageRequest.of(0, 5, Sort.by("venueID").ascending());
+        when(venueService.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(mockVenueList(5), pageable, 5));
+
+        String etag = mockMvc.perform(get("/venuelist/getVenueList").param("page", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/venuelist/getVenueList").param("page", "1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        verify(venueService, times(1)).findAll(any(Pageable.class));
+
+        entityVersions.bump(EntityVersions.VENUE);
+        mockMvc.perform(get("/venuelist/getVenueList").param("page", "1").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(5)));
+        verify(venueService, times(2)).findAll(any(Pageable.class));
+    }
+
     /**
      * 测试查看场馆列表成功的场景
      */
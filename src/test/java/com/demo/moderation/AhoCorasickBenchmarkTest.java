@@ -0,0 +1,73 @@
+package com.demo.moderation;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 关键词自动机的吞吐压测，mvn test -Pbenchmark 运行
+ * 随机生成中英文混合的关键词和留言正文，按UTF-8字节数统计每秒扫描的MB数
+ */
+@Tag("benchmark")
+public class AhoCorasickBenchmarkTest {
+    private static final int KEYWORDS = 5000;
+    private static final int TEXT_CHARS = 4 * 1024 * 1024;
+    private static final int ROUNDS = 10;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void throughput() {
+        List<String> keywords = new ArrayList<>();
+        for (int i = 0; i < KEYWORDS; i++) {
+            keywords.add(randomText(2 + random.nextInt(5)));
+        }
+        long buildStart = System.nanoTime();
+        AhoCorasick automaton = new AhoCorasick(keywords);
+        long buildNanos = System.nanoTime() - buildStart;
+
+        String text = randomText(TEXT_CHARS);
+        double megabytes = text.getBytes(StandardCharsets.UTF_8).length / 1024.0 / 1024.0;
+        long[] hits = new long[1];
+        AhoCorasick.MatchHandler counter = (start, end, pattern) -> hits[0]++;
+
+        // 预热
+        for (int i = 0; i < 3; i++) {
+            automaton.match(text, counter);
+        }
+        long expected = hits[0] / 3;
+
+        hits[0] = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            automaton.match(text, counter);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("keywords=%d states=%d build=%.1fms text=%.1fMB throughput=%.1fMB/s hits/round=%d%n",
+                KEYWORDS, automaton.size(), buildNanos / 1e6, megabytes,
+                megabytes * ROUNDS * 1e9 / elapsed, expected);
+        assertEquals(expected * ROUNDS, hits[0]);
+    }
+
+    /**
+     * 常用汉字区间里取一小段，混入少量英文字母，让关键词在正文中有一定命中率
+     */
+    private String randomText(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(10) == 0) {
+                builder.append((char) ('a' + random.nextInt(26)));
+            } else {
+                builder.append((char) (0x4E00 + random.nextInt(200)));
+            }
+        }
+        return builder.toString();
+    }
+}
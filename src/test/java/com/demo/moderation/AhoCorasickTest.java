@@ -0,0 +1,50 @@
+package com.demo.moderation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AhoCorasickTest {
+
+    private static List<String> match(AhoCorasick automaton, String text) {
+        List<String> hits = new ArrayList<>();
+        automaton.match(text, (start, end, pattern) -> hits.add(start + "-" + end + ":" + pattern));
+        return hits;
+    }
+
+    /**
+     * 同一位置结束的模式从长到短回调，互相重叠的命中都要报出来
+     */
+    @Test
+    void reportsOverlappingPatterns() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("he", "she", "his", "hers"));
+
+        assertEquals(Arrays.asList("1-4:1", "2-4:0", "2-6:3"), match(automaton, "ushers"));
+        assertEquals(Arrays.asList("0-3:2"), match(automaton, "his"));
+    }
+
+    /**
+     * 匹配失败时沿失败指针退回到最长的后缀继续，而不是回到根节点重新开始
+     */
+    @Test
+    void followsFailureLinks() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("abcd", "bc", "c"));
+
+        // abc走到头后遇到a失败，回到根节点重新开始，后面的abcd仍然要命中
+        assertEquals(Arrays.asList("1-3:1", "2-3:2", "4-6:1", "5-6:2", "3-7:0"), match(automaton, "abcabcd"));
+        // 输出链：abc状态不是模式结尾，但它的后缀bc、c是
+        assertEquals(Arrays.asList("1-3:1", "2-3:2"), match(automaton, "abce"));
+    }
+
+    @Test
+    void foldsCaseAndFullWidth() {
+        AhoCorasick automaton = new AhoCorasick(Arrays.asList("spam", ""));
+
+        assertEquals(Arrays.asList("0-4:0"), match(automaton, "ＳｐＡＭ"));
+        assertEquals(new ArrayList<>(), match(automaton, "spa m"));
+    }
+}
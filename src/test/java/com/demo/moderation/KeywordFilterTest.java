@@ -0,0 +1,82 @@
+package com.demo.moderation;
+
+import com.demo.cache.EntityVersions;
+import com.demo.dao.KeywordDao;
+import com.demo.entity.Keyword;
+import com.demo.service.KeywordService;
+import com.demo.service.MessageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {"moderation.check-interval=100", "entity-versions.refresh=100"})
+public class KeywordFilterTest {
+    @Autowired
+    private KeywordFilter keywordFilter;
+    @Autowired
+    private EntityVersions entityVersions;
+    @MockBean
+    private KeywordDao keywordDao;
+
+    private void rebuildWith(List<Keyword> keywords) throws InterruptedException {
+        when(keywordDao.findAll()).thenReturn(keywords);
+        keywordFilter.rebuild();
+        awaitKeywords(keywords);
+    }
+
+    private void awaitKeywords(List<Keyword> keywords) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(keywords.size()).equals(keywordFilter.metrics().get("keywords"))) {
+            assertTrue(System.currentTimeMillis() < deadline, "keyword filter not rebuilt");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 关键词表是空的（默认情况）时不能自动通过，留言照旧等人工审核
+     */
+    @Test
+    void emptyKeywordTableLeavesMessagesPending() throws Exception {
+        rebuildWith(Collections.emptyList());
+        assertEquals(MessageService.STATE_NO_AUDIT, keywordFilter.moderate("hello"));
+
+        rebuildWith(Collections.singletonList(new Keyword(1, "ok", KeywordService.TYPE_ALLOW)));
+        assertEquals(MessageService.STATE_NO_AUDIT, keywordFilter.moderate("hello"));
+    }
+
+    @Test
+    void moderatesOnceBlockingKeywordsExist() throws Exception {
+        rebuildWith(Arrays.asList(new Keyword(1, "spam", KeywordService.TYPE_HARD),
+                new Keyword(2, "ad", KeywordService.TYPE_SOFT),
+                new Keyword(3, "spam-free", KeywordService.TYPE_ALLOW)));
+
+        assertEquals(MessageService.STATE_PASS, keywordFilter.moderate("hello"));
+        assertEquals(MessageService.STATE_REJECT, keywordFilter.moderate("buy SPAM"));
+        assertEquals(MessageService.STATE_NO_AUDIT, keywordFilter.moderate("an ad"));
+        assertEquals(MessageService.STATE_PASS, keywordFilter.moderate("spam-free zone"));
+    }
+
+    /**
+     * 别的实例加了关键词只会改版本号，本实例的定时检查发现后重新编译
+     */
+    @Test
+    void rebuildsWhenAnotherInstanceChangedKeywords() throws Exception {
+        rebuildWith(Collections.emptyList());
+
+        List<Keyword> keywords = Collections.singletonList(new Keyword(1, "spam", KeywordService.TYPE_HARD));
+        when(keywordDao.findAll()).thenReturn(keywords);
+        entityVersions.bump(EntityVersions.KEYWORD);
+
+        awaitKeywords(keywords);
+        assertEquals(MessageService.STATE_REJECT, keywordFilter.moderate("buy SPAM"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.demo.notify;
+
+import com.demo.entity.vo.MessageVo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 留言推送的扇出压测，mvn test -Pbenchmark 运行
+ * 用只计数不写网络的emitter模拟大量空闲订阅者，测量一条留言推送到全部订阅者的耗时
+ */
+@Tag("benchmark")
+public class MessageBroadcasterBenchmarkTest {
+    private static final int SUBSCRIBERS = 10000;
+    private static final int MESSAGES = 200;
+
+    private MessageBroadcaster broadcaster;
+    private final AtomicLong received = new AtomicLong();
+
+    private class CountingEmitter extends SseEmitter {
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build();
+            received.incrementAndGet();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new MessageBroadcaster(Jackson2ObjectMapperBuilder.json().build(), 4, 500, 0, 60000);
+        broadcaster.start();
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            broadcaster.register(new CountingEmitter());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.stop();
+    }
+
+    /**
+     * 连续广播MESSAGES条留言，统计单条扇出延迟和每秒投递数
+     */
+    @Test
+    void fanOut() throws Exception {
+        // 预热
+        for (int i = 0; i < 20; i++) {
+            waitAll(broadcaster.publish(message(i)));
+        }
+        received.set(0);
+
+        long[] latencies = new long[MESSAGES];
+        long begin = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            long start = System.nanoTime();
+            waitAll(broadcaster.publish(message(i)));
+            latencies[i] = System.nanoTime() - start;
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        Arrays.sort(latencies);
+        System.out.printf("subscribers=%d messages=%d deliveries/s=%.0f p50=%.2fms p99=%.2fms%n",
+                SUBSCRIBERS, MESSAGES,
+                received.get() * 1e9 / elapsed,
+                latencies[MESSAGES / 2] / 1e6,
+                latencies[MESSAGES * 99 / 100] / 1e6);
+        assertEquals((long) SUBSCRIBERS * MESSAGES, received.get());
+    }
+
+    private MessageVo message(int i) {
+        return new MessageVo(i, "user" + i, "benchmark message " + i, LocalDateTime.now(), "UserName" + i, "picture" + i + ".png", 2);
+    }
+
+    private static void waitAll(List<Future<?>> futures) throws Exception {
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+}
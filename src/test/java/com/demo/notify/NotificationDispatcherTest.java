@@ -0,0 +1,170 @@
+package com.demo.notify;
+
+import com.demo.dao.OrderDao;
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import com.demo.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * 单个worker、容量为1的队列，方便构造队列满的情况
+ */
+@SpringBootTest(properties = {"notification.workers=1", "notification.queue-capacity=1",
+        "notification.max-attempts=3", "notification.backoff=200", "notification.max-backoff=1000"})
+public class NotificationDispatcherTest {
+    @Autowired
+    private NotificationDispatcher dispatcher;
+    @SpyBean
+    private FakeSmtpTransport transport;
+    @MockBean
+    private UserDao userDao;
+    @MockBean
+    private OrderDao orderDao;
+    @MockBean
+    private VenueDao venueDao;
+
+    @BeforeEach
+    void setUp() {
+        transport.clear();
+        when(userDao.findByUserID(anyString()))
+                .thenReturn(new User(1, "user", "用户", "pw", "user@example.com", "", 0, ""));
+        when(orderDao.findByOrderID(anyInt())).thenReturn(null);
+    }
+
+    private long metric(String name) {
+        return (Long) dispatcher.metrics().get(name);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void deliversThroughFakeSmtp() throws Exception {
+        long sent = metric("sent");
+        dispatcher.submit(new Notification(Notification.ORDER_CONFIRMED, "user", 7));
+
+        await(() -> transport.received().size() == 1);
+        NotificationMessage message = transport.received().get(0);
+        assertEquals(NotificationMessage.EMAIL, message.getChannel());
+        assertEquals("user@example.com", message.getTo());
+        assertEquals("场馆预约已通过", message.getSubject());
+        await(() -> metric("sent") == sent + 1);
+    }
+
+    /**
+     * 用户没有联系方式时什么也不发，不计入sent
+     */
+    @Test
+    void userWithoutContactIsSkippedNotSent() throws Exception {
+        when(userDao.findByUserID(anyString())).thenReturn(new User(1, "user", "用户", "pw", "", "", 0, ""));
+        long sent = metric("sent");
+        long skipped = metric("skipped");
+
+        dispatcher.submit(new Notification(Notification.ORDER_REJECTED, "user", 7));
+
+        await(() -> metric("skipped") == skipped + 1);
+        assertEquals(sent, metric("sent"));
+        verify(transport, never()).send(any());
+    }
+
+    /**
+     * 失败后按指数退避重试，重试不重复计入submitted
+     */
+    @Test
+    void retriesWithBackoffWithoutCountingSubmittedAgain() throws Exception {
+        List<Long> calls = new ArrayList<>();
+        doAnswer(invocation -> {
+            calls.add(System.nanoTime());
+            if (calls.size() < 3) {
+                throw new IllegalStateException("smtp down");
+            }
+            return invocation.callRealMethod();
+        }).when(transport).send(any());
+        long submitted = metric("submitted");
+        long retried = metric("retried");
+
+        dispatcher.submit(new Notification(Notification.ORDER_CONFIRMED, "user", 7));
+
+        await(() -> transport.received().size() == 1);
+        assertEquals(submitted + 1, metric("submitted"));
+        assertEquals(retried + 2, metric("retried"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(calls.get(1) - calls.get(0)) >= 200);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(calls.get(2) - calls.get(1)) >= 400);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        doThrow(new IllegalStateException("smtp down")).when(transport).send(any());
+        long failed = metric("failed");
+
+        dispatcher.submit(new Notification(Notification.ORDER_CONFIRMED, "user", 7));
+
+        await(() -> metric("failed") == failed + 1);
+        verify(transport, times(3)).send(any());
+    }
+
+    /**
+     * 新提交的通知在队列满时丢弃；退避后的重试遇到队列满不算丢弃，而是继续退避
+     */
+    @Test
+    void dropsNewNotificationsButNotRetriesWhenQueueIsFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int[] calls = {0};
+        doAnswer(invocation -> {
+            int call = ++calls[0];
+            if (call == 1) {
+                throw new IllegalStateException("smtp down");
+            }
+            if (call == 2) {
+                blocked.countDown();
+                release.await();
+            }
+            return invocation.callRealMethod();
+        }).when(transport).send(any());
+        long dropped = metric("dropped");
+        long retried = metric("retried");
+
+        // 第一条发送失败，200ms后重试
+        dispatcher.submit(new Notification(Notification.ORDER_CONFIRMED, "user", 1));
+        await(() -> calls[0] == 1);
+        // 第二条占住worker，第三条占满队列，第四条被丢弃
+        dispatcher.submit(new Notification(Notification.ORDER_CONFIRMED, "user", 2));
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        dispatcher.submit(new Notification(Notification.ORDER_CONFIRMED, "user", 3));
+        dispatcher.submit(new Notification(Notification.ORDER_CONFIRMED, "user", 4));
+        assertEquals(dropped + 1, metric("dropped"));
+
+        // 第一条的重试到期时队列仍是满的
+        await(() -> metric("retried") == retried + 2);
+        release.countDown();
+
+        await(() -> transport.received().size() == 3);
+        assertEquals(dropped + 1, metric("dropped"));
+        Map<String, Object> metrics = dispatcher.metrics();
+        assertEquals(0, metrics.get("queueDepth"));
+    }
+}
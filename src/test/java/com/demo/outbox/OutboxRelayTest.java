@@ -0,0 +1,115 @@
+package com.demo.outbox;
+
+import com.demo.dao.OutboxEventDao;
+import com.demo.entity.OutboxEvent;
+import com.demo.service.OutboxService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 发件箱的投递和变更流，DAO用mock，不和其他测试上下文里还在跑的relay线程抢同一张表
+ */
+@SpringBootTest(properties = {"outbox.relay.enabled=false", "outbox.relay.batch-size=2",
+        "outbox.sink.file=" + OutboxRelayTest.FILE, "outbox.feed.lag=5000"})
+public class OutboxRelayTest {
+    static final String FILE = "target/outbox-test/events.jsonl";
+
+    @MockBean
+    private OutboxEventDao outboxEventDao;
+    @Autowired
+    private OutboxRelay outboxRelay;
+    @Autowired
+    private ListenerOutboxSink listenerOutboxSink;
+    @Autowired
+    private OutboxService outboxService;
+
+    private final List<OutboxEvent> received = new ArrayList<>();
+    private final Consumer<OutboxEvent> listener = received::add;
+
+    private static OutboxEvent event(long id) {
+        return new OutboxEvent(id, "order", (int) id, "order.confirmed", "{}", LocalDateTime.now(), false);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.deleteIfExists(Paths.get(FILE));
+        listenerOutboxSink.addListener(listener);
+    }
+
+    @AfterEach
+    void tearDown() {
+        listenerOutboxSink.removeListener(listener);
+    }
+
+    /**
+     * 积压的事件按批投递给所有sink，每批投递成功后标记为已发布
+     */
+    @Test
+    void relayPublishesBatchesToAllSinksThenMarksThem() throws Exception {
+        when(outboxEventDao.findByPublishedFalseOrderByEventID(any(Pageable.class)))
+                .thenReturn(Arrays.asList(event(1), event(2)), Arrays.asList(event(3)));
+
+        assertEquals(3, outboxRelay.relay());
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), Arrays.asList(received.get(0).getEventID(),
+                received.get(1).getEventID(), received.get(2).getEventID()));
+        Path file = Paths.get(FILE);
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).contains("\"eventID\":1"));
+        verify(outboxEventDao).markPublished(Arrays.asList(1L, 2L));
+        verify(outboxEventDao).markPublished(Arrays.asList(3L));
+    }
+
+    /**
+     * 有sink失败时这一批不标记，下次重新投递
+     */
+    @Test
+    void failedSinkLeavesBatchUnpublished() {
+        when(outboxEventDao.findByPublishedFalseOrderByEventID(any(Pageable.class)))
+                .thenReturn(Arrays.asList(event(1), event(2)));
+        Consumer<OutboxEvent> failing = event -> {
+            throw new IllegalStateException("sink down");
+        };
+        listenerOutboxSink.addListener(failing);
+        try {
+            assertThrows(IllegalStateException.class, () -> outboxRelay.relay());
+        } finally {
+            listenerOutboxSink.removeListener(failing);
+        }
+
+        verify(outboxEventDao, never()).markPublished(anyList());
+    }
+
+    /**
+     * 变更流只读写入超过outbox.feed.lag的事件，晚提交的小id不会被游标越过
+     */
+    @Test
+    void changeFeedSkipsEventsYoungerThanLag() {
+        LocalDateTime now = LocalDateTime.now();
+        outboxService.findAfter(5, 10);
+
+        verify(outboxEventDao).findByEventIDGreaterThanAndTimeBeforeOrderByEventID(eq(5L),
+                argThat(before -> before.isAfter(now.minusSeconds(6)) && before.isBefore(now.minusSeconds(4))),
+                any(Pageable.class));
+    }
+}
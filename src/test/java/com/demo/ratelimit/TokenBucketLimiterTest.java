@@ -0,0 +1,74 @@
+package com.demo.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private long now = 1000 * SECOND;
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter(() -> now, 2);
+    /**
+     * 每分钟60次即每秒一个令牌，最多攒3个
+     */
+    private final TokenBucketLimiter.Limit limit = new TokenBucketLimiter.Limit(60, 3);
+
+    @Test
+    void allowsBurstThenReportsWait() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("send", "alice", limit));
+        }
+        assertEquals(SECOND, limiter.tryAcquire("send", "alice", limit));
+
+        now += SECOND / 2;
+        assertEquals(SECOND / 2, limiter.tryAcquire("send", "alice", limit));
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("send", "alice", limit);
+        }
+        now += SECOND;
+        assertEquals(0, limiter.tryAcquire("send", "alice", limit));
+        assertTrue(limiter.tryAcquire("send", "alice", limit) > 0);
+
+        // 空闲再久也只攒到桶容量
+        now += 100 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("send", "alice", limit));
+        }
+        assertTrue(limiter.tryAcquire("send", "alice", limit) > 0);
+    }
+
+    @Test
+    void bucketsArePerEndpointAndUser() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("send", "alice", limit);
+        }
+        assertTrue(limiter.tryAcquire("send", "alice", limit) > 0);
+        assertEquals(0, limiter.tryAcquire("send", "bob", limit));
+        assertEquals(0, limiter.tryAcquire("modify", "alice", limit));
+    }
+
+    /**
+     * 补满的桶被清掉后和新桶一样；桶数达到上限时新用户直接放行并计入overflow
+     */
+    @Test
+    void sweepsFullBucketsAndFailsOpenOnOverflow() {
+        limiter.tryAcquire("send", "alice", limit);
+        limiter.tryAcquire("send", "bob", limit);
+        assertEquals(0, limiter.tryAcquire("send", "carol", limit));
+        assertEquals(1L, limiter.metrics().get("overflow"));
+        assertEquals(2, limiter.metrics().get("buckets"));
+
+        now += SECOND;
+        limiter.sweep();
+        assertEquals(0, limiter.metrics().get("buckets"));
+        assertEquals(2L, limiter.metrics().get("evicted"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.demo.session;
+
+import com.demo.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionCodecTest {
+
+    @Test
+    void roundTripsAllTypes() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("user", new SessionUser(1, "u1", "用户", null, false));
+        attributes.put("admin", new SessionUser(2, "a1", "管理员", "file/user/ab/cd.png", true));
+        attributes.put("name", "值");
+        attributes.put("count", 3);
+        attributes.put("time", 4L);
+        attributes.put("flag", true);
+        attributes.put("date", LocalDate.of(2020, 1, 2));
+
+        assertEquals(attributes, SessionCodec.decode(SessionCodec.encode(attributes)));
+    }
+
+    /**
+     * 同一个登录用户，按字段编码比Java序列化（容器持久化会话的方式）小得多
+     */
+    @Test
+    void principalIsCompact() throws Exception {
+        User user = new User(1, "user_0001", "张三", "password", "user@example.com", "13800000000", 0,
+                "file/user/ab/" + "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef.png");
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("user", SessionUser.of(user));
+
+        int compact = SessionCodec.encode(attributes).length;
+        assertTrue(compact < 130, "encoded " + compact + " bytes");
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(attributes);
+        }
+        assertTrue(compact * 2 < serialized.size(), compact + " vs " + serialized.size());
+    }
+}
@@ -0,0 +1,113 @@
+package com.demo.session;
+
+import com.demo.entity.User;
+import com.demo.service.OrderService;
+import com.demo.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.servlet.http.Cookie;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * 会话存到数据库后，后续请求只带cookie，不依赖容器里的HttpSession
+ */
+@SpringBootTest(properties = "session.store=jdbc")
+@AutoConfigureMockMvc
+public class SessionRepositoryFilterTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockBean
+    private UserService userService;
+    @MockBean
+    private OrderService orderService;
+
+    private Cookie login() throws Exception {
+        User user = new User(7, "session_user", "张三", "secret", "a@b.c", "123", 0, "file/user/ab/cd.png");
+        when(userService.checkLogin(eq("session_user"), anyString())).thenReturn(user);
+        MvcResult result = mockMvc.perform(post("/loginCheck.do")
+                        .param("userID", "session_user")
+                        .param("password", "secret"))
+                .andExpect(content().string("/index"))
+                .andReturn();
+        Cookie cookie = result.getResponse().getCookie("SESSION");
+        assertNotNull(cookie);
+        assertTrue(cookie.isHttpOnly());
+        return cookie;
+    }
+
+    @Test
+    void loginIsVisibleThroughCookieOnly() throws Exception {
+        Cookie cookie = login();
+        when(orderService.countUserOrder("session_user")).thenReturn(6);
+
+        mockMvc.perform(get("/order_manage").cookie(cookie))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("total", 2));
+
+        byte[] attributes = jdbcTemplate.queryForObject(
+                "SELECT attributes FROM app_session WHERE session_id = ?", byte[].class, cookie.getValue());
+        assertEquals(SessionUser.of(new User(7, "session_user", "张三", "secret", "a@b.c", "123", 0, "file/user/ab/cd.png")),
+                SessionCodec.decode(attributes).get("user"));
+        assertTrue(attributes.length < 100, "session is " + attributes.length + " bytes");
+    }
+
+    @Test
+    void logoutIsVisibleToLaterRequests() throws Exception {
+        Cookie cookie = login();
+
+        mockMvc.perform(get("/logout.do").cookie(cookie))
+                .andExpect(redirectedUrl("/index"));
+
+        byte[] attributes = jdbcTemplate.queryForObject(
+                "SELECT attributes FROM app_session WHERE session_id = ?", byte[].class, cookie.getValue());
+        assertNull(SessionCodec.decode(attributes).get("user"));
+    }
+
+    /**
+     * 会话固定：登录前浏览器里已有的会话id（可能是攻击者塞进来的）登录后作废，换发新id
+     */
+    @Test
+    void loginRotatesExistingSessionId() throws Exception {
+        Cookie planted = login();
+        User user = new User(7, "session_user", "张三", "secret", "a@b.c", "123", 0, "file/user/ab/cd.png");
+        when(userService.checkLogin(eq("session_user"), anyString())).thenReturn(user);
+
+        MvcResult result = mockMvc.perform(post("/loginCheck.do").cookie(planted)
+                        .param("userID", "session_user")
+                        .param("password", "secret"))
+                .andExpect(content().string("/index"))
+                .andReturn();
+
+        Cookie rotated = result.getResponse().getCookie("SESSION");
+        assertNotNull(rotated);
+        assertNotEquals(planted.getValue(), rotated.getValue());
+        assertEquals(0, (int) jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM app_session WHERE session_id = ?", Integer.class, planted.getValue()));
+        byte[] attributes = jdbcTemplate.queryForObject(
+                "SELECT attributes FROM app_session WHERE session_id = ?", byte[].class, rotated.getValue());
+        assertEquals(SessionUser.of(user), SessionCodec.decode(attributes).get("user"));
+    }
+
+    @Test
+    void unknownCookieStartsNoSession() throws Exception {
+        mockMvc.perform(get("/login").cookie(new Cookie("SESSION", "no-such-session")))
+                .andExpect(status().isOk())
+                .andExpect(cookie().doesNotExist("SESSION"));
+    }
+}
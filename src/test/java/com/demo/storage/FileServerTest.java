@@ -0,0 +1,127 @@
+package com.demo.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileServerTest {
+    @TempDir
+    Path dir;
+
+    private final FileServer server = new FileServer(1024, 3600);
+    private Path file;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        content = new byte[4096];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = Files.write(dir.resolve("a.png"), content);
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request, boolean immutable) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        server.serve(file, immutable, request, response);
+        return response;
+    }
+
+    @Test
+    void servesWholeFileWithValidators() throws Exception {
+        MockHttpServletResponse response = serve(new MockHttpServletRequest("GET", "/file/a.png"), false);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+        assertEquals(4096, response.getContentLengthLong());
+        assertEquals("image/png", response.getContentType());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals("public, max-age=3600", response.getHeader("Cache-Control"));
+        assertNotNull(response.getHeader("ETag"));
+        assertNotNull(response.getHeader("Last-Modified"));
+    }
+
+    @Test
+    void contentHashedFilesAreImmutable() throws Exception {
+        MockHttpServletResponse response = serve(new MockHttpServletRequest("GET", "/file/a.png"), true);
+
+        assertEquals("public, max-age=31536000, immutable", response.getHeader("Cache-Control"));
+    }
+
+    @Test
+    void notModifiedWhenEtagMatches() throws Exception {
+        String etag = serve(new MockHttpServletRequest("GET", "/file/a.png"), false).getHeader("ETag");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/a.png");
+        request.addHeader("If-None-Match", etag);
+
+        MockHttpServletResponse response = serve(request, false);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void servesSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/a.png");
+        request.addHeader("Range", "bytes=100-199");
+
+        MockHttpServletResponse response = serve(request, false);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/4096", response.getHeader("Content-Range"));
+        assertEquals(100, response.getContentAsByteArray().length);
+        assertEquals(content[100], response.getContentAsByteArray()[0]);
+
+        request = new MockHttpServletRequest("GET", "/file/a.png");
+        request.addHeader("Range", "bytes=-10");
+        response = serve(request, false);
+        assertEquals("bytes 4086-4095/4096", response.getHeader("Content-Range"));
+        assertEquals(10, response.getContentAsByteArray().length);
+    }
+
+    /**
+     * 超出文件长度返回416；多区间和过期的If-Range按整个文件返回
+     */
+    @Test
+    void unsatisfiableOrIgnoredRanges() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/a.png");
+        request.addHeader("Range", "bytes=5000-6000");
+        MockHttpServletResponse response = serve(request, false);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */4096", response.getHeader("Content-Range"));
+
+        request = new MockHttpServletRequest("GET", "/file/a.png");
+        request.addHeader("Range", "bytes=0-1,5-6");
+        assertEquals(200, serve(request, false).getStatus());
+
+        request = new MockHttpServletRequest("GET", "/file/a.png");
+        request.addHeader("Range", "bytes=0-1");
+        request.addHeader("If-Range", "\"stale\"");
+        assertEquals(200, serve(request, false).getStatus());
+    }
+
+    /**
+     * 容器支持sendfile且文件够大时只设置属性，不往响应里写内容
+     */
+    @Test
+    void delegatesLargeFilesToSendfile() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/a.png");
+        request.setAttribute(FileServer.SENDFILE_SUPPORTED, Boolean.TRUE);
+        request.addHeader("Range", "bytes=1024-");
+
+        MockHttpServletResponse response = serve(request, false);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute(FileServer.SENDFILE_FILENAME));
+        assertEquals(1024L, request.getAttribute(FileServer.SENDFILE_START));
+        assertEquals(4096L, request.getAttribute(FileServer.SENDFILE_END));
+    }
+}
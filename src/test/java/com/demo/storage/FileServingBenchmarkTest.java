@@ -0,0 +1,151 @@
+package com.demo.storage;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.startup.Tomcat;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 大文件下载吞吐压测，mvn test -Pbenchmark 运行
+ * 在同一个嵌入式Tomcat里对比Spring默认的ResourceHttpRequestHandler和FileServer（sendfile），
+ * 多个客户端并发下载同一个文件，输出吞吐量和每GB消耗的进程CPU时间（客户端读取的开销两边相同）
+ */
+@Tag("benchmark")
+public class FileServingBenchmarkTest {
+    private static final String NAME = "big.bin";
+    private static final int FILE_SIZE = 8 << 20;
+    private static final int CLIENTS = 4;
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 200;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void throughput() throws Exception {
+        byte[] content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        Path file = Files.write(dir.resolve(NAME), content);
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createDirectories(dir.resolve("tomcat")).toString());
+        tomcat.setPort(0);
+        Context context = tomcat.addContext("", null);
+        FileServer fileServer = new FileServer(49152, 3600);
+        Tomcat.addServlet(context, "fileServer", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                fileServer.serve(file, true, request, response);
+            }
+        });
+        context.addServletMappingDecoded("/new/*", "fileServer");
+        Tomcat.addServlet(context, "resourceHandler", new ResourceHandlerServlet(dir));
+        context.addServletMappingDecoded("/old/*", "resourceHandler");
+        tomcat.getConnector();
+        tomcat.start();
+        try {
+            int port = tomcat.getConnector().getLocalPort();
+            for (String path : new String[]{"/old/", "/new/", "/old/", "/new/"}) {
+                run(new URL("http://localhost:" + port + path + NAME));
+            }
+            System.out.println(fileServer.metrics());
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    private void run(URL url) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            download(clients, url, WARMUP);
+            com.sun.management.OperatingSystemMXBean os =
+                    (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            long cpuStart = os.getProcessCpuTime();
+            long start = System.nanoTime();
+            long bytes = download(clients, url, ROUNDS);
+            long wall = System.nanoTime() - start;
+            long cpu = os.getProcessCpuTime() - cpuStart;
+            assertEquals((long) FILE_SIZE * ROUNDS, bytes);
+            double gb = bytes / 1e9;
+            System.out.printf("%-40s %.0f MB/s, cpu %.0f ms/GB%n", url.getPath(), bytes / 1e6 / (wall / 1e9), cpu / 1e6 / gb);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static long download(ExecutorService clients, URL url, int rounds) throws Exception {
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < rounds; i++) {
+            futures.add(clients.submit(() -> {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                byte[] buffer = new byte[64 * 1024];
+                long total = 0;
+                try (InputStream in = connection.getInputStream()) {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        total += n;
+                    }
+                }
+                return total;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> future : futures) {
+            total += future.get();
+        }
+        return total;
+    }
+
+    /**
+     * 改动前/file/**走的Spring静态资源处理器
+     */
+    private static class ResourceHandlerServlet extends HttpServlet {
+        private final ResourceHttpRequestHandler handler = new ResourceHttpRequestHandler();
+
+        ResourceHandlerServlet(Path dir) {
+            handler.setLocations(Collections.singletonList(new FileSystemResource(dir.toString() + "/")));
+        }
+
+        @Override
+        public void init() throws ServletException {
+            handler.setServletContext(getServletContext());
+            try {
+                handler.afterPropertiesSet();
+            } catch (Exception e) {
+                throw new ServletException(e);
+            }
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+            request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, request.getPathInfo().substring(1));
+            handler.handleRequest(request, response);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.demo.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalFileStoreTest {
+    @TempDir
+    Path root;
+
+    /**
+     * 保存后按url读回，文件落在root/分类目录下
+     */
+    @Test
+    void saveAndOpen() throws Exception {
+        LocalFileStore store = new LocalFileStore(root);
+
+        String url = store.save("venue", new MockMultipartFile("picture", "a.png", "image/png", "content".getBytes()));
+
+        assertTrue(url.matches("file/venue/[0-9a-f]{2}/[0-9a-f]{64}\\.png"));
+        assertTrue(store.exists(url));
+        assertTrue(Files.exists(root.resolve(url.substring("file/".length()))));
+        try (InputStream in = store.open(url)) {
+            assertArrayEquals("content".getBytes(), StreamUtils.copyToByteArray(in));
+        }
+        assertEquals("", store.save("venue", new MockMultipartFile("picture", "", "image/png", new byte[0])));
+    }
+
+    /**
+     * put覆盖已有文件，不留临时文件
+     */
+    @Test
+    void putReplacesContent() throws Exception {
+        LocalFileStore store = new LocalFileStore(root);
+
+        store.put("file/user/ab/x_64.jpg", new ByteArrayInputStream("old".getBytes()));
+        store.put("file/user/ab/x_64.jpg", new ByteArrayInputStream("new".getBytes()));
+
+        assertArrayEquals("new".getBytes(), Files.readAllBytes(root.resolve("user/ab/x_64.jpg")));
+        try (Stream<Path> files = Files.list(root.resolve("user/ab"))) {
+            assertEquals(1, files.count());
+        }
+        assertFalse(store.exists("file/user/ab/missing.jpg"));
+        assertThrows(NoSuchFileException.class, () -> store.open("file/user/ab/missing.jpg"));
+    }
+
+    /**
+     * 不能通过url读写root之外的文件
+     */
+    @Test
+    void rejectsPathsOutsideRoot() {
+        LocalFileStore store = new LocalFileStore(root.resolve("store"));
+
+        assertThrows(RuntimeException.class, () -> store.exists("file/../secret.txt"));
+        assertThrows(RuntimeException.class, () -> store.open("file/user/../../secret.txt"));
+        assertThrows(RuntimeException.class, () -> store.put("static/x.png", new ByteArrayInputStream(new byte[0])));
+    }
+}
@@ -0,0 +1,111 @@
+package com.demo.storage;
+
+import com.demo.entity.Venue;
+import com.demo.service.VenueService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 用原始的multipart请求体走流式上传，不经过Spring的multipart解析
+ */
+@SpringBootTest(properties = {"upload.max-file-size=1KB", "upload.max-request-size=2KB"})
+@AutoConfigureMockMvc
+public class StreamingUploadTest {
+    private static final String BOUNDARY = "----upload-test";
+    private static final byte[] PNG_HEADER = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private FileStore fileStore;
+    @Autowired
+    private StreamingUpload streamingUpload;
+    @MockBean
+    private VenueService venueService;
+
+    private static byte[] body(String filename, byte[] picture) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String[][] fields = {{"venueName", "场馆"}, {"address", "地址"}, {"description", "描述"},
+                {"price", "100"}, {"open_time", "09:00"}, {"close_time", "21:00"}};
+        for (String[] field : fields) {
+            out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + field[0] + "\"\r\n\r\n"
+                    + field[1] + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        out.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"picture\"; filename=\"" + filename
+                + "\"\r\nContent-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(picture);
+        out.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static byte[] png(int size) {
+        byte[] picture = new byte[size];
+        Arrays.fill(picture, (byte) 'x');
+        System.arraycopy(PNG_HEADER, 0, picture, 0, PNG_HEADER.length);
+        return picture;
+    }
+
+    private ResultActions upload(byte[] body) throws Exception {
+        return mockMvc.perform(post("/addVenue.do")
+                .contentType("multipart/form-data; boundary=" + BOUNDARY)
+                .content(body));
+    }
+
+    /**
+     * 图片按识别出的格式命名并直接存进FileStore，表单字段正常读取
+     */
+    @Test
+    void streamsPictureIntoStore() throws Exception {
+        when(venueService.create(any(Venue.class))).thenReturn(1);
+        long streamed = (Long) streamingUpload.metrics().get("streamed");
+
+        upload(body("照片.JPG", png(512))).andExpect(status().isFound());
+
+        ArgumentCaptor<Venue> venue = ArgumentCaptor.forClass(Venue.class);
+        verify(venueService).create(venue.capture());
+        assertEquals("场馆", venue.getValue().getVenueName());
+        assertEquals(100, venue.getValue().getPrice());
+        assertTrue(venue.getValue().getPicture().matches("file/venue/[0-9a-f]{2}/[0-9a-f]{64}\\.png"));
+        assertTrue(fileStore.exists(venue.getValue().getPicture()));
+        assertEquals(streamed + 1, streamingUpload.metrics().get("streamed"));
+    }
+
+    /**
+     * 文件名是.png但内容不是图片
+     */
+    @Test
+    void rejectsNonImages() throws Exception {
+        upload(body("a.png", "<script>alert(1)</script>".getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verify(venueService, never()).create(any(Venue.class));
+    }
+
+    /**
+     * 请求体声明的长度超限时直接拒绝；长度没超但文件超限时读到超限处中止
+     */
+    @Test
+    void rejectsOversizeUploads() throws Exception {
+        upload(body("a.png", png(4096))).andExpect(status().isPayloadTooLarge());
+        upload(body("a.png", png(1500))).andExpect(status().isPayloadTooLarge());
+
+        verify(venueService, never()).create(any(Venue.class));
+    }
+}
@@ -0,0 +1,140 @@
+package com.demo.storage;
+
+import com.demo.dao.UserDao;
+import com.demo.dao.VenueDao;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ThumbnailServiceTest {
+    @TempDir
+    Path root;
+
+    private Path dir;
+    private ThumbnailService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dir = Files.createDirectories(root.resolve("venue"));
+        service = new ThumbnailService(new LocalFileStore(root), new int[]{200, 64, 300}, 0.8f);
+    }
+
+    /**
+     * 左半边红色，右半边透明
+     */
+    private String png(String name, int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width / 2, height);
+        g.dispose();
+        Path file = dir.resolve(name);
+        ImageIO.write(image, "png", file.toFile());
+        return "file/venue/" + name;
+    }
+
+    /**
+     * 按宽度生成等比例的JPEG缩略图，透明部分铺白底
+     */
+    @Test
+    void generateWritesScaledJpegVariants() throws Exception {
+        String source = png("ab.png", 2000, 1000);
+
+        assertEquals(3, service.generate(source));
+
+        for (int width : new int[]{64, 200, 300}) {
+            BufferedImage image = ImageIO.read(dir.resolve("ab_" + width + ".jpg").toFile());
+            assertEquals(width, image.getWidth());
+            assertEquals(width / 2, image.getHeight());
+            int right = image.getRGB(width - 1, image.getHeight() / 2);
+            assertTrue((right & 0xFF) > 0xF0, "透明部分应为白色");
+        }
+        // 已经存在的不重复生成
+        assertEquals(0, service.generate(source));
+    }
+
+    /**
+     * 不放大：原图比缩略图窄时按原尺寸生成，前端按宽度拼出的url都存在
+     */
+    @Test
+    void generateKeepsSourceSizeForWidthsLargerThanSource() throws Exception {
+        String source = png("small.png", 150, 150);
+
+        assertEquals(3, service.generate(source));
+        assertEquals(64, ImageIO.read(dir.resolve("small_64.jpg").toFile()).getWidth());
+        assertEquals(150, ImageIO.read(dir.resolve("small_200.jpg").toFile()).getWidth());
+        assertEquals(150, ImageIO.read(dir.resolve("small_300.jpg").toFile()).getWidth());
+    }
+
+    /**
+     * 缩略图还不存在时先返回原图并在后台生成，之后返回缩略图
+     */
+    @Test
+    void urlGeneratesMissingVariantLazily() throws Exception {
+        String source = png("lazy.png", 400, 200);
+        service.start();
+        try {
+            assertEquals(source, service.url(source, 64));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!Files.exists(dir.resolve("lazy_64.jpg"))) {
+                assertTrue(System.currentTimeMillis() < deadline, "thumbnail not generated");
+                Thread.sleep(10);
+            }
+            assertEquals("file/venue/lazy_64.jpg", service.url(source, 64));
+        } finally {
+            service.stop();
+        }
+    }
+
+    /**
+     * 启动时为数据库里已有的图片补生成缩略图，原图已经不存在的跳过
+     */
+    @Test
+    void backfillGeneratesVariantsForExistingPictures() throws Exception {
+        String venue = png("venue.png", 400, 200);
+        String user = png("user.png", 400, 200);
+        UserDao userDao = mock(UserDao.class);
+        VenueDao venueDao = mock(VenueDao.class);
+        when(userDao.countPictures()).thenReturn(Arrays.asList(new Object[]{user, 1L}, new Object[]{"file/user/gone.png", 1L}));
+        when(venueDao.countPictures()).thenReturn(Collections.singletonList(new Object[]{venue, 2L}));
+        service = new ThumbnailService(new LocalFileStore(root), userDao, venueDao, new int[]{200, 64, 300}, 0.8f);
+
+        service.backfill();
+
+        for (String name : new String[]{"venue", "user"}) {
+            for (int width : new int[]{64, 200, 300}) {
+                assertTrue(Files.exists(dir.resolve(name + "_" + width + ".jpg")), name + "_" + width);
+            }
+        }
+        assertEquals(6L, service.metrics().get("backfilled"));
+        assertEquals(0L, service.metrics().get("failures"));
+    }
+
+    /**
+     * 不是图片时什么都不做
+     */
+    @Test
+    void generateIgnoresNonImages() throws Exception {
+        Files.write(dir.resolve("text.png"), "not an image".getBytes());
+
+        assertEquals(0, service.generate("file/venue/text.png"));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
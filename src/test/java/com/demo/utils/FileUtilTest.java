@@ -0,0 +1,126 @@
+package com.demo.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileUtilTest {
+    @TempDir
+    Path dir;
+
+    private long countFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    /**
+     * 相同内容多次上传只保存一份，返回相同路径，不留临时文件
+     */
+    @Test
+    void savePictureDeduplicatesContent() throws Exception {
+        MockMultipartFile first = new MockMultipartFile("picture", "a.PNG", "image/png", "same bytes".getBytes());
+        MockMultipartFile second = new MockMultipartFile("picture", "b.png", "image/png", "same bytes".getBytes());
+
+        String path1 = FileUtil.savePicture(dir.toString(), first);
+        String path2 = FileUtil.savePicture(dir.toString(), second);
+
+        assertEquals(path1, path2);
+        assertTrue(path1.matches("[0-9a-f]{2}/[0-9a-f]{64}\\.png"));
+        assertEquals(path1.substring(0, 2), path1.substring(3, 5));
+        assertEquals(1, countFiles());
+        assertArrayEquals("same bytes".getBytes(), Files.readAllBytes(dir.resolve(path1)));
+    }
+
+    /**
+     * 内容不同保存为不同文件；原文件名没有后缀或后缀不合法时不带后缀
+     */
+    @Test
+    void savePictureKeepsDistinctContent() throws Exception {
+        String path1 = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "a.jpg", "image/jpeg", "one".getBytes()));
+        String path2 = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "noext", "image/jpeg", "two".getBytes()));
+        String path3 = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "x.j/../pg", "image/jpeg", "three".getBytes()));
+
+        assertNotEquals(path1, path2);
+        assertTrue(path1.endsWith(".jpg"));
+        assertFalse(path2.contains("."));
+        assertFalse(path3.contains("."));
+        assertEquals(3, countFiles());
+    }
+
+    /**
+     * 只删除没有引用且超过宽限期的文件
+     */
+    @Test
+    void collectGarbageRemovesOldOrphans() throws Exception {
+        String kept = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "a.png", "image/png", "kept".getBytes()));
+        String orphan = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "b.png", "image/png", "orphan".getBytes()));
+        String fresh = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "c.png", "image/png", "fresh".getBytes()));
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 7_200_000);
+        Files.setLastModifiedTime(dir.resolve(kept), old);
+        Files.setLastModifiedTime(dir.resolve(orphan), old);
+
+        int deleted = FileUtil.collectGarbage(dir.toString(), "file/user/",
+                Collections.singletonMap("file/user/" + kept, 2L), 3_600_000);
+
+        assertEquals(1, deleted);
+        assertTrue(Files.exists(dir.resolve(kept)));
+        assertFalse(Files.exists(dir.resolve(orphan)));
+        assertTrue(Files.exists(dir.resolve(fresh)));
+    }
+
+    /**
+     * 重新上传一个待回收的孤儿文件会刷新修改时间，回收器不会删掉它
+     */
+    @Test
+    void reuploadRescuesOrphan() throws Exception {
+        MockMultipartFile picture = new MockMultipartFile("picture", "a.png", "image/png", "rescued".getBytes());
+        String path = FileUtil.savePicture(dir.toString(), picture);
+        Files.setLastModifiedTime(dir.resolve(path), FileTime.fromMillis(System.currentTimeMillis() - 7_200_000));
+
+        assertEquals(path, FileUtil.savePicture(dir.toString(), picture));
+        assertEquals(0, FileUtil.collectGarbage(dir.toString(), "file/user/", Collections.emptyMap(), 3_600_000));
+        assertTrue(Files.exists(dir.resolve(path)));
+    }
+
+    /**
+     * 缩略图跟随原图：原图有引用时保留，原图没有引用时一起回收
+     */
+    @Test
+    void collectGarbageKeepsVariantsOfReferencedPictures() throws Exception {
+        String kept = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "a.png", "image/png", "kept".getBytes()));
+        String orphan = FileUtil.savePicture(dir.toString(), new MockMultipartFile("picture", "b.png", "image/png", "orphan".getBytes()));
+        String keptVariant = FileUtil.variantOf("file/user/" + kept, 64).substring("file/user/".length());
+        String orphanVariant = FileUtil.variantOf("file/user/" + orphan, 64).substring("file/user/".length());
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 7_200_000);
+        for (String path : new String[]{kept, orphan, keptVariant, orphanVariant}) {
+            if (!Files.exists(dir.resolve(path))) {
+                Files.write(dir.resolve(path), "variant".getBytes());
+            }
+            Files.setLastModifiedTime(dir.resolve(path), old);
+        }
+
+        int deleted = FileUtil.collectGarbage(dir.toString(), "file/user/",
+                Collections.singletonMap("file/user/" + kept, 1L), 3_600_000);
+
+        assertEquals(2, deleted);
+        assertTrue(Files.exists(dir.resolve(kept)));
+        assertTrue(Files.exists(dir.resolve(keptVariant)));
+        assertFalse(Files.exists(dir.resolve(orphanVariant)));
+    }
+
+    @Test
+    void variantOfKeepsNonUploads() {
+        assertEquals("file/venue/ab/abc_200.jpg", FileUtil.variantOf("file/venue/ab/abc.png", 200));
+        assertEquals("file/venue/ab/abc_200.jpg", FileUtil.variantOf("file/venue/ab/abc", 200));
+        assertEquals("venue.jpg", FileUtil.variantOf("venue.jpg", 200));
+    }
+}
@@ -0,0 +1,105 @@
+package com.demo.view;
+
+import com.demo.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * fragment:header/left/footer的输出必须和原来的th:include逐字节一致，缓存命中时也一样
+ */
+public class CachedFragmentProcessorTest {
+    private final FragmentCache cache = new FragmentCache(true);
+    private final SpringTemplateEngine engine = createEngine(cache);
+
+    static SpringTemplateEngine createEngine(FragmentCache cache) {
+        ClassLoaderTemplateResolver files = new ClassLoaderTemplateResolver();
+        files.setPrefix("templates/");
+        files.setSuffix(".html");
+        files.setCharacterEncoding("UTF-8");
+        files.setCheckExistence(true);
+        files.setCacheable(true);
+        files.setOrder(1);
+        StringTemplateResolver inline = new StringTemplateResolver();
+        inline.setOrder(2);
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.addTemplateResolver(files);
+        engine.addTemplateResolver(inline);
+        engine.addDialect(new FragmentDialect(cache));
+        return engine;
+    }
+
+    private String render(String template, String attribute, Object user) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (user != null) {
+            request.getSession().setAttribute(attribute, user);
+        }
+        WebContext context = new WebContext(request, new MockHttpServletResponse(), new MockServletContext(), Locale.CHINA);
+        return engine.process(template, context);
+    }
+
+    private void assertSameAsInclude(String page, User user) {
+        String include = "<div th:include=\"layout/header :: header(user=${session.user},flag=${session.user}!=null,page='" + page + "')\"></div>";
+        String cached = "<div fragment:header=\"" + page + "\"></div>";
+        String expected = render(include, "user", user);
+        // 第一次渲染并缓存，第二次命中缓存
+        assertEquals(expected, render(cached, "user", user));
+        assertEquals(expected, render(cached, "user", user));
+    }
+
+    @Test
+    void headerMatchesInclude() {
+        assertSameAsInclude("index", null);
+        assertSameAsInclude("news_list", null);
+        assertSameAsInclude("index", new User(1, "u1", "张三", "pw", "e", "p", 0, "avatar.png"));
+        assertSameAsInclude("index", new User(2, "u2", "<b>\"Tom\" & 'Jerry'</b>", "pw", "e", "p", 0, "a\"b<c>.png"));
+        assertSameAsInclude("user_info", new User(3, "u3", "李四", "pw", "e", "p", 0, ""));
+        assertSameAsInclude("user_info", new User(4, "u4", null, "pw", "e", "p", 0, null));
+    }
+
+    @Test
+    void leftMatchesInclude() {
+        User admin = new User(1, "admin", "管理员", "pw", "e", "p", 1, "");
+        String include = "<div th:include=\"layout/left :: left(user=${session.admin},flag=${session.admin}!=null,page='news_manage')\"></div>";
+        String cached = "<div fragment:left=\"news_manage\"></div>";
+        String expected = render(include, "admin", admin);
+        assertEquals(expected, render(cached, "admin", admin));
+        assertEquals(expected, render(cached, "admin", admin));
+    }
+
+    @Test
+    void footerMatchesInclude() {
+        String expected = render("<div th:include=\"layout/footer :: Footer\"></div>", null, null);
+        assertEquals(expected, render("<div fragment:footer></div>", null, null));
+        assertEquals(expected, render("<div fragment:footer></div>", null, null));
+        assertTrue(expected.contains("Copyright"));
+    }
+
+    /**
+     * 不同用户共用同一份预渲染结果
+     */
+    @Test
+    void renderedOncePerPageAndRole() {
+        FragmentCache counted = new FragmentCache(true);
+        SpringTemplateEngine countedEngine = createEngine(counted);
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.getSession().setAttribute("user", new User(i, "u" + i, "user" + i, "pw", "e", "p", 0, ""));
+            WebContext context = new WebContext(request, new MockHttpServletResponse(), new MockServletContext(), Locale.CHINA);
+            String html = countedEngine.process("<div fragment:header=\"index\"></div>", context);
+            assertTrue(html.contains(">user" + i + "<"));
+        }
+        assertEquals(1L, counted.metrics().get("renders"));
+        assertEquals(4L, counted.metrics().get("hits"));
+    }
+}
@@ -0,0 +1,108 @@
+package com.demo.view;
+
+import com.demo.entity.News;
+import com.demo.entity.Venue;
+import com.demo.entity.vo.MessageVo;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.extras.java8time.dialect.Java8TimeDialect;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 首页模板渲染的CPU耗时压测，mvn test -Pbenchmark 运行
+ * 对比开发配置（不缓存模板，每次渲染片段）、只缓存模板、缓存模板并预渲染片段三种情况下每次渲染的线程CPU时间
+ */
+@Tag("benchmark")
+public class IndexRenderBenchmarkTest {
+    private static final int WARMUP = 200;
+    private static final int ROUNDS = 2000;
+
+    @Test
+    void renderCpuPerRequest() {
+        String dev = null;
+        String previous = null;
+        for (Mode mode : Mode.values()) {
+            SpringTemplateEngine engine = createEngine(mode.templateCache, new FragmentCache(mode.fragmentCache));
+            for (int i = 0; i < WARMUP; i++) {
+                engine.process("index", context(i));
+            }
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long cpuStart = threads.getCurrentThreadCpuTime();
+            long wallStart = System.nanoTime();
+            int bytes = 0;
+            for (int i = 0; i < ROUNDS; i++) {
+                bytes += engine.process("index", context(i)).length();
+            }
+            long cpu = threads.getCurrentThreadCpuTime() - cpuStart;
+            long wall = System.nanoTime() - wallStart;
+            System.out.printf("%-16s cpu=%.1fus/render wall=%.1fus/render chars=%d%n",
+                    mode, cpu / 1e3 / ROUNDS, wall / 1e3 / ROUNDS, bytes / ROUNDS);
+
+            String html = engine.process("index", context(0));
+            if (previous != null) {
+                assertEquals(previous, html);
+            }
+            previous = html;
+        }
+    }
+
+    private enum Mode {
+        DEV(false, false), TEMPLATE_CACHE(true, false), FRAGMENT_CACHE(true, true);
+
+        private final boolean templateCache;
+        private final boolean fragmentCache;
+
+        Mode(boolean templateCache, boolean fragmentCache) {
+            this.templateCache = templateCache;
+            this.fragmentCache = fragmentCache;
+        }
+    }
+
+    private static SpringTemplateEngine createEngine(boolean templateCache, FragmentCache cache) {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(templateCache);
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        engine.addDialect(new Java8TimeDialect());
+        engine.addDialect(new FragmentDialect(cache));
+        return engine;
+    }
+
+    /**
+     * 匿名访客，首页各区块5条数据
+     */
+    private static WebContext context(int round) {
+        WebContext context = new WebContext(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                new MockServletContext(), Locale.CHINA);
+        LocalDateTime time = LocalDateTime.of(2020, 1, 1, 12, 0);
+        List<Venue> venues = new ArrayList<>();
+        List<News> news = new ArrayList<>();
+        List<MessageVo> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            venues.add(new Venue(i, "场馆" + i, "描述" + i, 100 + i, "", "地址" + i, "08:00", "22:00"));
+            news.add(new News(i, "新闻标题" + i, "内容" + i, time));
+            messages.add(new MessageVo(i, "user" + i, "留言内容" + i, time, "用户" + i, "", 2));
+        }
+        context.setVariable("venue_list", venues);
+        context.setVariable("news_list", news);
+        context.setVariable("message_list", messages);
+        return context;
+    }
+}